@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.eval.ServerEvaluationCall;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.DOMHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.StringHandle;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Synthetic stand-ins for the DMSDK objects that the benchmarks need, so that no MarkLogic server is required. These
+ * are dynamic proxies, so each benchmark includes a small amount of proxy overhead that is the same across runs.
+ */
+public abstract class BenchmarkStandIns {
+
+	/**
+	 * @param uri
+	 * @param format
+	 * @param content
+	 * @return a DocumentRecord whose content can be read via a BytesHandle, StringHandle, InputStreamHandle, or
+	 * DOMHandle
+	 */
+	public static DocumentRecord newDocumentRecord(String uri, Format format, String content) {
+		return newDocumentRecord(uri, format, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static DocumentRecord newDocumentRecord(String uri, Format format, byte[] bytes) {
+		return (DocumentRecord) Proxy.newProxyInstance(DocumentRecord.class.getClassLoader(), new Class[]{DocumentRecord.class},
+			(proxy, method, args) -> {
+				switch (method.getName()) {
+					case "getUri":
+						return uri;
+					case "getFormat":
+						return format;
+					case "getLength":
+						return (long) bytes.length;
+					case "getContent":
+						return fillHandle(args[0], bytes);
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	/**
+	 * @param uris
+	 * @return a QueryBatch whose client returns ServerEvaluationCall objects that do nothing when evaluated
+	 */
+	public static QueryBatch newQueryBatch(String... uris) {
+		final DatabaseClient client = newDatabaseClient();
+		return (QueryBatch) Proxy.newProxyInstance(QueryBatch.class.getClassLoader(), new Class[]{QueryBatch.class},
+			(proxy, method, args) -> {
+				switch (method.getName()) {
+					case "getItems":
+						return uris;
+					case "getClient":
+						return client;
+					case "getJobBatchNumber":
+					case "getJobResultsSoFar":
+						return 1L;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	public static String[] newUris(int count) {
+		String[] uris = new String[count];
+		for (int i = 0; i < count; i++) {
+			uris[i] = "/benchmark/" + i + ".xml";
+		}
+		return uris;
+	}
+
+	/**
+	 * @param elementCount
+	 * @return an XML document, including an XML declaration, with the given number of child elements
+	 */
+	public static String newXml(int elementCount) {
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root>");
+		for (int i = 0; i < elementCount; i++) {
+			sb.append("<element id=\"").append(i).append("\">value ").append(i).append("</element>");
+		}
+		return sb.append("</root>").toString();
+	}
+
+	private static DatabaseClient newDatabaseClient() {
+		final ServerEvaluationCall call = (ServerEvaluationCall) Proxy.newProxyInstance(ServerEvaluationCall.class.getClassLoader(),
+			new Class[]{ServerEvaluationCall.class},
+			(proxy, method, args) -> method.getReturnType().equals(ServerEvaluationCall.class) ? proxy : null);
+		return (DatabaseClient) Proxy.newProxyInstance(DatabaseClient.class.getClassLoader(), new Class[]{DatabaseClient.class},
+			(proxy, method, args) -> {
+				if ("newServerEval".equals(method.getName())) {
+					return call;
+				}
+				throw new UnsupportedOperationException(method.getName());
+			});
+	}
+
+	private static Object fillHandle(Object handle, byte[] bytes) throws Exception {
+		if (handle instanceof BytesHandle) {
+			((BytesHandle) handle).set(bytes);
+		} else if (handle instanceof StringHandle) {
+			((StringHandle) handle).set(new String(bytes, StandardCharsets.UTF_8));
+		} else if (handle instanceof InputStreamHandle) {
+			((InputStreamHandle) handle).set(new ByteArrayInputStream(bytes));
+		} else if (handle instanceof DOMHandle) {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+			((DOMHandle) handle).set(document);
+		} else {
+			throw new UnsupportedOperationException("Unsupported handle: " + handle.getClass().getName());
+		}
+		return handle;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import com.marklogic.client.ext.datamovement.BenchmarkStandIns;
+import com.marklogic.client.io.Format;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of writing documents to files via WriteDocumentToFileConsumer. Documents are spread across a
+ * fixed set of directories, as is typical for URIs, and the files are removed after each iteration.
+ */
+@State(Scope.Benchmark)
+public class WriteDocumentToFileConsumerBenchmark {
+
+	private final static int DIRECTORY_COUNT = 100;
+
+	@Param({"10", "1000"})
+	public int elementCount;
+
+	private byte[] content;
+	private Path baseDir;
+	private WriteDocumentToFileConsumer consumer;
+	private final AtomicLong counter = new AtomicLong();
+
+	@Setup
+	public void setup() {
+		content = BenchmarkStandIns.newXml(elementCount).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Setup(Level.Iteration)
+	public void createBaseDir() throws IOException {
+		baseDir = Files.createTempDirectory("write-document-to-file-benchmark");
+		consumer = new WriteDocumentToFileConsumer(baseDir.toFile());
+		consumer.setLogErrors(false);
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteBaseDir() throws IOException {
+		try (Stream<Path> paths = Files.walk(baseDir)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Benchmark
+	public void singleThread() {
+		writeDocument();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void fourThreads() {
+		writeDocument();
+	}
+
+	private void writeDocument() {
+		long number = counter.incrementAndGet();
+		String uri = "/dir" + (number % DIRECTORY_COUNT) + "/" + number + ".xml";
+		consumer.accept(BenchmarkStandIns.newDocumentRecord(uri, Format.XML, content));
+	}
+}
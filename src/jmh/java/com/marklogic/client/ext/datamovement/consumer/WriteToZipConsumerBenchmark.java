@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.ext.datamovement.BenchmarkStandIns;
+import com.marklogic.client.io.Format;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures the cost of writing zip entries via WriteToZipConsumer, both from a single thread and from several threads
+ * sharing one consumer. The zip is written to a stream that discards its bytes so that disk I/O is not measured.
+ */
+@State(Scope.Benchmark)
+public class WriteToZipConsumerBenchmark {
+
+	@Param({"10", "1000"})
+	public int elementCount;
+
+	private byte[] content;
+	private WriteToZipConsumer consumer;
+	private final AtomicLong counter = new AtomicLong();
+
+	@Setup
+	public void setup() {
+		content = BenchmarkStandIns.newXml(elementCount).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A new zip is started for each iteration, as ZipOutputStream keeps track of every entry name that it has written.
+	 */
+	@Setup(Level.Iteration)
+	public void openZip() {
+		consumer = new WriteToZipConsumer(new ZipOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeZip() {
+		consumer.close();
+	}
+
+	@Benchmark
+	public void singleThread() {
+		writeEntry();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void fourThreads() {
+		writeEntry();
+	}
+
+	private void writeEntry() {
+		String uri = "/zip/" + counter.incrementAndGet() + ".xml";
+		consumer.accept(BenchmarkStandIns.newDocumentRecord(uri, Format.XML, content));
+	}
+}
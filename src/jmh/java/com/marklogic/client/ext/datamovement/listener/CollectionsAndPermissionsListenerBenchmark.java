@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.ext.datamovement.BenchmarkStandIns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the client-side cost of building the query and variables for a batch in the collections and permissions
+ * listeners. The ServerEvaluationCall does nothing, so no server is involved.
+ */
+@State(Scope.Benchmark)
+public class CollectionsAndPermissionsListenerBenchmark {
+
+	@Param({"100", "1000"})
+	public int batchSize;
+
+	@Param({"false", "true"})
+	public boolean cacheableQuery;
+
+	private QueryBatch queryBatch;
+	private AbstractCollectionsListener collectionsListener;
+	private AbstractPermissionsListener permissionsListener;
+
+	@Setup
+	public void setup() {
+		queryBatch = BenchmarkStandIns.newQueryBatch(BenchmarkStandIns.newUris(batchSize));
+		collectionsListener = new AddCollectionsListener("red", "blue").withCacheableQuery(cacheableQuery);
+		permissionsListener = new AddPermissionsListener("rest-reader", "read", "rest-writer", "update").withCacheableQuery(cacheableQuery);
+	}
+
+	@Benchmark
+	public void addCollections() {
+		collectionsListener.processEvent(queryBatch);
+	}
+
+	@Benchmark
+	public void addPermissions() {
+		permissionsListener.processEvent(queryBatch);
+	}
+}
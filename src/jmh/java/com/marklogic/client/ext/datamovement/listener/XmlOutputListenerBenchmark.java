@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.ext.datamovement.BenchmarkStandIns;
+import com.marklogic.client.io.Format;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of serializing an XML document, minus its XML declaration, via XmlOutputListener.
+ */
+@State(Scope.Benchmark)
+public class XmlOutputListenerBenchmark {
+
+	@Param({"10", "1000"})
+	public int elementCount;
+
+	private XmlOutputListener listener;
+	private DocumentRecord xmlRecord;
+	private DocumentRecord jsonRecord;
+
+	@Setup
+	public void setup() {
+		listener = new XmlOutputListener();
+		xmlRecord = BenchmarkStandIns.newDocumentRecord("/test.xml", Format.XML, BenchmarkStandIns.newXml(elementCount));
+		jsonRecord = BenchmarkStandIns.newDocumentRecord("/test.json", Format.JSON, "{\"hello\":\"world\"}");
+	}
+
+	@Benchmark
+	public String xmlDocument() {
+		return listener.generateOutput(xmlRecord);
+	}
+
+	@Benchmark
+	public String nonXmlDocument() {
+		return listener.generateOutput(jsonRecord);
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+/**
+ * Determines a batch size, within a min and max, that results in batches being processed in approximately a target
+ * amount of time. Threadsafe, as it is expected to be shared by all of the threads of a batcher.
+ * <p>
+ * After each batch, the time per item is folded into a moving average, and the batch size becomes the number of items
+ * that can be processed in the target latency at that rate. The batch size is allowed to at most double after a
+ * single batch so that a few fast batches do not cause a large jump. When a batch fails, the batch size is halved.
+ */
+public class AdaptiveBatchSizeController {
+
+	// Weight given to the most recent batch when updating the moving average
+	private final static double SMOOTHING_FACTOR = 0.2;
+
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final long targetLatencyMillis;
+
+	private double batchSize;
+	private double averageMillisPerItem = -1;
+
+	/**
+	 * @param minBatchSize        the smallest batch size that will be returned
+	 * @param maxBatchSize        the largest batch size that will be returned; this is also the initial batch size
+	 * @param targetLatencyMillis the amount of time in which each batch should ideally be processed
+	 */
+	public AdaptiveBatchSizeController(int minBatchSize, int maxBatchSize, long targetLatencyMillis) {
+		if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+			throw new IllegalArgumentException(String.format("Invalid min and max batch sizes: %d and %d", minBatchSize, maxBatchSize));
+		}
+		if (targetLatencyMillis < 1) {
+			throw new IllegalArgumentException("Target latency must be greater than zero; was: " + targetLatencyMillis);
+		}
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.targetLatencyMillis = targetLatencyMillis;
+		this.batchSize = maxBatchSize;
+	}
+
+	public synchronized int getBatchSize() {
+		return (int) batchSize;
+	}
+
+	/**
+	 * @param itemCount     the number of items in the batch that was processed
+	 * @param elapsedMillis the amount of time it took to process the batch
+	 */
+	public synchronized void recordSuccess(int itemCount, long elapsedMillis) {
+		if (itemCount < 1) {
+			return;
+		}
+		double millisPerItem = Math.max(elapsedMillis, 1) / (double) itemCount;
+		averageMillisPerItem = averageMillisPerItem < 0 ?
+			millisPerItem :
+			SMOOTHING_FACTOR * millisPerItem + (1 - SMOOTHING_FACTOR) * averageMillisPerItem;
+
+		double desiredBatchSize = targetLatencyMillis / averageMillisPerItem;
+		batchSize = clamp(Math.min(desiredBatchSize, batchSize * 2));
+	}
+
+	public synchronized void recordFailure() {
+		batchSize = clamp(batchSize / 2);
+	}
+
+	private double clamp(double value) {
+		return Math.max(minBatchSize, Math.min(maxBatchSize, value));
+	}
+
+	public int getMinBatchSize() {
+		return minBatchSize;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public long getTargetLatencyMillis() {
+		return targetLatencyMillis;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.FailedRequestException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many batches can be processed at the same time, and adjusts that limit, between a min and a max, based on
+ * how the server is responding. The thread count of a batcher cannot be changed once it has started, so the batcher
+ * is expected to use the max as its thread count, with listeners then calling acquire and release around the
+ * processing of each batch.
+ * <p>
+ * The limit is adjusted in the same manner as TCP congestion control - it is increased by one after a limit's worth
+ * of batches have succeeded without a rise in latency, and it is halved when the server signals that it is overloaded,
+ * such as via an HTTP 503 or an XDMP-XDQPDISC error. The limit is decreased by one when the average batch latency
+ * rises well above the lowest average latency seen so far, as that indicates requests are queueing on the server.
+ */
+public class AdaptiveThreadCountController {
+
+	private final static Logger logger = LoggerFactory.getLogger(AdaptiveThreadCountController.class);
+
+	// Weight given to the most recent batch when updating the average latency
+	private final static double SMOOTHING_FACTOR = 0.2;
+
+	// How much the average latency can exceed the lowest average latency before the limit is decreased
+	private final static double LATENCY_TOLERANCE = 2.0;
+
+	private final static String[] BACK_PRESSURE_MESSAGES = new String[]{
+		"XDMP-XDQPDISC", "XDMP-FORESTNOTOPEN", "Service Unavailable"
+	};
+
+	private final int minThreadCount;
+	private final int maxThreadCount;
+	private final AdjustableSemaphore permits;
+
+	private int limit;
+	private int successesSinceAdjustment;
+	private double averageLatencyMillis = -1;
+	private double lowestAverageLatencyMillis = Double.MAX_VALUE;
+
+	/**
+	 * @param minThreadCount the fewest batches that can be processed at the same time
+	 * @param maxThreadCount the most batches that can be processed at the same time; should match the thread count of
+	 *                       the batcher
+	 */
+	public AdaptiveThreadCountController(int minThreadCount, int maxThreadCount) {
+		if (minThreadCount < 1 || maxThreadCount < minThreadCount) {
+			throw new IllegalArgumentException(String.format("Invalid min and max thread counts: %d and %d", minThreadCount, maxThreadCount));
+		}
+		this.minThreadCount = minThreadCount;
+		this.maxThreadCount = maxThreadCount;
+		this.limit = (minThreadCount + maxThreadCount) / 2;
+		this.permits = new AdjustableSemaphore(limit);
+	}
+
+	public void acquire() throws InterruptedException {
+		permits.acquire();
+	}
+
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @param latencyMillis the amount of time it took to process a batch
+	 */
+	public synchronized void recordSuccess(long latencyMillis) {
+		averageLatencyMillis = averageLatencyMillis < 0 ?
+			latencyMillis :
+			SMOOTHING_FACTOR * latencyMillis + (1 - SMOOTHING_FACTOR) * averageLatencyMillis;
+		lowestAverageLatencyMillis = Math.min(lowestAverageLatencyMillis, averageLatencyMillis);
+
+		successesSinceAdjustment++;
+		if (successesSinceAdjustment < limit) {
+			return;
+		}
+		if (averageLatencyMillis > lowestAverageLatencyMillis * LATENCY_TOLERANCE) {
+			setLimit(limit - 1);
+		} else {
+			setLimit(limit + 1);
+		}
+	}
+
+	/**
+	 * Halves the limit if the given failure indicates that the server is overloaded; other failures are ignored.
+	 *
+	 * @param failure
+	 */
+	public synchronized void recordFailure(Throwable failure) {
+		if (isBackPressure(failure)) {
+			setLimit(limit / 2);
+		}
+	}
+
+	protected boolean isBackPressure(Throwable failure) {
+		for (Throwable t = failure; t != null; t = t.getCause()) {
+			if (t instanceof FailedRequestException && ((FailedRequestException) t).getServerStatusCode() == 503) {
+				return true;
+			}
+			String message = t.getMessage();
+			if (message != null) {
+				for (String backPressureMessage : BACK_PRESSURE_MESSAGES) {
+					if (message.contains(backPressureMessage)) {
+						return true;
+					}
+				}
+			}
+			if (t.getCause() == t) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	private void setLimit(int newLimit) {
+		newLimit = Math.max(minThreadCount, Math.min(maxThreadCount, newLimit));
+		successesSinceAdjustment = 0;
+		if (newLimit > limit) {
+			permits.release(newLimit - limit);
+		} else if (newLimit < limit) {
+			permits.reducePermits(limit - newLimit);
+		} else {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Changing thread count limit from %d to %d; average batch latency: %.1fms", limit, newLimit, averageLatencyMillis));
+		}
+		limit = newLimit;
+	}
+
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	public int getMinThreadCount() {
+		return minThreadCount;
+	}
+
+	public int getMaxThreadCount() {
+		return maxThreadCount;
+	}
+
+	/**
+	 * Exposes reducePermits so that the number of permits can be lowered without waiting for threads to release them.
+	 */
+	private static class AdjustableSemaphore extends Semaphore {
+
+		AdjustableSemaphore(int permits) {
+			super(permits, true);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Records each batch that a job has fully processed in an append-only file, so that a job that fails or is killed
+ * can be run again and skip the URIs that it already processed.
+ * <p>
+ * Each line in the file has the server timestamp, forest name, and job batch number of a completed batch, followed by
+ * every URI in the batch, all delimited by tabs. URIs are recorded instead of batch numbers or the last URI of each
+ * forest because neither is stable between runs - batches complete out of order, batches built from an iterator of
+ * URIs are not in URI order, and a job such as a delete job changes which URIs its query matches. DMSDK does not allow
+ * a QueryBatcher to start at the server timestamp of a previous run, so the timestamp is recorded for reference only;
+ * each run uses its own consistent snapshot.
+ * <p>
+ * The URIs from a previous run are not held in memory as strings, as a job of tens of millions of URIs would then
+ * need several GB of heap before it starts. Instead, each URI is reduced to a 128-bit fingerprint - the first 16 bytes
+ * of its MD5 digest - and the fingerprints are held in sorted arrays, which costs 16 bytes per URI; e.g. 50 million
+ * URIs need 800 MB. The chance of a URI that was not completed being skipped due to a fingerprint collision is
+ * negligible. A line that was only partially written when the previous run was killed is discarded.
+ */
+public class BatchCheckpoint implements Closeable {
+
+	private final static Logger logger = LoggerFactory.getLogger(BatchCheckpoint.class);
+
+	private final File file;
+	private CompletedUris completedUris = new CompletedUris(0);
+	private final Set<Long> failedBatchNumbers = ConcurrentHashMap.newKeySet();
+	// Batches whose output is still being written after their listeners have returned, keyed on job batch number
+	private final Map<Long, DeferredBatch> deferredBatches = new ConcurrentHashMap<>();
+	private final AtomicLong skippedUriCount = new AtomicLong();
+	private final AtomicLong completedBatchCount = new AtomicLong();
+	private final AtomicLong failedBatchCount = new AtomicLong();
+	private final AtomicLong queryFailureCount = new AtomicLong();
+
+	private long previousServerTimestamp;
+	private Writer writer;
+
+	/**
+	 * Reads the URIs recorded by a previous run, if the file exists, and opens the file for appending.
+	 *
+	 * @param file
+	 */
+	public BatchCheckpoint(File file) {
+		this.file = file;
+		try {
+			if (file.exists()) {
+				truncatePartialLastLine();
+				readCompletedUris();
+				if (logger.isInfoEnabled()) {
+					logger.info(String.format("Read %d completed URIs from checkpoint file %s; previous server timestamp: %d",
+						completedUris.size(), file, previousServerTimestamp));
+				}
+			} else if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		} catch (IOException ex) {
+			throw new RuntimeException("Unable to open checkpoint file: " + file + "; cause: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * @return true if the checkpoint file recorded URIs completed by a previous run, which this run then skips
+	 */
+	public boolean isResumed() {
+		return completedUris.size() > 0;
+	}
+
+	/**
+	 * @param uris
+	 * @return the given URIs minus any that were completed by a previous run; the given array is returned if none were
+	 */
+	public String[] filterCompletedUris(String[] uris) {
+		if (completedUris.size() == 0) {
+			return uris;
+		}
+		List<String> remaining = new ArrayList<>(uris.length);
+		for (String uri : uris) {
+			if (!completedUris.contains(uri)) {
+				remaining.add(uri);
+			}
+		}
+		if (remaining.size() == uris.length) {
+			return uris;
+		}
+		skippedUriCount.addAndGet(uris.length - remaining.size());
+		return remaining.toArray(new String[0]);
+	}
+
+	/**
+	 * Appends the given batch to the checkpoint file. The file is flushed after each batch so that the batch is
+	 * recorded even if the process is killed.
+	 *
+	 * @param queryBatch
+	 */
+	public void recordCompletedBatch(QueryBatch queryBatch) {
+		StringBuilder line = new StringBuilder();
+		line.append(queryBatch.getServerTimestamp()).append('\t');
+		if (queryBatch.getForest() != null) {
+			appendEscaped(line, queryBatch.getForest().getForestName());
+		}
+		line.append('\t').append(queryBatch.getJobBatchNumber());
+		for (String uri : queryBatch.getItems()) {
+			appendEscaped(line.append('\t'), uri);
+		}
+		line.append('\n');
+
+		synchronized (this) {
+			try {
+				writer.write(line.toString());
+				writer.flush();
+			} catch (IOException ex) {
+				throw new RuntimeException("Unable to write to checkpoint file: " + file + "; cause: " + ex.getMessage(), ex);
+			}
+		}
+		completedBatchCount.incrementAndGet();
+	}
+
+	/**
+	 * Called by CheckpointListener once every listener has processed a batch. The batch is recorded as completed if it
+	 * succeeded, unless a listener deferred it, in which case it is recorded once every deferred write has completed.
+	 *
+	 * @param queryBatch     the batch as given to CheckpointListener
+	 * @param processedBatch the batch as given to the listeners, minus any URIs completed by a previous run
+	 * @param succeeded      false if a listener threw an exception or marked the batch as failed
+	 */
+	public void finishBatch(QueryBatch queryBatch, QueryBatch processedBatch, boolean succeeded) {
+		DeferredBatch deferred = deferredBatches.get(queryBatch.getJobBatchNumber());
+		if (deferred == null) {
+			finishBatch(processedBatch, succeeded);
+		} else {
+			deferred.complete(queryBatch.getJobBatchNumber(), processedBatch, succeeded);
+		}
+	}
+
+	/**
+	 * Called by a listener that hands off the output of a batch to be written after the listener has returned - e.g.
+	 * to an AsyncWriteStage - so that the batch is not recorded as completed until its output has been written. Each
+	 * call must be followed by a call to completeDeferredBatch once the write has succeeded or failed.
+	 *
+	 * @param queryEvent
+	 */
+	public void deferBatch(QueryEvent queryEvent) {
+		deferredBatches.computeIfAbsent(queryEvent.getJobBatchNumber(), batchNumber -> new DeferredBatch()).defer();
+	}
+
+	/**
+	 * @param queryEvent a batch that was given to deferBatch
+	 * @param succeeded  false if the output of the batch could not be written, in which case the batch is recorded as
+	 *                   failed
+	 */
+	public void completeDeferredBatch(QueryEvent queryEvent, boolean succeeded) {
+		DeferredBatch deferred = deferredBatches.get(queryEvent.getJobBatchNumber());
+		if (deferred == null) {
+			throw new IllegalStateException("Batch " + queryEvent.getJobBatchNumber() + " was not deferred");
+		}
+		deferred.complete(queryEvent.getJobBatchNumber(), null, succeeded);
+	}
+
+	private void finishBatch(QueryBatch processedBatch, boolean succeeded) {
+		if (succeeded) {
+			recordCompletedBatch(processedBatch);
+		} else {
+			recordFailedBatch();
+		}
+	}
+
+	/**
+	 * Marks the given batch as failed, so that it is not recorded as completed. This is intended for listeners that
+	 * handle their own failures instead of throwing an exception, such as DMSDK's ExportListener and DeleteListener.
+	 *
+	 * @param queryEvent
+	 */
+	public void markBatchFailed(QueryEvent queryEvent) {
+		failedBatchNumbers.add(queryEvent.getJobBatchNumber());
+	}
+
+	/**
+	 * @param queryEvent
+	 * @return true if the given batch was marked as failed, in which case the mark is removed
+	 */
+	public boolean removeBatchFailure(QueryEvent queryEvent) {
+		return failedBatchNumbers.remove(queryEvent.getJobBatchNumber());
+	}
+
+	public void recordFailedBatch() {
+		failedBatchCount.incrementAndGet();
+	}
+
+	public void recordQueryFailure() {
+		queryFailureCount.incrementAndGet();
+	}
+
+	/**
+	 * @return true if any batch failed or any URIs could not be read, in which case the job needs to be run again
+	 */
+	public boolean hasFailures() {
+		return failedBatchCount.get() > 0 || queryFailureCount.get() > 0;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException ex) {
+				logger.warn("Unable to close checkpoint file: " + file + "; cause: " + ex.getMessage(), ex);
+			}
+			writer = null;
+		}
+	}
+
+	/**
+	 * Closes and deletes the checkpoint file; typically called after a job completes without any failures.
+	 */
+	public void delete() {
+		close();
+		if (file.exists() && !file.delete()) {
+			logger.warn("Unable to delete checkpoint file: " + file);
+		}
+	}
+
+	/**
+	 * Reads the file twice - first to count the URIs and then to fingerprint them - so that the fingerprint arrays are
+	 * allocated once at their exact size.
+	 */
+	private void readCompletedUris() throws IOException {
+		long[] count = new long[1];
+		readCompletedUris(uri -> count[0]++);
+		if (count[0] > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Checkpoint file " + file + " has more URIs than can be tracked: " + count[0]);
+		}
+		CompletedUris uris = new CompletedUris((int) count[0]);
+		readCompletedUris(uris::add);
+		uris.sort();
+		this.completedUris = uris;
+	}
+
+	private void readCompletedUris(Consumer<String> uriConsumer) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length < 3) {
+					continue;
+				}
+				previousServerTimestamp = Long.parseLong(fields[0]);
+				for (int i = 3; i < fields.length; i++) {
+					uriConsumer.accept(unescape(fields[i]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * A process that is killed while writing a batch may leave a partial line at the end of the file. That line is
+	 * removed so that it's not read as a batch, and so that the next batch is not appended to it.
+	 */
+	private void truncatePartialLastLine() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long position = raf.length();
+			byte[] buffer = new byte[8192];
+			while (position > 0) {
+				int length = (int) Math.min(buffer.length, position);
+				raf.seek(position - length);
+				raf.readFully(buffer, 0, length);
+				for (int i = length - 1; i >= 0; i--) {
+					if (buffer[i] == '\n') {
+						long end = position - length + i + 1;
+						if (end < raf.length()) {
+							logger.warn("Removing partially written batch from end of checkpoint file: " + file);
+							raf.setLength(end);
+						}
+						return;
+					}
+				}
+				position -= length;
+			}
+			raf.setLength(0);
+		}
+	}
+
+	private static void appendEscaped(StringBuilder sb, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				default:
+					sb.append(c);
+			}
+		}
+	}
+
+	private static String unescape(String value) {
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char next = value.charAt(++i);
+				sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Tracks a batch whose output has been deferred; the batch is finished once both its listeners have returned and
+	 * every deferred write has completed, in whichever order those happen.
+	 */
+	private class DeferredBatch {
+
+		// Starts at 1 for the listeners of the batch returning
+		private int pendingCount = 1;
+		private boolean failed;
+		private QueryBatch processedBatch;
+
+		private synchronized void defer() {
+			pendingCount++;
+		}
+
+		private void complete(long batchNumber, QueryBatch batch, boolean succeeded) {
+			synchronized (this) {
+				if (batch != null) {
+					processedBatch = batch;
+				}
+				failed |= !succeeded;
+				if (--pendingCount > 0) {
+					return;
+				}
+			}
+			deferredBatches.remove(batchNumber);
+			finishBatch(processedBatch, !failed);
+		}
+	}
+
+	/**
+	 * The 128-bit fingerprints of the URIs completed by a previous run, held as pairs of longs in parallel arrays that
+	 * are sorted once every URI has been added, and then searched via a binary search.
+	 */
+	private static class CompletedUris {
+
+		private final static ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+			try {
+				return MessageDigest.getInstance("MD5");
+			} catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException("MD5 is not available; cause: " + ex.getMessage(), ex);
+			}
+		});
+
+		private final long[] high;
+		private final long[] low;
+		private int size;
+
+		private CompletedUris(int capacity) {
+			this.high = new long[capacity];
+			this.low = new long[capacity];
+		}
+
+		private void add(String uri) {
+			byte[] digest = digest(uri);
+			high[size] = toLong(digest, 0);
+			low[size] = toLong(digest, 8);
+			size++;
+		}
+
+		private boolean contains(String uri) {
+			byte[] digest = digest(uri);
+			long h = toLong(digest, 0);
+			long l = toLong(digest, 8);
+			int from = 0;
+			int to = size - 1;
+			while (from <= to) {
+				int mid = (from + to) >>> 1;
+				int comparison = compare(high[mid], low[mid], h, l);
+				if (comparison < 0) {
+					from = mid + 1;
+				} else if (comparison > 0) {
+					to = mid - 1;
+				} else {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int size() {
+			return size;
+		}
+
+		private void sort() {
+			sort(0, size - 1);
+		}
+
+		// Quicksort of the parallel arrays, recursing into the smaller partition so that the stack stays shallow
+		private void sort(int from, int to) {
+			while (from < to) {
+				int mid = (from + to) >>> 1;
+				long pivotHigh = high[mid];
+				long pivotLow = low[mid];
+				int i = from;
+				int j = to;
+				while (i <= j) {
+					while (compare(high[i], low[i], pivotHigh, pivotLow) < 0) {
+						i++;
+					}
+					while (compare(high[j], low[j], pivotHigh, pivotLow) > 0) {
+						j--;
+					}
+					if (i <= j) {
+						swap(i++, j--);
+					}
+				}
+				if (j - from < to - i) {
+					sort(from, j);
+					from = i;
+				} else {
+					sort(i, to);
+					to = j;
+				}
+			}
+		}
+
+		private void swap(int i, int j) {
+			long h = high[i];
+			long l = low[i];
+			high[i] = high[j];
+			low[i] = low[j];
+			high[j] = h;
+			low[j] = l;
+		}
+
+		private static int compare(long high1, long low1, long high2, long low2) {
+			int comparison = Long.compare(high1, high2);
+			return comparison != 0 ? comparison : Long.compare(low1, low2);
+		}
+
+		private static byte[] digest(String uri) {
+			return DIGEST.get().digest(uri.getBytes(StandardCharsets.UTF_8));
+		}
+
+		private static long toLong(byte[] bytes, int offset) {
+			long value = 0;
+			for (int i = offset; i < offset + 8; i++) {
+				value = (value << 8) | (bytes[i] & 0xFF);
+			}
+			return value;
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getPreviouslyCompletedUriCount() {
+		return completedUris.size();
+	}
+
+	public long getPreviousServerTimestamp() {
+		return previousServerTimestamp;
+	}
+
+	public long getSkippedUriCount() {
+		return skippedUriCount.get();
+	}
+
+	public long getCompletedBatchCount() {
+		return completedBatchCount.get();
+	}
+
+	public long getFailedBatchCount() {
+		return failedBatchCount.get();
+	}
+
+	public long getQueryFailureCount() {
+		return queryFailureCount.get();
+	}
+}
@@ -17,11 +17,33 @@ package com.marklogic.client.ext.datamovement;
 
 import com.marklogic.client.datamovement.Batcher;
 import com.marklogic.client.datamovement.ForestConfiguration;
+import com.marklogic.client.ext.datamovement.util.AsyncJobs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * Captures configurable data for a WriteBatcher or QueryBatcher.
+ * <p>
+ * Setting a target batch latency enables adaptive batch sizing for a QueryBatcher. The QueryBatcher then uses the max
+ * batch size - which defaults to the batch size - and each listener that processes the URIs in a batch is wrapped in
+ * an AdaptiveBatchSizeListener, which splits each batch into smaller batches based on how long previous batches took
+ * to process.
+ * <p>
+ * Enabling adaptive thread count for a QueryBatcher results in the thread count being treated as a max. The number of
+ * batches that are processed at the same time is then adjusted between the min thread count and the thread count by
+ * an AdaptiveThreadCountController, based on batch latency and on failures that indicate the server is overloaded.
+ * <p>
+ * Setting a max number of URIs or batches per second for a QueryBatcher results in a RateLimitingListener being added
+ * before its other listeners, which blocks each thread as needed so that batches are processed at an even rate.
+ * <p>
+ * Each JobMetricsExporter that is added publishes the JobMetrics of a QueryBatcher job - e.g. via JMX or Micrometer -
+ * while the job runs.
+ * <p>
+ * This class only holds these settings; QueryBatcherListeners applies them to the listeners of a QueryBatcher.
  */
 public class BatcherConfig {
 
@@ -36,6 +58,24 @@ public class BatcherConfig {
 	private Integer threadCount = DEFAULT_THREAD_COUNT;
 	private ForestConfiguration forestConfig;
 
+	private Integer minBatchSize;
+	private Integer maxBatchSize;
+	private Long targetBatchLatencyMillis;
+
+	private boolean adaptiveThreadCount = false;
+	private Integer minThreadCount;
+
+	// If set, shared with other batchers instead of a new controller being created for each batcher
+	private AdaptiveThreadCountController adaptiveThreadCountController;
+
+	private Double maxUrisPerSecond;
+	private Double maxBatchesPerSecond;
+
+	private List<JobMetricsExporter> jobMetricsExporters;
+
+	// Finishes jobs that are run asynchronously; defaults to an executor shared by all jobs
+	private Executor completionExecutor;
+
 	public void prepareBatcher(Batcher batcher) {
 		if (jobId != null) {
 			batcher.withJobId(jobId);
@@ -43,7 +83,9 @@ public class BatcherConfig {
 		if (jobName != null) {
 			batcher.withJobName(jobName);
 		}
-		if (batchSize != null && batchSize > 0) {
+		if (isAdaptiveBatchSize()) {
+			batcher.withBatchSize(getEffectiveMaxBatchSize());
+		} else if (batchSize != null && batchSize > 0) {
 			batcher.withBatchSize(batchSize);
 		}
 		if (threadCount != null && threadCount > 0) {
@@ -54,6 +96,21 @@ public class BatcherConfig {
 		}
 	}
 
+	public boolean isAdaptiveBatchSize() {
+		return targetBatchLatencyMillis != null && targetBatchLatencyMillis > 0;
+	}
+
+	/**
+	 * @return the max batch size if set, otherwise the batch size; used as the batch size of the batcher when adaptive
+	 * batch sizing is enabled
+	 */
+	public int getEffectiveMaxBatchSize() {
+		if (maxBatchSize != null && maxBatchSize > 0) {
+			return maxBatchSize;
+		}
+		return batchSize != null && batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+	}
+
 	public String getJobName() {
 		return jobName;
 	}
@@ -98,4 +155,134 @@ public class BatcherConfig {
 		this.forestConfig = forestConfig;
 		return this;
 	}
+
+	public Integer getMinBatchSize() {
+		return minBatchSize;
+	}
+
+	/**
+	 * @param minBatchSize the smallest batch size used when adaptive batch sizing is enabled; defaults to 1
+	 */
+	public BatcherConfig setMinBatchSize(Integer minBatchSize) {
+		this.minBatchSize = minBatchSize;
+		return this;
+	}
+
+	public Integer getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * @param maxBatchSize the largest batch size used when adaptive batch sizing is enabled; defaults to the batch size
+	 */
+	public BatcherConfig setMaxBatchSize(Integer maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+		return this;
+	}
+
+	public Long getTargetBatchLatencyMillis() {
+		return targetBatchLatencyMillis;
+	}
+
+	/**
+	 * @param targetBatchLatencyMillis if set, enables adaptive batch sizing, where the batch size is adjusted so that
+	 *                                 each batch is processed in approximately this many milliseconds
+	 */
+	public BatcherConfig setTargetBatchLatencyMillis(Long targetBatchLatencyMillis) {
+		this.targetBatchLatencyMillis = targetBatchLatencyMillis;
+		return this;
+	}
+
+	public boolean isAdaptiveThreadCount() {
+		return adaptiveThreadCount;
+	}
+
+	/**
+	 * @param adaptiveThreadCount if true, the number of batches processed at the same time is adjusted between the min
+	 *                            thread count and the thread count based on how the server is responding
+	 */
+	public BatcherConfig setAdaptiveThreadCount(boolean adaptiveThreadCount) {
+		this.adaptiveThreadCount = adaptiveThreadCount;
+		return this;
+	}
+
+	public AdaptiveThreadCountController getAdaptiveThreadCountController() {
+		return adaptiveThreadCountController;
+	}
+
+	/**
+	 * @param adaptiveThreadCountController if set, limits how many batches are processed at the same time by this
+	 *                                      batcher and by any other batcher it's set on, regardless of whether
+	 *                                      adaptive thread count is enabled; a min equal to the max gives a fixed limit
+	 */
+	public BatcherConfig setAdaptiveThreadCountController(AdaptiveThreadCountController adaptiveThreadCountController) {
+		this.adaptiveThreadCountController = adaptiveThreadCountController;
+		return this;
+	}
+
+	public Double getMaxUrisPerSecond() {
+		return maxUrisPerSecond;
+	}
+
+	/**
+	 * @param maxUrisPerSecond if set, limits the rate at which a QueryBatcher processes URIs, across all of its threads
+	 */
+	public BatcherConfig setMaxUrisPerSecond(Double maxUrisPerSecond) {
+		this.maxUrisPerSecond = maxUrisPerSecond;
+		return this;
+	}
+
+	public Double getMaxBatchesPerSecond() {
+		return maxBatchesPerSecond;
+	}
+
+	/**
+	 * @param maxBatchesPerSecond if set, limits the rate at which a QueryBatcher processes batches, across all of its
+	 *                            threads
+	 */
+	public BatcherConfig setMaxBatchesPerSecond(Double maxBatchesPerSecond) {
+		this.maxBatchesPerSecond = maxBatchesPerSecond;
+		return this;
+	}
+
+	public Executor getCompletionExecutor() {
+		return completionExecutor != null ? completionExecutor : AsyncJobs.getDefaultCompletionExecutor();
+	}
+
+	/**
+	 * @param completionExecutor finishes each QueryBatcher job that is run asynchronously - e.g. stopping the job and
+	 *                           writing any file footers - once the job has completed
+	 */
+	public BatcherConfig setCompletionExecutor(Executor completionExecutor) {
+		this.completionExecutor = completionExecutor;
+		return this;
+	}
+
+	public List<JobMetricsExporter> getJobMetricsExporters() {
+		return jobMetricsExporters;
+	}
+
+	/**
+	 * @param exporter publishes the JobMetrics of each QueryBatcher job while it runs; requires metrics to be collected
+	 */
+	public BatcherConfig addJobMetricsExporter(JobMetricsExporter exporter) {
+		if (jobMetricsExporters == null) {
+			jobMetricsExporters = new ArrayList<>();
+		}
+		jobMetricsExporters.add(exporter);
+		return this;
+	}
+
+	public Integer getMinThreadCount() {
+		return minThreadCount;
+	}
+
+	/**
+	 * @param minThreadCount the fewest batches processed at the same time when adaptive thread count is enabled;
+	 *                       defaults to 1
+	 */
+	public BatcherConfig setMinThreadCount(Integer minThreadCount) {
+		this.minThreadCount = minThreadCount;
+		return this;
+	}
 }
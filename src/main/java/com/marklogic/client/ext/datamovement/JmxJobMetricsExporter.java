@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers a JobMetricsMXBean for each job with an MBeanServer - the platform MBeanServer by default - under an
+ * ObjectName of the form "com.marklogic.client.ext.datamovement:type=QueryBatcherJob,name=(job name),id=(job ID)".
+ * The MXBean is unregistered once the job has completed. A failure to register is logged and does not affect the job.
+ */
+public class JmxJobMetricsExporter implements JobMetricsExporter {
+
+	public final static String DEFAULT_DOMAIN = "com.marklogic.client.ext.datamovement";
+
+	private final static Logger logger = LoggerFactory.getLogger(JmxJobMetricsExporter.class);
+
+	private final MBeanServer mbeanServer;
+	private final String domain;
+
+	public JmxJobMetricsExporter() {
+		this(ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+	}
+
+	public JmxJobMetricsExporter(MBeanServer mbeanServer, String domain) {
+		this.mbeanServer = mbeanServer;
+		this.domain = domain;
+	}
+
+	@Override
+	public Closeable export(JobMetrics jobMetrics, String jobName, String jobId) {
+		final ObjectName objectName;
+		try {
+			objectName = newObjectName(jobName, jobId);
+			mbeanServer.registerMBean(new JobMetricsMXBeanAdapter(jobMetrics, jobName, jobId), objectName);
+		} catch (JMException ex) {
+			logger.warn("Unable to register MXBean for job metrics; cause: " + ex.getMessage(), ex);
+			return () -> {
+			};
+		}
+		return () -> {
+			try {
+				mbeanServer.unregisterMBean(objectName);
+			} catch (JMException ex) {
+				logger.warn("Unable to unregister MXBean for job metrics; cause: " + ex.getMessage());
+			}
+		};
+	}
+
+	public ObjectName newObjectName(String jobName, String jobId) throws JMException {
+		return new ObjectName(String.format("%s:type=QueryBatcherJob,name=%s,id=%s", domain,
+			ObjectName.quote(jobName != null ? jobName : "unnamed"), ObjectName.quote(String.valueOf(jobId))));
+	}
+
+	private static class JobMetricsMXBeanAdapter implements JobMetricsMXBean {
+
+		private final JobMetrics jobMetrics;
+		private final String jobName;
+		private final String jobId;
+
+		private JobMetricsMXBeanAdapter(JobMetrics jobMetrics, String jobName, String jobId) {
+			this.jobMetrics = jobMetrics;
+			this.jobName = jobName;
+			this.jobId = jobId;
+		}
+
+		@Override
+		public String getJobName() {
+			return jobName;
+		}
+
+		@Override
+		public String getJobId() {
+			return jobId;
+		}
+
+		@Override
+		public long getBatchCount() {
+			return jobMetrics.getBatchCount();
+		}
+
+		@Override
+		public long getUriCount() {
+			return jobMetrics.getUriCount();
+		}
+
+		@Override
+		public long getBytesExported() {
+			return jobMetrics.getBytesExported();
+		}
+
+		@Override
+		public long getBatchFailureCount() {
+			return jobMetrics.getBatchFailureCount();
+		}
+
+		@Override
+		public long getQueryFailureCount() {
+			return jobMetrics.getQueryFailureCount();
+		}
+
+		@Override
+		public long getBatchesInProgress() {
+			return jobMetrics.getBatchesInProgress();
+		}
+
+		@Override
+		public double getUrisPerSecond() {
+			return jobMetrics.getUrisPerSecond();
+		}
+
+		@Override
+		public double getBytesPerSecond() {
+			return jobMetrics.getBytesPerSecond();
+		}
+
+		@Override
+		public double getTotalBatchLatencyMillis() {
+			return jobMetrics.getTotalBatchLatencyMillis();
+		}
+
+		@Override
+		public double getBatchLatencyMillisP50() {
+			return jobMetrics.getBatchLatencyMillis(50);
+		}
+
+		@Override
+		public double getBatchLatencyMillisP95() {
+			return jobMetrics.getBatchLatencyMillis(95);
+		}
+
+		@Override
+		public double getBatchLatencyMillisP99() {
+			return jobMetrics.getBatchLatencyMillis(99);
+		}
+
+		@Override
+		public long getElapsedMillis() {
+			return jobMetrics.getElapsedMillis();
+		}
+
+		@Override
+		public long getEstimatedRemainingMillis() {
+			return jobMetrics.getEstimatedRemainingMillis();
+		}
+	}
+}
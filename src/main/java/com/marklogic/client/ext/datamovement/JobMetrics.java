@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.ext.datamovement.util.LatencyHistogram;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Live metrics for a single QueryBatcher job, available via QueryBatcherJobTicket while the job runs and after it
+ * completes. Batches are recorded by JobMetricsListener, which AbstractQueryBatcherJob and QueryBatcherTemplate
+ * install automatically.
+ * <p>
+ * The latency of a batch is the time taken by all of the job's listeners to process it. Bytes exported are reported
+ * by listeners and jobs that know the size of what they export; the count is otherwise zero. DMSDK does not know how
+ * many URIs a query will match before it finishes, so an estimate of the time remaining requires the expected number
+ * of URIs to be set.
+ */
+public class JobMetrics {
+
+	private final LongAdder batchCount = new LongAdder();
+	private final LongAdder uriCount = new LongAdder();
+	private final LongAdder bytesExported = new LongAdder();
+	private final LongAdder batchFailureCount = new LongAdder();
+	private final LongAdder queryFailureCount = new LongAdder();
+	private final LongAdder totalLatencyNanos = new LongAdder();
+	private final AtomicLong batchesInProgress = new AtomicLong();
+	private final LatencyHistogram latencyMicros = new LatencyHistogram();
+	private final Map<String, GroupMetrics> forestMetrics = new ConcurrentHashMap<>();
+	private final Map<String, GroupMetrics> hostMetrics = new ConcurrentHashMap<>();
+	private final List<LongSupplier> bytesExportedSources = new CopyOnWriteArrayList<>();
+
+	private volatile long startNanos;
+	private volatile long finishNanos;
+	private volatile long expectedUriCount = -1;
+
+	public void start() {
+		startNanos = System.nanoTime();
+		finishNanos = 0;
+	}
+
+	public void finish() {
+		finishNanos = System.nanoTime();
+	}
+
+	public void batchStarted() {
+		batchesInProgress.incrementAndGet();
+	}
+
+	/**
+	 * @param queryBatch
+	 * @param latencyNanos the time taken by all of the job's listeners to process the batch
+	 */
+	public void recordBatch(QueryBatch queryBatch, long latencyNanos) {
+		batchesInProgress.decrementAndGet();
+		int uris = queryBatch.getItems() != null ? queryBatch.getItems().length : 0;
+		batchCount.increment();
+		uriCount.add(uris);
+		totalLatencyNanos.add(latencyNanos);
+		latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+		if (queryBatch.getForest() != null) {
+			String forestName = queryBatch.getForest().getForestName();
+			if (forestName != null) {
+				forestMetrics.computeIfAbsent(forestName, name -> new GroupMetrics()).record(uris, latencyNanos);
+			}
+		}
+		String host = getHost(queryBatch);
+		if (host != null) {
+			hostMetrics.computeIfAbsent(host, name -> new GroupMetrics()).record(uris, latencyNanos);
+		}
+	}
+
+	public void recordBatchFailure() {
+		batchFailureCount.increment();
+	}
+
+	public void recordQueryFailure() {
+		queryFailureCount.increment();
+	}
+
+	public void recordBytesExported(long bytes) {
+		if (bytes > 0) {
+			bytesExported.add(bytes);
+		}
+	}
+
+	/**
+	 * For a job that can report how many bytes it has written in total - e.g. to a single file - instead of recording
+	 * bytes as each document is exported.
+	 *
+	 * @param source
+	 */
+	public void addBytesExportedSource(LongSupplier source) {
+		bytesExportedSources.add(source);
+	}
+
+	/**
+	 * The host that processed a batch is the host of the batch's client, which DMSDK selects based on the forest.
+	 */
+	private String getHost(QueryBatch queryBatch) {
+		if (queryBatch.getClient() != null) {
+			return queryBatch.getClient().getHost();
+		}
+		return queryBatch.getForest() != null ? queryBatch.getForest().getPreferredHost() : null;
+	}
+
+	public long getBatchCount() {
+		return batchCount.sum();
+	}
+
+	public long getUriCount() {
+		return uriCount.sum();
+	}
+
+	public long getBytesExported() {
+		long total = bytesExported.sum();
+		for (LongSupplier source : bytesExportedSources) {
+			total += source.getAsLong();
+		}
+		return total;
+	}
+
+	/**
+	 * @return the number of times a listener failed to process a batch
+	 */
+	public long getBatchFailureCount() {
+		return batchFailureCount.sum();
+	}
+
+	public long getQueryFailureCount() {
+		return queryFailureCount.sum();
+	}
+
+	public long getBatchesInProgress() {
+		return batchesInProgress.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100, e.g. 95 for the 95th percentile
+	 * @return the batch latency in milliseconds at the given percentile
+	 */
+	public double getBatchLatencyMillis(double percentile) {
+		return latencyMicros.getPercentile(percentile) / 1000.0;
+	}
+
+	/**
+	 * @return the time taken by the job's listeners to process every batch so far, summed across all threads
+	 */
+	public double getTotalBatchLatencyMillis() {
+		return totalLatencyNanos.sum() / 1000000.0;
+	}
+
+	public long getElapsedMillis() {
+		if (startNanos == 0) {
+			return 0;
+		}
+		long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+		return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+	}
+
+	public double getUrisPerSecond() {
+		return perSecond(getUriCount());
+	}
+
+	public double getBytesPerSecond() {
+		return perSecond(getBytesExported());
+	}
+
+	/**
+	 * @return the estimated number of milliseconds until the job completes, based on the rate at which URIs have been
+	 * processed so far, or -1 if the expected number of URIs is not known or no URIs have been processed yet
+	 */
+	public long getEstimatedRemainingMillis() {
+		long processed = getUriCount();
+		if (expectedUriCount < 0 || processed == 0) {
+			return -1;
+		}
+		long remaining = Math.max(0, expectedUriCount - processed);
+		return (long) (remaining * ((double) getElapsedMillis() / processed));
+	}
+
+	/**
+	 * @return metrics for each forest, keyed on forest name
+	 */
+	public Map<String, GroupMetrics> getForestMetrics() {
+		return new TreeMap<>(forestMetrics);
+	}
+
+	/**
+	 * @return metrics for each host, keyed on host name
+	 */
+	public Map<String, GroupMetrics> getHostMetrics() {
+		return new TreeMap<>(hostMetrics);
+	}
+
+	public long getExpectedUriCount() {
+		return expectedUriCount;
+	}
+
+	/**
+	 * @param expectedUriCount the number of URIs the job is expected to process; used to estimate the time remaining
+	 */
+	public void setExpectedUriCount(long expectedUriCount) {
+		this.expectedUriCount = expectedUriCount;
+	}
+
+	private double perSecond(long count) {
+		long elapsed = getElapsedMillis();
+		return elapsed > 0 ? count * 1000.0 / elapsed : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("batches: %d; URIs: %d; bytes exported: %d; batch failures: %d; query failures: %d; " +
+				"elapsed ms: %d; URIs/sec: %.1f; batch latency ms p50/p95/p99: %.1f/%.1f/%.1f",
+			getBatchCount(), getUriCount(), getBytesExported(), getBatchFailureCount(), getQueryFailureCount(),
+			getElapsedMillis(), getUrisPerSecond(), getBatchLatencyMillis(50), getBatchLatencyMillis(95), getBatchLatencyMillis(99));
+	}
+
+	/**
+	 * Metrics for the batches processed by a single forest or host.
+	 */
+	public class GroupMetrics {
+
+		private final LongAdder batchCount = new LongAdder();
+		private final LongAdder uriCount = new LongAdder();
+		private final LongAdder totalLatencyNanos = new LongAdder();
+
+		private void record(int uris, long latencyNanos) {
+			batchCount.increment();
+			uriCount.add(uris);
+			totalLatencyNanos.add(latencyNanos);
+		}
+
+		public long getBatchCount() {
+			return batchCount.sum();
+		}
+
+		public long getUriCount() {
+			return uriCount.sum();
+		}
+
+		public double getAverageBatchLatencyMillis() {
+			long batches = getBatchCount();
+			return batches > 0 ? totalLatencyNanos.sum() / 1000000.0 / batches : 0;
+		}
+
+		/**
+		 * @return the number of URIs processed per second over the elapsed time of the job
+		 */
+		public double getUrisPerSecond() {
+			return perSecond(getUriCount());
+		}
+
+		@Override
+		public String toString() {
+			return String.format("batches: %d; URIs: %d; URIs/sec: %.1f; average batch latency ms: %.1f",
+				getBatchCount(), getUriCount(), getUrisPerSecond(), getAverageBatchLatencyMillis());
+		}
+	}
+}
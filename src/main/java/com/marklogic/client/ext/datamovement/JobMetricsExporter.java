@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import java.io.Closeable;
+
+/**
+ * Publishes the JobMetrics of a running QueryBatcher job to a monitoring system. An exporter is registered via
+ * BatcherConfig, and each job run by AbstractQueryBatcherJob or QueryBatcherTemplate is exported once it has started,
+ * keyed on the job name and job ID of its QueryBatcher.
+ */
+public interface JobMetricsExporter {
+
+	/**
+	 * @param jobMetrics the metrics of the job, which are updated while the job runs
+	 * @param jobName    the name of the job; may be null
+	 * @param jobId      the ID of the job
+	 * @return closed once the job has completed, so that the exporter can stop publishing the job's metrics
+	 */
+	Closeable export(JobMetrics jobMetrics, String jobName, String jobId);
+}
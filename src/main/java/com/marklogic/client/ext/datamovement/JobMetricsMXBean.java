@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+/**
+ * JMX view of the JobMetrics of a single job, as registered by JmxJobMetricsExporter.
+ */
+public interface JobMetricsMXBean {
+
+	String getJobName();
+
+	String getJobId();
+
+	long getBatchCount();
+
+	long getUriCount();
+
+	long getBytesExported();
+
+	long getBatchFailureCount();
+
+	long getQueryFailureCount();
+
+	long getBatchesInProgress();
+
+	double getUrisPerSecond();
+
+	double getBytesPerSecond();
+
+	double getTotalBatchLatencyMillis();
+
+	double getBatchLatencyMillisP50();
+
+	double getBatchLatencyMillisP95();
+
+	double getBatchLatencyMillisP99();
+
+	long getElapsedMillis();
+
+	long getEstimatedRemainingMillis();
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each invocation of a listener or document consumer, keyed on
+ * a name for each one - typically its class name - so that the cost of each stage of a job can be compared. Listeners
+ * and consumers are timed via ProfilingQueryBatchListener and ProfilingDocumentConsumer, which AbstractQueryBatcherJob
+ * and QueryBatcherTemplate apply when listener profiling is enabled.
+ * <p>
+ * CPU time and allocated bytes are measured for the current thread via ThreadMXBean, and are -1 if the JVM does not
+ * support measuring them. Because a listener calls its consumers on the same thread, the measurements of a listener
+ * include those of its consumers.
+ */
+public class ListenerProfile {
+
+	private final static Logger logger = LoggerFactory.getLogger(ListenerProfile.class);
+
+	private final static ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private final static boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+	private final static com.sun.management.ThreadMXBean allocationMXBean = initAllocationMXBean();
+
+	private final Map<String, Timings> timings = new ConcurrentHashMap<>();
+
+	private static com.sun.management.ThreadMXBean initAllocationMXBean() {
+		try {
+			if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+				if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+					return bean;
+				}
+			}
+		} catch (LinkageError e) {
+			logger.debug("Unable to measure allocated bytes per thread; cause: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Runs the given action and records its measurements under the given name, even if the action throws an
+	 * exception.
+	 *
+	 * @param name
+	 * @param action
+	 */
+	public void profile(String name, Runnable action) {
+		profile(name, () -> {
+			action.run();
+			return null;
+		});
+	}
+
+	public <T> T profile(String name, Supplier<T> action) {
+		final long threadId = Thread.currentThread().getId();
+		final long cpuStart = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+		final long allocatedStart = allocationMXBean != null ? allocationMXBean.getThreadAllocatedBytes(threadId) : 0;
+		final long wallStart = System.nanoTime();
+		try {
+			return action.get();
+		} finally {
+			long wallNanos = System.nanoTime() - wallStart;
+			long cpuNanos = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() - cpuStart : -1;
+			long allocated = allocationMXBean != null ? allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedStart : -1;
+			getTimings(name).record(wallNanos, cpuNanos, allocated);
+		}
+	}
+
+	/**
+	 * @param listener
+	 * @return the simple class name of the given listener or consumer, without the generated suffix of a lambda
+	 */
+	public static String nameOf(Object listener) {
+		String name = listener.getClass().getSimpleName();
+		int index = name.indexOf("$$Lambda");
+		return index > 0 ? name.substring(0, index) + " lambda" : name;
+	}
+
+	public Timings getTimings(String name) {
+		return timings.computeIfAbsent(name, key -> new Timings(key));
+	}
+
+	/**
+	 * @return the timings for each name, with the largest total wall time first
+	 */
+	public List<Timings> getAllTimings() {
+		List<Timings> list = new ArrayList<>(timings.values());
+		list.sort(Comparator.comparingLong(Timings::getWallNanos).reversed());
+		return list;
+	}
+
+	/**
+	 * @return one line for each name, with the largest total wall time first
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Timings t : getAllTimings()) {
+			if (sb.length() > 0) {
+				sb.append("\n");
+			}
+			sb.append(t);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The total measurements of every invocation recorded under a single name.
+	 */
+	public static class Timings {
+
+		private final String name;
+		private final LongAdder invocationCount = new LongAdder();
+		private final LongAdder wallNanos = new LongAdder();
+		private final LongAdder cpuNanos = new LongAdder();
+		private final LongAdder allocatedBytes = new LongAdder();
+
+		private Timings(String name) {
+			this.name = name;
+		}
+
+		private void record(long wall, long cpu, long allocated) {
+			invocationCount.increment();
+			wallNanos.add(wall);
+			cpuNanos.add(cpu);
+			allocatedBytes.add(allocated);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getInvocationCount() {
+			return invocationCount.sum();
+		}
+
+		public long getWallNanos() {
+			return wallNanos.sum();
+		}
+
+		/**
+		 * @return the total CPU time, or -1 if it could not be measured
+		 */
+		public long getCpuNanos() {
+			return cpuTimeSupported ? cpuNanos.sum() : -1;
+		}
+
+		/**
+		 * @return the total bytes allocated, or -1 if they could not be measured
+		 */
+		public long getAllocatedBytes() {
+			return allocationMXBean != null ? allocatedBytes.sum() : -1;
+		}
+
+		public double getAverageWallMillis() {
+			long count = getInvocationCount();
+			return count > 0 ? getWallNanos() / 1000000.0 / count : 0;
+		}
+
+		@Override
+		public String toString() {
+			long cpu = getCpuNanos();
+			long allocated = getAllocatedBytes();
+			return String.format("%s: invocations: %d; wall ms: %.1f; average wall ms: %.3f; CPU ms: %s; allocated MB: %s",
+				name, getInvocationCount(), getWallNanos() / 1000000.0, getAverageWallMillis(),
+				cpu < 0 ? "n/a" : String.format("%.1f", cpu / 1000000.0),
+				allocated < 0 ? "n/a" : String.format("%.1f", allocated / 1048576.0));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers meters for each job with a Micrometer MeterRegistry - the global registry by default - tagged with
+ * "job.name" and "job.id". The meters are removed once the job has completed.
+ * <p>
+ * Micrometer is an optional dependency of this library; this class can only be used when micrometer-core is on the
+ * classpath, which can be checked via isMicrometerAvailable().
+ */
+public class MicrometerJobMetricsExporter implements JobMetricsExporter {
+
+	public final static String DEFAULT_PREFIX = "marklogic.datamovement.job";
+
+	private final MeterRegistry meterRegistry;
+	private final String prefix;
+
+	public MicrometerJobMetricsExporter() {
+		this(Metrics.globalRegistry, DEFAULT_PREFIX);
+	}
+
+	public MicrometerJobMetricsExporter(MeterRegistry meterRegistry) {
+		this(meterRegistry, DEFAULT_PREFIX);
+	}
+
+	public MicrometerJobMetricsExporter(MeterRegistry meterRegistry, String prefix) {
+		this.meterRegistry = meterRegistry;
+		this.prefix = prefix;
+	}
+
+	/**
+	 * @return true if Micrometer is on the classpath, and thus this class can be used
+	 */
+	public static boolean isMicrometerAvailable() {
+		try {
+			Class.forName("io.micrometer.core.instrument.MeterRegistry", false, MicrometerJobMetricsExporter.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	@Override
+	public Closeable export(JobMetrics jobMetrics, String jobName, String jobId) {
+		Tags tags = Tags.of("job.name", jobName != null ? jobName : "unnamed", "job.id", String.valueOf(jobId));
+		List<Meter> meters = new ArrayList<>();
+
+		meters.add(FunctionCounter.builder(prefix + ".batches", jobMetrics, JobMetrics::getBatchCount)
+			.tags(tags).description("Batches processed by the job's listeners").register(meterRegistry));
+		meters.add(FunctionCounter.builder(prefix + ".uris", jobMetrics, JobMetrics::getUriCount)
+			.tags(tags).description("URIs processed by the job's listeners").register(meterRegistry));
+		meters.add(FunctionCounter.builder(prefix + ".bytes.exported", jobMetrics, JobMetrics::getBytesExported)
+			.tags(tags).baseUnit("bytes").description("Bytes exported by the job").register(meterRegistry));
+		meters.add(FunctionCounter.builder(prefix + ".batch.failures", jobMetrics, JobMetrics::getBatchFailureCount)
+			.tags(tags).description("Batches that a listener failed to process").register(meterRegistry));
+		meters.add(FunctionCounter.builder(prefix + ".query.failures", jobMetrics, JobMetrics::getQueryFailureCount)
+			.tags(tags).description("Failures to retrieve a batch of URIs").register(meterRegistry));
+
+		meters.add(Gauge.builder(prefix + ".batches.in.progress", jobMetrics, JobMetrics::getBatchesInProgress)
+			.tags(tags).description("Batches currently being processed").register(meterRegistry));
+		meters.add(Gauge.builder(prefix + ".uris.per.second", jobMetrics, JobMetrics::getUrisPerSecond)
+			.tags(tags).description("URIs processed per second since the job started").register(meterRegistry));
+		meters.add(Gauge.builder(prefix + ".bytes.per.second", jobMetrics, JobMetrics::getBytesPerSecond)
+			.tags(tags).baseUnit("bytes").description("Bytes exported per second since the job started").register(meterRegistry));
+
+		meters.add(FunctionTimer.builder(prefix + ".batch.latency", jobMetrics, JobMetrics::getBatchCount,
+				JobMetrics::getTotalBatchLatencyMillis, TimeUnit.MILLISECONDS)
+			.tags(tags).description("Time taken by the job's listeners to process a batch").register(meterRegistry));
+		for (int percentile : new int[]{50, 95, 99}) {
+			meters.add(TimeGauge.builder(prefix + ".batch.latency.percentile", jobMetrics, TimeUnit.MILLISECONDS,
+					metrics -> metrics.getBatchLatencyMillis(percentile))
+				.tags(tags.and("percentile", String.valueOf(percentile)))
+				.description("Time taken by the job's listeners to process a batch, at the given percentile")
+				.register(meterRegistry));
+		}
+
+		return () -> meters.forEach(meterRegistry::remove);
+	}
+}
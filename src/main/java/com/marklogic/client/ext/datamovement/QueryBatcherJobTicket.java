@@ -19,20 +19,57 @@ import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.JobTicket;
 import com.marklogic.client.datamovement.QueryBatcher;
 
+import java.io.Closeable;
+import java.io.IOException;
+
 /**
  * Receipt-style object for QueryBatcherTemplate methods. Intended to give the client control over how the job is stopped,
- * if it hasn't been already, as well as the JobTicket so that other job information can be retrieved.
+ * if it hasn't been already, as well as the JobTicket so that other job information can be retrieved. The JobMetrics,
+ * if metrics were collected, are updated while the job runs.
  */
 public class QueryBatcherJobTicket {
 
 	private DataMovementManager dataMovementManager;
 	private QueryBatcher queryBatcher;
 	private JobTicket jobTicket;
+	private JobMetrics jobMetrics;
+	private Closeable jobMetricsExport;
+	private ListenerProfile listenerProfile;
 
 	public QueryBatcherJobTicket(DataMovementManager dataMovementManager, QueryBatcher queryBatcher, JobTicket jobTicket) {
+		this(dataMovementManager, queryBatcher, jobTicket, null);
+	}
+
+	public QueryBatcherJobTicket(DataMovementManager dataMovementManager, QueryBatcher queryBatcher, JobTicket jobTicket, JobMetrics jobMetrics) {
+		this(dataMovementManager, queryBatcher, jobTicket, jobMetrics, null);
+	}
+
+	/**
+	 * @param jobMetricsExport if not null, closed by stopExportingJobMetrics
+	 */
+	public QueryBatcherJobTicket(DataMovementManager dataMovementManager, QueryBatcher queryBatcher, JobTicket jobTicket,
+	                             JobMetrics jobMetrics, Closeable jobMetricsExport) {
 		this.dataMovementManager = dataMovementManager;
 		this.queryBatcher = queryBatcher;
 		this.jobTicket = jobTicket;
+		this.jobMetrics = jobMetrics;
+		this.jobMetricsExport = jobMetricsExport;
+	}
+
+	/**
+	 * Stops publishing the job's metrics via any JobMetricsExporter. This is done automatically when the job is run
+	 * with awaitCompletion set to true; otherwise, the client should call this once the job has completed.
+	 */
+	public synchronized void stopExportingJobMetrics() {
+		if (jobMetricsExport != null) {
+			try {
+				jobMetricsExport.close();
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to stop exporting job metrics; cause: " + e.getMessage(), e);
+			} finally {
+				jobMetricsExport = null;
+			}
+		}
 	}
 
 	public DataMovementManager getDataMovementManager() {
@@ -46,4 +83,22 @@ public class QueryBatcherJobTicket {
 	public JobTicket getJobTicket() {
 		return jobTicket;
 	}
+
+	/**
+	 * @return the metrics for the job, or null if metrics were not collected
+	 */
+	public JobMetrics getJobMetrics() {
+		return jobMetrics;
+	}
+
+	/**
+	 * @return the time and memory used by each listener of the job, or null if listeners were not profiled
+	 */
+	public ListenerProfile getListenerProfile() {
+		return listenerProfile;
+	}
+
+	public void setListenerProfile(ListenerProfile listenerProfile) {
+		this.listenerProfile = listenerProfile;
+	}
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.datamovement.Batcher;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.AbstractExportBatchesListener;
+import com.marklogic.client.ext.datamovement.listener.AdaptiveBatchSizeListener;
+import com.marklogic.client.ext.datamovement.listener.AdaptiveThreadCountListener;
+import com.marklogic.client.ext.datamovement.listener.ProfilingQueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.RateLimitingListener;
+import com.marklogic.client.ext.datamovement.listener.SimpleBatchLoggingListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies the QueryBatcher-specific settings of a BatcherConfig - adaptive batch size and thread count, rate limits,
+ * listener profiling and metrics exporters - to the listeners of a QueryBatcher job. Used by QueryBatcherTemplate and
+ * AbstractQueryBatcherJob; a new instance is expected to be created for each job so that it reflects the current
+ * settings.
+ */
+public class QueryBatcherListeners {
+
+	private final static Logger logger = LoggerFactory.getLogger(QueryBatcherListeners.class);
+
+	private final BatcherConfig config;
+
+	public QueryBatcherListeners(BatcherConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * If adaptive batch sizing is enabled, wraps the given listener so that it processes batches of a size determined
+	 * by a new AdaptiveBatchSizeController. Listeners that write a file per batch or that don't process the URIs in a
+	 * batch are returned as-is.
+	 *
+	 * @param listener
+	 * @return
+	 */
+	public QueryBatchListener applyAdaptiveBatchSize(QueryBatchListener listener) {
+		if (!config.isAdaptiveBatchSize()
+			|| listener instanceof AdaptiveBatchSizeListener
+			|| listener instanceof AbstractExportBatchesListener
+			|| listener instanceof SimpleBatchLoggingListener) {
+			return listener;
+		}
+		Integer minBatchSize = config.getMinBatchSize();
+		int min = minBatchSize != null && minBatchSize > 0 ? minBatchSize : 1;
+		int max = config.getEffectiveMaxBatchSize();
+		return new AdaptiveBatchSizeListener(listener, new AdaptiveBatchSizeController(Math.min(min, max), max, config.getTargetBatchLatencyMillis()));
+	}
+
+	/**
+	 * @return a new controller to be shared by all of the listeners of a single QueryBatcher, or null if adaptive
+	 * thread count is not enabled; or the controller set on the config, which may be shared with other batchers
+	 */
+	public AdaptiveThreadCountController newAdaptiveThreadCountController() {
+		if (config.getAdaptiveThreadCountController() != null) {
+			return config.getAdaptiveThreadCountController();
+		}
+		if (!config.isAdaptiveThreadCount()) {
+			return null;
+		}
+		Integer threadCount = config.getThreadCount();
+		Integer minThreadCount = config.getMinThreadCount();
+		int max = threadCount != null && threadCount > 0 ? threadCount : BatcherConfig.DEFAULT_THREAD_COUNT;
+		int min = minThreadCount != null && minThreadCount > 0 ? Math.min(minThreadCount, max) : 1;
+		return new AdaptiveThreadCountController(min, max);
+	}
+
+	/**
+	 * If the given controller is not null, wraps the given listeners in a single listener so that each batch is only
+	 * processed - by all of the listeners - when the controller allows it to.
+	 *
+	 * @param listeners
+	 * @param controller
+	 * @return
+	 */
+	public List<QueryBatchListener> applyAdaptiveThreadCount(List<QueryBatchListener> listeners, AdaptiveThreadCountController controller) {
+		if (controller == null || listeners.isEmpty()) {
+			return listeners;
+		}
+		return new ArrayList<>(Arrays.asList(new AdaptiveThreadCountListener(listeners, controller)));
+	}
+
+	/**
+	 * @return new listeners - one for each of max URIs per second and max batches per second that is set - to be added
+	 * to a QueryBatcher before any other listeners
+	 */
+	public List<QueryBatchListener> newRateLimitingListeners() {
+		List<QueryBatchListener> listeners = new ArrayList<>();
+		Double maxUrisPerSecond = config.getMaxUrisPerSecond();
+		if (maxUrisPerSecond != null && maxUrisPerSecond > 0) {
+			listeners.add(new RateLimitingListener(new RateLimiter(maxUrisPerSecond), true));
+		}
+		Double maxBatchesPerSecond = config.getMaxBatchesPerSecond();
+		if (maxBatchesPerSecond != null && maxBatchesPerSecond > 0) {
+			listeners.add(new RateLimitingListener(new RateLimiter(maxBatchesPerSecond), false));
+		}
+		return listeners;
+	}
+
+	/**
+	 * If the given profile is not null, wraps the given listener so that the time and memory it uses for each batch
+	 * are recorded in the profile. This is expected to be applied after adaptive batch sizing and before adaptive
+	 * thread count, so that the time spent waiting to process a batch is not included. Logging listeners are returned
+	 * as-is.
+	 *
+	 * @param listener
+	 * @param profile
+	 * @return
+	 */
+	public QueryBatchListener applyListenerProfile(QueryBatchListener listener, ListenerProfile profile) {
+		if (profile == null || listener instanceof SimpleBatchLoggingListener) {
+			return listener;
+		}
+		QueryBatchListener named = listener instanceof AdaptiveBatchSizeListener ? ((AdaptiveBatchSizeListener) listener).getListener() : listener;
+		return new ProfilingQueryBatchListener(ListenerProfile.nameOf(named), listener, profile);
+	}
+
+	/**
+	 * Exports the given metrics via each JobMetricsExporter of the config, keyed on the job name and ID of the given
+	 * batcher, which is expected to have been started so that it has a job ID.
+	 *
+	 * @param jobMetrics
+	 * @param batcher
+	 * @return closes every export once the job has completed; failures to close are logged
+	 */
+	public Closeable exportJobMetrics(JobMetrics jobMetrics, Batcher batcher) {
+		List<JobMetricsExporter> jobMetricsExporters = config.getJobMetricsExporters();
+		if (jobMetrics == null || jobMetricsExporters == null || jobMetricsExporters.isEmpty()) {
+			return () -> {
+			};
+		}
+		List<Closeable> exports = new ArrayList<>();
+		for (JobMetricsExporter exporter : jobMetricsExporters) {
+			exports.add(exporter.export(jobMetrics, batcher.getJobName(), batcher.getJobId()));
+		}
+		return () -> {
+			for (Closeable export : exports) {
+				try {
+					export.close();
+				} catch (IOException | RuntimeException ex) {
+					logger.warn("Unable to stop exporting job metrics; cause: " + ex.getMessage());
+				}
+			}
+		};
+	}
+}
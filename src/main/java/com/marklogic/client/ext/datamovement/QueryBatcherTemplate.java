@@ -17,18 +17,27 @@ package com.marklogic.client.ext.datamovement;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.*;
+import com.marklogic.client.ext.datamovement.listener.JobMetricsListener;
+import com.marklogic.client.ext.datamovement.util.AsyncJobs;
 import com.marklogic.client.query.RawCombinedQueryDefinition;
 import com.marklogic.client.query.RawStructuredQueryDefinition;
 import com.marklogic.client.query.StringQueryDefinition;
 import com.marklogic.client.query.StructuredQueryDefinition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Spring-style Template class for simplifying common usages of QueryBatcher. Threadsafe, at least as long as
- * DatabaseClient and DataMovementManager are threadsafe.
+ * DatabaseClient and DataMovementManager are threadsafe. A listener that is shared by jobs running at the same time -
+ * such as one set via setUrisReadyListeners - records the documents it exports and the failures it handles into the
+ * JobMetrics of the job whose batch it is processing.
  */
 public class QueryBatcherTemplate extends BatcherConfig {
 
@@ -37,9 +46,15 @@ public class QueryBatcherTemplate extends BatcherConfig {
 	private boolean applyConsistentSnapshot = true;
 	private boolean awaitCompletion = true;
 	private boolean stopJob = true;
+	private boolean collectMetrics = true;
+	private boolean profileListeners = false;
 	private List<QueryFailureListener> queryFailureListeners;
 	private List<QueryBatchListener> urisReadyListeners;
 
+	// A listener is instrumented only once, as DMSDK provides no way to remove the document and failure listeners that
+	// are added to it; those listeners record into the metrics of whichever job is processing the batch
+	private final Set<QueryBatchListener> instrumentedListeners = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
 	public QueryBatcherTemplate(DatabaseClient databaseClient) {
 		this.databaseClient = databaseClient;
 		this.dataMovementManager = this.databaseClient.newDataMovementManager();
@@ -78,6 +93,22 @@ public class QueryBatcherTemplate extends BatcherConfig {
 		return apply(urisReadyListener, new UriPatternQueryBatcherBuilder(uriPattern));
 	}
 
+	/**
+	 * Apply the given listener on batches of documents with URIs matching the given URI pattern, where the pattern is
+	 * matched against each forest in parallel. The forests are determined by the ForestConfiguration set on this
+	 * class, if one has been set.
+	 *
+	 * @param urisReadyListener
+	 * @param uriPattern
+	 * @return
+	 */
+	public QueryBatcherJobTicket applyOnUriPatternByForest(QueryBatchListener urisReadyListener, String uriPattern) {
+		UriPatternQueryBatcherBuilder builder = new UriPatternQueryBatcherBuilder(uriPattern);
+		builder.setQueryEachForest(true);
+		builder.setForestConfig(getForestConfig());
+		return apply(urisReadyListener, builder);
+	}
+
 	/**
 	 * Apply the given listener on batches of documents with URIs matching the given XQuery or JavaScript query.
 	 *
@@ -173,6 +204,12 @@ public class QueryBatcherTemplate extends BatcherConfig {
 	 * getDataMovementManager() on this class.</li>
 	 * <li>It is highly unlikely that you want awaitCompletion set to false and stopJob set to true - the job will most
 	 * likely be stopped with URIs that have not be processed yet.</li>
+	 * <li>If collectMetrics is set to true (the default), then every listener is wrapped in a JobMetricsListener, and
+	 * the resulting JobMetrics is available via the QueryBatcherJobTicket.</li>
+	 * <li>The JobMetrics are published via each JobMetricsExporter added to this class until the job completes; if
+	 * awaitCompletion is false, call stopExportingJobMetrics() on the QueryBatcherJobTicket once the job completes.</li>
+	 * <li>If profileListeners is set to true, then the time and memory used by each listener are recorded in a
+	 * ListenerProfile that is available via the QueryBatcherJobTicket, and logged if awaitCompletion is true.</li>
 	 * </ol>
 	 *
 	 * @param urisReadyListener
@@ -180,29 +217,128 @@ public class QueryBatcherTemplate extends BatcherConfig {
 	 * @return
 	 */
 	public QueryBatcherJobTicket apply(QueryBatchListener urisReadyListener, QueryBatcher queryBatcher) {
+		QueryBatcherJobTicket ticket = startJob(urisReadyListener, queryBatcher, null);
+		if (awaitCompletion) {
+			queryBatcher.awaitCompletion();
+			finishJob(ticket);
+		}
+		if (stopJob) {
+			dataMovementManager.stopJob(queryBatcher);
+		}
+		return ticket;
+	}
+
+	/**
+	 * Apply the given listener on batches of documents returned by the QueryBatcher that's constructed by the given
+	 * QueryBatcherBuilder, without blocking the calling thread.
+	 *
+	 * @param urisReadyListener
+	 * @param queryBatcherBuilder
+	 * @return
+	 */
+	public CompletableFuture<QueryBatcherJobTicket> applyAsync(QueryBatchListener urisReadyListener, QueryBatcherBuilder queryBatcherBuilder) {
+		return applyAsync(urisReadyListener, queryBatcherBuilder.buildQueryBatcher(databaseClient, dataMovementManager));
+	}
+
+	/**
+	 * Apply the given listener with the given QueryBatcher without blocking the calling thread, regardless of whether
+	 * awaitCompletion is set. Once DMSDK reports that the job has completed, the job is finished - and stopped if
+	 * stopJob is true - via the completion executor.
+	 *
+	 * @param urisReadyListener
+	 * @param queryBatcher
+	 * @return completes with the ticket of the job once it has finished, or exceptionally if the job could not be
+	 * started or finished
+	 */
+	public CompletableFuture<QueryBatcherJobTicket> applyAsync(QueryBatchListener urisReadyListener, QueryBatcher queryBatcher) {
+		return AsyncJobs.runAsync(listener -> startJob(urisReadyListener, queryBatcher, listener), ticket -> {
+			finishJob(ticket);
+			if (stopJob) {
+				dataMovementManager.stopJob(queryBatcher);
+			}
+		}, getCompletionExecutor());
+	}
+
+	private void instrument(QueryBatchListener listener) {
+		if (instrumentedListeners.add(listener)) {
+			JobMetricsListener.instrument(listener);
+		}
+	}
+
+	private QueryBatcherJobTicket startJob(QueryBatchListener urisReadyListener, QueryBatcher queryBatcher, QueryBatcherListener jobCompletionListener) {
 		prepareBatcher(queryBatcher);
 
 		if (applyConsistentSnapshot) {
 			queryBatcher.withConsistentSnapshot();
 		}
 
+		QueryBatcherListeners batcherListeners = new QueryBatcherListeners(this);
+		AdaptiveThreadCountController threadCountController = batcherListeners.newAdaptiveThreadCountController();
+
+		final JobMetrics jobMetrics = collectMetrics ? new JobMetrics() : null;
+		final ListenerProfile listenerProfile = profileListeners ? new ListenerProfile() : null;
+		if (jobMetrics != null || listenerProfile != null) {
+			QueryBatchListener[] existingListeners = queryBatcher.getUrisReadyListeners();
+			if (existingListeners != null) {
+				for (int i = 0; i < existingListeners.length; i++) {
+					if (jobMetrics != null) {
+						instrument(existingListeners[i]);
+					}
+					existingListeners[i] = batcherListeners.applyListenerProfile(existingListeners[i], listenerProfile);
+				}
+				if (listenerProfile != null) {
+					queryBatcher.setUrisReadyListeners(existingListeners);
+				}
+			}
+		}
+
 		if (urisReadyListeners != null) {
 			// If listeners already exist, add the ones configured on this class before the existing ones
+			List<QueryBatchListener> newListeners = new ArrayList<>();
+			for (QueryBatchListener listener : urisReadyListeners) {
+				if (jobMetrics != null) {
+					instrument(listener);
+				}
+				newListeners.add(batcherListeners.applyListenerProfile(batcherListeners.applyAdaptiveBatchSize(listener), listenerProfile));
+			}
 			QueryBatchListener[] existingListeners = queryBatcher.getQuerySuccessListeners();
-			if (existingListeners == null || existingListeners.length == 0) {
-				queryBatcher.setUrisReadyListeners(urisReadyListeners.toArray(new QueryBatchListener[]{}));
-			} else {
-				List<QueryBatchListener> newListeners = new ArrayList<>();
-				newListeners.addAll(urisReadyListeners);
+			if (existingListeners != null) {
 				for (QueryBatchListener listener : existingListeners) {
 					newListeners.add(listener);
 				}
-				queryBatcher.setUrisReadyListeners(newListeners.toArray(new QueryBatchListener[]{}));
 			}
+			queryBatcher.setUrisReadyListeners(newListeners.toArray(new QueryBatchListener[]{}));
 		}
 
 		if (urisReadyListener != null) {
-			queryBatcher.onUrisReady(urisReadyListener);
+			if (jobMetrics != null) {
+				instrument(urisReadyListener);
+			}
+			queryBatcher.onUrisReady(batcherListeners.applyListenerProfile(batcherListeners.applyAdaptiveBatchSize(urisReadyListener), listenerProfile));
+		}
+
+		if (threadCountController != null) {
+			QueryBatchListener[] listeners = queryBatcher.getUrisReadyListeners();
+			if (listeners != null && listeners.length > 0) {
+				queryBatcher.setUrisReadyListeners(batcherListeners.applyAdaptiveThreadCount(Arrays.asList(listeners), threadCountController).toArray(new QueryBatchListener[]{}));
+			}
+		}
+
+		if (jobMetrics != null) {
+			QueryBatchListener[] listeners = queryBatcher.getUrisReadyListeners();
+			if (listeners != null && listeners.length > 0) {
+				queryBatcher.setUrisReadyListeners(new JobMetricsListener(jobMetrics, Arrays.asList(listeners)));
+			}
+		}
+
+		// Added first so that they delay every other listener, and so that time spent waiting is not in the metrics
+		List<QueryBatchListener> rateLimitingListeners = batcherListeners.newRateLimitingListeners();
+		if (!rateLimitingListeners.isEmpty()) {
+			QueryBatchListener[] listeners = queryBatcher.getUrisReadyListeners();
+			if (listeners != null) {
+				rateLimitingListeners.addAll(Arrays.asList(listeners));
+			}
+			queryBatcher.setUrisReadyListeners(rateLimitingListeners.toArray(new QueryBatchListener[]{}));
 		}
 
 		if (queryFailureListeners != null) {
@@ -220,16 +356,34 @@ public class QueryBatcherTemplate extends BatcherConfig {
 			}
 		}
 
-		JobTicket jobTicket = dataMovementManager.startJob(queryBatcher);
+		if (threadCountController != null) {
+			queryBatcher.onQueryFailure(failure -> threadCountController.recordFailure(failure));
+		}
 
-		if (awaitCompletion) {
-			queryBatcher.awaitCompletion();
+		if (jobMetrics != null) {
+			queryBatcher.onQueryFailure(failure -> jobMetrics.recordQueryFailure());
+			jobMetrics.start();
 		}
-		if (stopJob) {
-			dataMovementManager.stopJob(queryBatcher);
+
+		if (jobCompletionListener != null) {
+			queryBatcher.onJobCompletion(jobCompletionListener);
 		}
 
-		return new QueryBatcherJobTicket(dataMovementManager, queryBatcher, jobTicket);
+		JobTicket jobTicket = dataMovementManager.startJob(queryBatcher);
+		QueryBatcherJobTicket ticket = new QueryBatcherJobTicket(dataMovementManager, queryBatcher, jobTicket, jobMetrics,
+			batcherListeners.exportJobMetrics(jobMetrics, queryBatcher));
+		ticket.setListenerProfile(listenerProfile);
+		return ticket;
+	}
+
+	private void finishJob(QueryBatcherJobTicket ticket) {
+		if (ticket.getJobMetrics() != null) {
+			ticket.getJobMetrics().finish();
+		}
+		ticket.stopExportingJobMetrics();
+		if (ticket.getListenerProfile() != null && logger.isInfoEnabled()) {
+			logger.info("Listener profile:\n" + ticket.getListenerProfile());
+		}
 	}
 
 	/**
@@ -259,6 +413,26 @@ public class QueryBatcherTemplate extends BatcherConfig {
 		this.stopJob = stopJob;
 	}
 
+	/**
+	 * If set to true, then each job collects a JobMetrics that is available via the returned QueryBatcherJobTicket.
+	 * Defaults to true.
+	 *
+	 * @param collectMetrics
+	 */
+	public void setCollectMetrics(boolean collectMetrics) {
+		this.collectMetrics = collectMetrics;
+	}
+
+	/**
+	 * If set to true, then the wall time, CPU time and allocated bytes of each listener are recorded in a
+	 * ListenerProfile. Defaults to false.
+	 *
+	 * @param profileListeners
+	 */
+	public void setProfileListeners(boolean profileListeners) {
+		this.profileListeners = profileListeners;
+	}
+
 	/**
 	 * @return the instance of DataMovementManager that was constructed when this class was instantiated
 	 */
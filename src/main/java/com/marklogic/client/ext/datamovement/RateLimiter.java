@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits the rate at which permits - e.g. URIs or batches - are acquired across all of the threads
+ * of a job. A thread that acquires permits reserves the next available slot of time for them and then sleeps until
+ * that slot begins, so acquisitions are spaced evenly instead of being released in bursts.
+ * <p>
+ * Unused capacity only accumulates up to the given burst, which defaults to zero; a job that pauses - e.g. while
+ * waiting on the next page of URIs - thus resumes at the configured rate instead of catching up on the time it lost.
+ */
+public class RateLimiter {
+
+	private final double permitsPerSecond;
+	private final double nanosPerPermit;
+	private final long maxBurstNanos;
+
+	private long nextFreeNanos;
+
+	public RateLimiter(double permitsPerSecond) {
+		this(permitsPerSecond, 0);
+	}
+
+	/**
+	 * @param permitsPerSecond the maximum rate at which permits can be acquired
+	 * @param maxBurstPermits  the number of unused permits that can accumulate while the limiter is idle
+	 */
+	public RateLimiter(double permitsPerSecond, double maxBurstPermits) {
+		if (permitsPerSecond <= 0) {
+			throw new IllegalArgumentException("Permits per second must be greater than zero; was: " + permitsPerSecond);
+		}
+		this.permitsPerSecond = permitsPerSecond;
+		this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+		this.maxBurstNanos = (long) (Math.max(0, maxBurstPermits) * nanosPerPermit);
+		this.nextFreeNanos = System.nanoTime();
+	}
+
+	/**
+	 * Blocks until the given number of permits can be acquired without exceeding the rate.
+	 *
+	 * @param permits
+	 * @return the number of nanoseconds spent waiting
+	 * @throws InterruptedException
+	 */
+	public long acquire(int permits) throws InterruptedException {
+		final long waitNanos = reserve(permits, System.nanoTime());
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+		return waitNanos;
+	}
+
+	/**
+	 * @return the number of nanoseconds until the reserved permits can be used
+	 */
+	protected synchronized long reserve(int permits, long nowNanos) {
+		long start = Math.max(nextFreeNanos, nowNanos - maxBurstNanos);
+		nextFreeNanos = start + (long) (permits * nanosPerPermit);
+		return Math.max(0, start - nowNanos);
+	}
+
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+}
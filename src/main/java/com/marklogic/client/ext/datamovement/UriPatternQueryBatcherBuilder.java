@@ -17,19 +17,41 @@ package com.marklogic.client.ext.datamovement;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.ForestConfiguration;
 import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.eval.EvalResult;
 import com.marklogic.client.ext.datamovement.util.EvalResultIterator;
+import com.marklogic.client.ext.datamovement.util.ParallelUrisIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Builds a QueryBatcher based on a URI pattern that is fed into cts:uri-match via an eval call. Note that cts:uri-match
  * may not always scale as well as a cts:uris query will.
+ * <p>
+ * By default, a single cts:uri-match call is made against the entire database. If setQueryEachForest(true) is used,
+ * then a separate cts:uri-match call is made for each forest, with the calls being made in parallel and their URIs
+ * merged together as they are returned. The forests are determined via the ForestConfiguration set on this class,
+ * or via the DataMovementManager if one has not been set.
  */
 public class UriPatternQueryBatcherBuilder implements QueryBatcherBuilder {
 
+	private final static String FOREST_QUERY = "declare variable $pattern as xs:string external;\n" +
+		"declare variable $forest-id as xs:string external;\n" +
+		"cts:uri-match($pattern, (), (), (), xs:unsignedLong($forest-id))";
+
+	protected Logger logger = LoggerFactory.getLogger(getClass());
+
 	private String uriPattern;
+	private boolean queryEachForest = false;
+	private ForestConfiguration forestConfig;
+	private Integer forestThreadCount;
 
 	public UriPatternQueryBatcherBuilder(String uriPattern) {
 		this.uriPattern = uriPattern;
@@ -37,7 +59,70 @@ public class UriPatternQueryBatcherBuilder implements QueryBatcherBuilder {
 
 	@Override
 	public QueryBatcher buildQueryBatcher(DatabaseClient databaseClient, DataMovementManager dataMovementManager) {
+		if (queryEachForest) {
+			return buildForestQueryBatcher(databaseClient, dataMovementManager);
+		}
 		final Iterator<EvalResult> evalResults = databaseClient.newServerEval().xquery(String.format("cts:uri-match('%s')", uriPattern)).eval().iterator();
 		return dataMovementManager.newQueryBatcher(new EvalResultIterator(evalResults));
 	}
+
+	protected QueryBatcher buildForestQueryBatcher(DatabaseClient databaseClient, DataMovementManager dataMovementManager) {
+		ForestConfiguration config = forestConfig != null ? forestConfig : dataMovementManager.readForestConfig();
+		Forest[] forests = config.listForests();
+
+		List<Consumer<Consumer<String>>> uriSources = new ArrayList<>();
+		for (Forest forest : forests) {
+			uriSources.add(uriConsumer -> readUrisFromForest(databaseClient, forest, uriConsumer));
+		}
+
+		int threadCount = forestThreadCount != null && forestThreadCount > 0 ? forestThreadCount : forests.length;
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Matching URI pattern [%s] against %d forests using %d threads",
+				uriPattern, forests.length, threadCount));
+		}
+		ParallelUrisIterator uris = new ParallelUrisIterator(uriSources, threadCount);
+		QueryBatcher queryBatcher = dataMovementManager.newQueryBatcher(uris);
+		// Ensures the forest threads and their eval responses are released if the job is stopped before all URIs are read
+		queryBatcher.onJobCompletion(batcher -> uris.close());
+		uris.setCloseCondition(queryBatcher::isStopped);
+		return queryBatcher;
+	}
+
+	protected void readUrisFromForest(DatabaseClient databaseClient, Forest forest, Consumer<String> uriConsumer) {
+		com.marklogic.client.eval.EvalResultIterator results = databaseClient.newServerEval()
+			.xquery(FOREST_QUERY)
+			.addVariable("pattern", uriPattern)
+			.addVariable("forest-id", forest.getForestId())
+			.eval();
+		try {
+			while (results.hasNext()) {
+				uriConsumer.accept(results.next().getString());
+			}
+		} finally {
+			results.close();
+		}
+	}
+
+	/**
+	 * @param queryEachForest if true, cts:uri-match is called separately and in parallel for each forest
+	 */
+	public void setQueryEachForest(boolean queryEachForest) {
+		this.queryEachForest = queryEachForest;
+	}
+
+	/**
+	 * @param forestConfig the forests to query when queryEachForest is true; if not set, the DataMovementManager is
+	 *                     used to read the forest configuration
+	 */
+	public void setForestConfig(ForestConfiguration forestConfig) {
+		this.forestConfig = forestConfig;
+	}
+
+	/**
+	 * @param forestThreadCount the number of forests to query at the same time when queryEachForest is true; defaults
+	 *                          to the number of forests
+	 */
+	public void setForestThreadCount(Integer forestThreadCount) {
+		this.forestThreadCount = forestThreadCount;
+	}
 }
@@ -20,9 +20,13 @@ import com.marklogic.client.datamovement.DataMovementManager;
 import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.eval.ServerEvaluationCall;
 import com.marklogic.client.ext.datamovement.util.EvalResultIterator;
+import com.marklogic.client.ext.datamovement.util.PagedUrisIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Builds a QueryBatcher based on either an XQuery or Javascript query.
  * <p>
@@ -30,6 +34,11 @@ import org.slf4j.LoggerFactory;
  * "cts:" or "cts." but not "cts:uris" or "cts.uris". If it does, it assumes that your query is the 3rd argument for a
  * cts:uris or cts.uris call and wraps it appropriately. You can disable this behavior by calling
  * setWrapQueryIfAppropriate(false).
+ * <p>
+ * By default, all URIs are returned by a single eval call. For a large number of URIs, setPageLength can be used to
+ * instead read the URIs via a series of cts:uris calls, each returning at most the given number of URIs and starting
+ * from the last URI of the previous call. This requires that your query is a cts query that can be wrapped as
+ * described above. setStartUri can be used to start from a specific URI, such as when resuming a job.
  */
 public class UrisQueryQueryBatcherBuilder implements QueryBatcherBuilder {
 
@@ -38,6 +47,8 @@ public class UrisQueryQueryBatcherBuilder implements QueryBatcherBuilder {
 	private String xquery;
 	private String javascript;
 	private boolean wrapQueryIfAppropriate = true;
+	private Integer pageLength;
+	private String startUri;
 
 	/**
 	 * Looks for "cts:" in the query - if it's found, then assumes this is XQuery; otherwise, Javascript. If this isn't
@@ -73,6 +84,10 @@ public class UrisQueryQueryBatcherBuilder implements QueryBatcherBuilder {
 
 	@Override
 	public QueryBatcher buildQueryBatcher(DatabaseClient databaseClient, DataMovementManager dataMovementManager) {
+		if (pageLength != null && pageLength > 0) {
+			return buildPagedQueryBatcher(databaseClient, dataMovementManager);
+		}
+
 		ServerEvaluationCall call = databaseClient.newServerEval();
 		if (javascript != null) {
 			if (wrapQueryIfAppropriate) {
@@ -97,6 +112,80 @@ public class UrisQueryQueryBatcherBuilder implements QueryBatcherBuilder {
 		return dataMovementManager.newQueryBatcher(new EvalResultIterator(call.eval().iterator()));
 	}
 
+	/**
+	 * Builds a QueryBatcher that reads URIs one page at a time, with the next page being read while the QueryBatcher
+	 * processes the current page.
+	 *
+	 * @param databaseClient
+	 * @param dataMovementManager
+	 * @return
+	 */
+	protected QueryBatcher buildPagedQueryBatcher(DatabaseClient databaseClient, DataMovementManager dataMovementManager) {
+		final boolean isJavascript;
+		final String query;
+		if (javascript != null) {
+			if (!isPageableQuery(javascript, "cts.", "cts.uris")) {
+				throw new IllegalStateException("Paging URIs requires a JavaScript cts query that can be passed to cts.uris; query: " + javascript);
+			}
+			isJavascript = true;
+			query = "cts.uris(start, [options], " + javascript + ")";
+		} else if (xquery != null) {
+			if (!isPageableQuery(xquery, "cts:", "cts:uris")) {
+				throw new IllegalStateException("Paging URIs requires an XQuery cts query that can be passed to cts:uris; query: " + xquery);
+			}
+			isJavascript = false;
+			query = "declare variable $start as xs:string external;\n" +
+				"declare variable $options as xs:string external;\n" +
+				"cts:uris($start, $options, " + xquery + ")";
+		} else {
+			throw new IllegalStateException("Either xquery or javascript must be defined");
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Reading URIs in pages of %d via: %s", pageLength, query));
+		}
+
+		PagedUrisIterator iterator = new PagedUrisIterator(
+			start -> readPageOfUris(databaseClient, isJavascript, query, start), pageLength, startUri);
+		QueryBatcher queryBatcher = dataMovementManager.newQueryBatcher(iterator);
+		// Ensures the fetching thread and its prefetched page are released if the job is stopped before all URIs are read
+		queryBatcher.onJobCompletion(batcher -> iterator.close());
+		iterator.setCloseCondition(queryBatcher::isStopped);
+		return queryBatcher;
+	}
+
+	/**
+	 * The query text is the same for every page, with only the start URI and the options varying, so that the server
+	 * can reuse the compiled query for each page.
+	 *
+	 * @param databaseClient
+	 * @param isJavascript
+	 * @param query
+	 * @param start
+	 * @return
+	 */
+	protected List<String> readPageOfUris(DatabaseClient databaseClient, boolean isJavascript, String query, String start) {
+		ServerEvaluationCall call = databaseClient.newServerEval()
+			.addVariable("start", start != null ? start : "")
+			.addVariable("options", "limit=" + pageLength);
+		call = isJavascript ? call.javascript(query) : call.xquery(query);
+
+		List<String> uris = new ArrayList<>(pageLength);
+		com.marklogic.client.eval.EvalResultIterator results = call.eval();
+		try {
+			while (results.hasNext()) {
+				uris.add(results.next().getString());
+			}
+		} finally {
+			results.close();
+		}
+		return uris;
+	}
+
+	private boolean isPageableQuery(String query, String ctsPrefix, String ctsUrisPrefix) {
+		return wrapQueryIfAppropriate && query.startsWith(ctsPrefix) && !query.startsWith(ctsUrisPrefix);
+	}
+
 	protected String wrapXqueryIfAppropriate(String query) {
 		if (query.startsWith("cts:") && !query.startsWith("cts:uris")) {
 			return String.format("cts:uris((), (), %s)", query);
@@ -114,4 +203,19 @@ public class UrisQueryQueryBatcherBuilder implements QueryBatcherBuilder {
 	public void setWrapQueryIfAppropriate(boolean wrapQueryIfAppropriate) {
 		this.wrapQueryIfAppropriate = wrapQueryIfAppropriate;
 	}
+
+	/**
+	 * @param pageLength if greater than zero, URIs are read via a series of cts:uris calls, each returning at most this
+	 *                   many URIs; must be at least 2
+	 */
+	public void setPageLength(Integer pageLength) {
+		this.pageLength = pageLength;
+	}
+
+	/**
+	 * @param startUri when URIs are paged, the first page will start at this URI, inclusive
+	 */
+	public void setStartUri(String startUri) {
+		this.startUri = startUri;
+	}
 }
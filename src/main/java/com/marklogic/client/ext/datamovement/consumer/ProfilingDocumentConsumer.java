@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.ext.datamovement.ListenerProfile;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each document processed by the wrapped consumer in a
+ * ListenerProfile.
+ * <p>
+ * Consumers are usually added to an ExportListener when a job is configured, before it's known whether the job will be
+ * profiled. The profile can therefore be provided via a Supplier, which is checked on each document; if it returns
+ * null, the document is passed to the wrapped consumer without being measured.
+ */
+public class ProfilingDocumentConsumer implements Consumer<DocumentRecord> {
+
+	private final String name;
+	private final Consumer<DocumentRecord> consumer;
+	private final Supplier<ListenerProfile> listenerProfileSupplier;
+
+	public ProfilingDocumentConsumer(Consumer<DocumentRecord> consumer, ListenerProfile listenerProfile) {
+		this(ListenerProfile.nameOf(consumer), consumer, () -> listenerProfile);
+	}
+
+	/**
+	 * @param name                    the name under which the measurements are recorded
+	 * @param consumer
+	 * @param listenerProfileSupplier
+	 */
+	public ProfilingDocumentConsumer(String name, Consumer<DocumentRecord> consumer, Supplier<ListenerProfile> listenerProfileSupplier) {
+		this.name = name;
+		this.consumer = consumer;
+		this.listenerProfileSupplier = listenerProfileSupplier;
+	}
+
+	@Override
+	public void accept(DocumentRecord documentRecord) {
+		ListenerProfile profile = listenerProfileSupplier.get();
+		if (profile != null) {
+			profile.profile(name, () -> consumer.accept(documentRecord));
+		} else {
+			consumer.accept(documentRecord);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Consumer<DocumentRecord> getConsumer() {
+		return consumer;
+	}
+}
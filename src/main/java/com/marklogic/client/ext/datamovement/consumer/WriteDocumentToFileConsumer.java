@@ -16,26 +16,50 @@
 package com.marklogic.client.ext.datamovement.consumer;
 
 import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.ext.datamovement.util.AsyncWriteStage;
+import com.marklogic.client.io.BytesHandle;
 import com.marklogic.client.io.InputStreamHandle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 /**
  * Consumer implementation that is intended to be used with DMSDK's ExportListener. Writes each document to a File based
  * on the directory passed to this class's constructor plus the document's URI.
+ * <p>
+ * Each document is copied to its file via a FileChannel, using a buffer that is reused by the calling thread. The
+ * directories that have been created are cached so that the file system is only asked to create each directory once,
+ * up to a maximum number of cached directories.
+ * <p>
+ * If an AsyncWriteStage is set, each document is read into memory on the calling thread and then written to its file
+ * by one of the stage's threads. In that case, close() must be called after all documents have been exported so that
+ * the remaining writes are finished; note that writeDocumentToFile is not used for asynchronous writes.
  */
-public class WriteDocumentToFileConsumer implements Consumer<DocumentRecord> {
+public class WriteDocumentToFileConsumer implements Consumer<DocumentRecord>, Closeable {
+
+	public final static int DEFAULT_BUFFER_SIZE = 256 * 1024;
+	public final static int DEFAULT_MAX_CACHED_DIRECTORIES = 100000;
 
 	protected Logger logger = LoggerFactory.getLogger(getClass());
 
 	private File baseDir;
 	private boolean logErrors = true;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private int maxCachedDirectories = DEFAULT_MAX_CACHED_DIRECTORIES;
+	private AsyncWriteStage asyncWriteStage;
+
+	private final ThreadLocal<byte[]> buffers = new ThreadLocal<>();
+	private final Set<String> createdDirectories = ConcurrentHashMap.newKeySet();
 
 	public WriteDocumentToFileConsumer(File baseDir) {
 		this.baseDir = baseDir;
@@ -49,15 +73,41 @@ public class WriteDocumentToFileConsumer implements Consumer<DocumentRecord> {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Writing document with URI " + uri + " to file: " + outputFile);
 		}
+		if (asyncWriteStage != null) {
+			final byte[] content = documentRecord.getContent(new BytesHandle()).get();
+			asyncWriteStage.submit(content.length, () -> {
+				try {
+					writeContentToFile(content, outputFile);
+				} catch (IOException e) {
+					handleWriteError(uri, outputFile, e);
+				}
+			});
+			return;
+		}
+
 		try {
 			writeDocumentToFile(documentRecord, outputFile);
 		} catch (IOException e) {
-			String message = "Unable to write document to file; URI: " + uri + "; file: " + outputFile;
-			if (logErrors) {
-				logger.warn(message, e);
-			} else {
-				throw new RuntimeException(message, e);
-			}
+			handleWriteError(uri, outputFile, e);
+		}
+	}
+
+	/**
+	 * Finishes any asynchronous writes; does nothing if an AsyncWriteStage has not been set.
+	 */
+	@Override
+	public void close() {
+		if (asyncWriteStage != null) {
+			asyncWriteStage.close();
+		}
+	}
+
+	protected void handleWriteError(String uri, File outputFile, IOException e) {
+		String message = "Unable to write document to file; URI: " + uri + "; file: " + outputFile;
+		if (logErrors) {
+			logger.warn(message, e);
+		} else {
+			throw new RuntimeException(message, e);
 		}
 	}
 
@@ -66,21 +116,70 @@ public class WriteDocumentToFileConsumer implements Consumer<DocumentRecord> {
 	}
 
 	protected void writeDocumentToFile(DocumentRecord documentRecord, File file) throws IOException {
-		file.getParentFile().mkdirs();
-		FileOutputStream fos = new FileOutputStream(file);
-		try {
-			InputStream in = documentRecord.getContent(new InputStreamHandle()).get();
-			byte[] buffer = new byte[4096];
-			int bytesRead = -1;
-			while ((bytesRead = in.read(buffer)) != -1) {
-				fos.write(buffer, 0, bytesRead);
+		createParentDirectory(file);
+		try (InputStream in = documentRecord.getContent(new InputStreamHandle()).get();
+		     FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			byte[] buffer = getBuffer();
+			int bytesRead;
+			while ((bytesRead = readFully(in, buffer)) > 0) {
+				ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+				while (byteBuffer.hasRemaining()) {
+					channel.write(byteBuffer);
+				}
+			}
+		}
+	}
+
+	protected void writeContentToFile(byte[] content, File file) throws IOException {
+		createParentDirectory(file);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(content);
+			while (byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
 			}
-			fos.flush();
-		} finally {
-			fos.close();
 		}
 	}
 
+	/**
+	 * Creates the parent directory of the given file unless this class has already done so.
+	 *
+	 * @param file
+	 */
+	protected void createParentDirectory(File file) {
+		File dir = file.getParentFile();
+		String path = dir.getPath();
+		if (!createdDirectories.contains(path)) {
+			dir.mkdirs();
+			if (createdDirectories.size() >= maxCachedDirectories) {
+				createdDirectories.clear();
+			}
+			createdDirectories.add(path);
+		}
+	}
+
+	/**
+	 * Fills as much of the buffer as possible so that each write to a file is as large as possible.
+	 *
+	 * @return the number of bytes read, which is less than the length of the buffer only at the end of the stream
+	 */
+	private int readFully(InputStream in, byte[] buffer) throws IOException {
+		int total = 0;
+		int bytesRead;
+		while (total < buffer.length && (bytesRead = in.read(buffer, total, buffer.length - total)) != -1) {
+			total += bytesRead;
+		}
+		return total;
+	}
+
+	private byte[] getBuffer() {
+		byte[] buffer = buffers.get();
+		if (buffer == null || buffer.length != bufferSize) {
+			buffer = new byte[bufferSize];
+			buffers.set(buffer);
+		}
+		return buffer;
+	}
+
 	protected File getBaseDir() {
 		return baseDir;
 	}
@@ -92,4 +191,27 @@ public class WriteDocumentToFileConsumer implements Consumer<DocumentRecord> {
 	public void setLogErrors(boolean logErrors) {
 		this.logErrors = logErrors;
 	}
+
+	/**
+	 * @param bufferSize the size of the buffer that each thread uses to copy documents to files; defaults to
+	 *                   DEFAULT_BUFFER_SIZE
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @param asyncWriteStage if set, documents are written to files by the threads of this stage instead of by the
+	 *                        thread that calls accept; the stage is closed when this class is closed
+	 */
+	public void setAsyncWriteStage(AsyncWriteStage asyncWriteStage) {
+		this.asyncWriteStage = asyncWriteStage;
+	}
+
+	/**
+	 * @param maxCachedDirectories the number of created directories to remember before the cache is cleared
+	 */
+	public void setMaxCachedDirectories(int maxCachedDirectories) {
+		this.maxCachedDirectories = maxCachedDirectories;
+	}
 }
@@ -16,12 +16,19 @@
 package com.marklogic.client.ext.datamovement.consumer;
 
 import com.marklogic.client.document.DocumentRecord;
-import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -32,16 +39,54 @@ import java.util.zip.ZipOutputStream;
  * that the ZipOutputStream that is opened on the File is properly closed.
  *
  * If a ZipOutputStream is used to construct this class, it is up to the client to determine when to close it.
+ *
+ * When constructed with a File, setShardCount can be used to write documents to multiple zip files at the same time
+ * instead of having every thread wait on a single zip file. Each thread is assigned one of the shards, which are
+ * named after the File - e.g. export-0.zip, export-1.zip, etc. If setMergeShards(true) is used, the shards are
+ * combined into the File when this class is closed, without their entries being compressed again.
+ *
+ * Alternatively, when a single zip file is required, setParallelCompression(true) can be used so that each thread
+ * compresses its document before the zip file is locked, and the lock is only held while the compressed bytes are
+ * appended to the zip file.
+ *
+ * Document content is streamed into the zip file instead of first being read into a byte array. Documents that are
+ * already compressed - as determined via setStoredFormats and setStoredMimetypes - are not compressed again. When
+ * writing via shards or parallel compression, such documents are written as STORED entries. Otherwise, because a
+ * ZipOutputStream requires the CRC of a STORED entry before its content is written, they are written with a
+ * compression level of zero, after which the ZipOutputStream is restored to the level set via setCompressionLevel,
+ * which defaults to Deflater.DEFAULT_COMPRESSION. When constructed with a ZipOutputStream whose level has been set,
+ * setCompressionLevel must be called with the same level so that the level is not changed by stored entries.
  */
 public class WriteToZipConsumer implements Consumer<DocumentRecord>, Closeable {
 
+	/**
+	 * Common mimetypes of content that is already compressed; can be passed to setStoredMimetypes.
+	 */
+	public final static String[] COMPRESSED_MIMETYPES = new String[]{
+		"image/jpeg", "image/png", "image/gif", "image/webp", "audio/*", "video/*", "application/pdf", "application/zip",
+		"application/gzip", "application/x-gzip", "application/x-7z-compressed", "application/vnd.openxmlformats-officedocument.*"
+	};
+
 	protected Logger logger = LoggerFactory.getLogger(getClass());
 
 	private ZipOutputStream zipOutputStream;
 	private boolean flattenUri = false;
 	private String uriPrefix;
 
+	private File file;
+	private volatile boolean entryWritten;
+	private File[] shardFiles;
+	private ZipArchiveWriter[] shards;
+	private ThreadLocal<ZipArchiveWriter> threadShard;
+	private boolean mergeShards = false;
+	private boolean shardsClosed = false;
+	private ZipArchiveWriter archiveWriter;
+	private Set<Format> storedFormats = EnumSet.noneOf(Format.class);
+	private Set<String> storedMimetypes = new HashSet<>();
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
 	public WriteToZipConsumer(File file) {
+		this.file = file;
 		try {
 			this.zipOutputStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
 		} catch (IOException e) {
@@ -55,25 +100,77 @@ public class WriteToZipConsumer implements Consumer<DocumentRecord>, Closeable {
 
 	@Override
 	public void accept(DocumentRecord documentRecord) {
+		entryWritten = true;
+		if (shards != null) {
+			writePreparedEntry(documentRecord, threadShard.get());
+			return;
+		}
+		if (archiveWriter != null) {
+			writePreparedEntry(documentRecord, archiveWriter);
+			return;
+		}
+
 		String uri = documentRecord.getUri();
 		ZipEntry zipEntry = buildZipEntry(documentRecord);
+		final boolean stored = isStored(documentRecord);
 		synchronized (this.zipOutputStream) {
-			try {
+			try (InputStream content = documentRecord.getContent(new InputStreamHandle()).get()) {
+				if (stored) {
+					zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+				}
 				zipOutputStream.putNextEntry(zipEntry);
 				if (logger.isDebugEnabled()) {
 					logger.debug("Writing zip entry, name: " + zipEntry.getName());
 				}
-				zipOutputStream.write(documentRecord.getContent(new BytesHandle()).get());
+				byte[] buffer = ZipArchiveWriter.getThreadBuffer();
+				int length;
+				while ((length = content.read(buffer)) != -1) {
+					zipOutputStream.write(buffer, 0, length);
+				}
 				zipOutputStream.closeEntry();
 			} catch (IOException e) {
 				throw new RuntimeException("Unable to write zip entry for URI: " + uri + "; cause: " + e.getMessage(), e);
+			} finally {
+				if (stored) {
+					zipOutputStream.setLevel(compressionLevel);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Compresses the document before the given writer is locked, so that only appending the compressed bytes is done
+	 * while holding the lock. Documents that are already compressed are instead streamed into the writer as STORED
+	 * entries.
+	 *
+	 * @param documentRecord
+	 * @param writer
+	 */
+	protected void writePreparedEntry(DocumentRecord documentRecord, ZipArchiveWriter writer) {
+		ZipEntry zipEntry = buildZipEntry(documentRecord);
+		try (InputStream content = documentRecord.getContent(new InputStreamHandle()).get()) {
+			if (isStored(documentRecord)) {
+				long length = documentRecord.getLength();
+				writer.writeStoredEntry(zipEntry.getName(), content, length > 0 ? length : -1);
+			} else {
+				writer.writeEntry(ZipArchiveWriter.deflate(zipEntry.getName(), content));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write zip entry for URI: " + documentRecord.getUri() + "; cause: " + e.getMessage(), e);
+		}
+	}
+
 	@Override
 	public void close() {
-		if (zipOutputStream != null) {
+		if (shards != null) {
+			closeShards();
+		} else if (archiveWriter != null) {
+			try {
+				archiveWriter.close();
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to close zip file: " + file + "; cause: " + e.getMessage(), e);
+			}
+		} else if (zipOutputStream != null) {
 			try {
 				zipOutputStream.close();
 			} catch (IOException e) {
@@ -82,6 +179,193 @@ public class WriteToZipConsumer implements Consumer<DocumentRecord>, Closeable {
 		}
 	}
 
+	protected synchronized void closeShards() {
+		if (shardsClosed) {
+			return;
+		}
+		shardsClosed = true;
+		try {
+			for (ZipArchiveWriter shard : shards) {
+				shard.close();
+			}
+			if (mergeShards) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Merging " + shards.length + " zip files into: " + file);
+				}
+				try (ZipArchiveWriter merged = new ZipArchiveWriter(file)) {
+					for (int i = 0; i < shards.length; i++) {
+						merged.appendEntries(shards[i], shardFiles[i]);
+					}
+				}
+				for (File shardFile : shardFiles) {
+					shardFile.delete();
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to close zip files for: " + file + "; cause: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes documents to the given number of zip files instead of the File that this class was constructed with.
+	 * Must be called before any documents are written.
+	 *
+	 * @param shardCount the number of zip files to write to; a value of 1 or less has no effect
+	 */
+	public void setShardCount(int shardCount) {
+		if (shardCount <= 1 || shards != null) {
+			return;
+		}
+		releaseZipOutputStream("Writing to multiple zip files");
+
+		String name = file.getName();
+		int pos = name.lastIndexOf('.');
+		String baseName = pos > 0 ? name.substring(0, pos) : name;
+		String extension = pos > 0 ? name.substring(pos) : "";
+
+		shardFiles = new File[shardCount];
+		shards = new ZipArchiveWriter[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shardFiles[i] = new File(file.getParentFile(), baseName + "-" + i + extension);
+			try {
+				shards[i] = new ZipArchiveWriter(shardFiles[i]);
+			} catch (IOException e) {
+				throw new RuntimeException("Unable to open zip file: " + shardFiles[i] + "; cause: " + e.getMessage(), e);
+			}
+		}
+
+		final AtomicInteger threadCounter = new AtomicInteger();
+		this.threadShard = ThreadLocal.withInitial(() -> shards[threadCounter.getAndIncrement() % shards.length]);
+	}
+
+	/**
+	 * @param parallelCompression if true, documents are compressed by each thread before the zip file is locked,
+	 *                            instead of while it is locked; requires this class to be constructed with a File,
+	 *                            and must be set before any documents are written
+	 */
+	public void setParallelCompression(boolean parallelCompression) {
+		if (!parallelCompression || archiveWriter != null || shards != null) {
+			return;
+		}
+		releaseZipOutputStream("Parallel compression");
+		try {
+			archiveWriter = new ZipArchiveWriter(file);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to open zip file: " + file + "; cause: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Closes and removes the zip file opened by the constructor so that it can be replaced by ZipArchiveWriter
+	 * instances.
+	 *
+	 * @param feature
+	 */
+	private void releaseZipOutputStream(String feature) {
+		if (file == null) {
+			throw new IllegalStateException(feature + " requires this class to be constructed with a File");
+		}
+		if (entryWritten) {
+			throw new IllegalStateException(feature + " must be configured before any documents are written");
+		}
+		if (archiveWriter != null) {
+			try {
+				archiveWriter.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			archiveWriter = null;
+		} else if (zipOutputStream != null) {
+			try {
+				zipOutputStream.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			zipOutputStream = null;
+		}
+		file.delete();
+	}
+
+	/**
+	 * @param mergeShards if true and a shard count greater than 1 has been set, the zip files are merged into the
+	 *                    File that this class was constructed with when this class is closed
+	 */
+	public void setMergeShards(boolean mergeShards) {
+		this.mergeShards = mergeShards;
+	}
+
+	/**
+	 * @param compressionLevel the level at which documents are compressed when written via a single ZipOutputStream;
+	 *                         also applied to that ZipOutputStream. Writing via shards or parallel compression always
+	 *                         uses Deflater.DEFAULT_COMPRESSION.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+		if (zipOutputStream != null) {
+			synchronized (this.zipOutputStream) {
+				zipOutputStream.setLevel(compressionLevel);
+			}
+		}
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @param formats documents with any of these formats - typically Format.BINARY - are not compressed
+	 */
+	public void setStoredFormats(Format... formats) {
+		this.storedFormats = formats.length > 0 ? EnumSet.copyOf(Arrays.asList(formats)) : EnumSet.noneOf(Format.class);
+	}
+
+	/**
+	 * @param mimetypes documents with any of these mimetypes are not compressed; a mimetype ending in "*" matches
+	 *                  any mimetype starting with the characters before the "*"; see COMPRESSED_MIMETYPES for
+	 *                  common examples
+	 */
+	public void setStoredMimetypes(String... mimetypes) {
+		this.storedMimetypes = new HashSet<>();
+		for (String mimetype : mimetypes) {
+			this.storedMimetypes.add(mimetype.trim().toLowerCase());
+		}
+	}
+
+	/**
+	 * @return the zip files being written to when a shard count greater than 1 has been set; null otherwise
+	 */
+	public File[] getShardFiles() {
+		return shardFiles;
+	}
+
+	/**
+	 * @param documentRecord
+	 * @return true if the document's content is already compressed and thus should not be compressed again
+	 */
+	protected boolean isStored(DocumentRecord documentRecord) {
+		if (!storedFormats.isEmpty() && storedFormats.contains(documentRecord.getFormat())) {
+			return true;
+		}
+		if (storedMimetypes.isEmpty() || documentRecord.getMimetype() == null) {
+			return false;
+		}
+		String mimetype = documentRecord.getMimetype().toLowerCase();
+		int pos = mimetype.indexOf(';');
+		if (pos > -1) {
+			mimetype = mimetype.substring(0, pos);
+		}
+		mimetype = mimetype.trim();
+		if (storedMimetypes.contains(mimetype)) {
+			return true;
+		}
+		for (String storedMimetype : storedMimetypes) {
+			if (storedMimetype.endsWith("*") && mimetype.startsWith(storedMimetype.substring(0, storedMimetype.length() - 1))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	protected ZipEntry buildZipEntry(DocumentRecord documentRecord) {
 		String uri = documentRecord.getUri();
 		if (flattenUri) {
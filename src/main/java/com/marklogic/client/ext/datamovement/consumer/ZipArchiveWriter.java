@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip archive from entries whose content has already been compressed. Because compressing an entry does not
+ * depend on the archive, many threads can prepare entries at the same time via the static methods on this class, and
+ * writing an entry is then only a matter of appending its header and bytes to the archive.
+ * <p>
+ * This class also keeps track of every entry that it has written, which allows the entries of one archive to be
+ * appended to another archive without being decompressed. Zip64 structures are written when an archive exceeds the
+ * limits of the original zip format.
+ * <p>
+ * When constructed with a File, uncompressed entries can be streamed into the archive via writeStoredEntry, as the
+ * CRC and size in the entry's header are filled in after its content has been written.
+ */
+public class ZipArchiveWriter implements Closeable {
+
+	private final static long ZIP64_LIMIT = 0xFFFFFFFFL;
+	private final static int ZIP64_ENTRY_COUNT_LIMIT = 0xFFFF;
+	private final static int STORED = 0;
+	private final static int DEFLATED = 8;
+	private final static int UTF8_FLAG = 0x0800;
+	private final static int VERSION = 20;
+	private final static int ZIP64_VERSION = 45;
+
+	private final static ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	private final static ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+	private final OutputStream outputStream;
+	private final FileChannel fileChannel;
+	private final int dosTime;
+	private final int dosDate;
+	private final List<Entry> entries = new ArrayList<>();
+
+	private long position;
+	private long centralDirectoryOffset = -1;
+
+	public ZipArchiveWriter(OutputStream outputStream) {
+		this(outputStream, null);
+	}
+
+	public ZipArchiveWriter(File file) throws IOException {
+		this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	private ZipArchiveWriter(FileChannel fileChannel) {
+		this(new BufferedOutputStream(Channels.newOutputStream(fileChannel), 64 * 1024), fileChannel);
+	}
+
+	private ZipArchiveWriter(OutputStream outputStream, FileChannel fileChannel) {
+		this.outputStream = outputStream;
+		this.fileChannel = fileChannel;
+		LocalDateTime now = LocalDateTime.now();
+		this.dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+		this.dosDate = ((now.getYear() - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+	}
+
+	/**
+	 * Compresses the given content via a Deflater that is reused by the calling thread.
+	 *
+	 * @param name
+	 * @param content
+	 * @return
+	 */
+	public static Entry deflate(String name, byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		Deflater deflater = DEFLATERS.get();
+		deflater.reset();
+		deflater.setInput(content);
+		deflater.finish();
+
+		byte[] buffer = BUFFERS.get();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+		while (!deflater.finished()) {
+			int length = deflater.deflate(buffer);
+			compressed.write(buffer, 0, length);
+		}
+		return new Entry(name, DEFLATED, crc.getValue(), content.length, compressed.toByteArray());
+	}
+
+	/**
+	 * Compresses the content of the given stream without first reading all of it into memory, though the compressed
+	 * content is kept in memory until it is written. The stream is not closed by this method.
+	 *
+	 * @param name
+	 * @param content
+	 * @return
+	 * @throws IOException
+	 */
+	public static Entry deflate(String name, InputStream content) throws IOException {
+		CRC32 crc = new CRC32();
+		Deflater deflater = DEFLATERS.get();
+		deflater.reset();
+
+		byte[] buffer = BUFFERS.get();
+		byte[] output = new byte[8192];
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		long size = 0;
+		int length;
+		while ((length = content.read(buffer)) != -1) {
+			crc.update(buffer, 0, length);
+			size += length;
+			deflater.setInput(buffer, 0, length);
+			while (!deflater.needsInput()) {
+				compressed.write(output, 0, deflater.deflate(output));
+			}
+		}
+		deflater.finish();
+		while (!deflater.finished()) {
+			compressed.write(output, 0, deflater.deflate(output));
+		}
+		return new Entry(name, DEFLATED, crc.getValue(), size, compressed.toByteArray());
+	}
+
+	/**
+	 * @param name
+	 * @param content
+	 * @return an entry that will be written without being compressed
+	 */
+	public static Entry store(String name, byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		return new Entry(name, STORED, crc.getValue(), content.length, content);
+	}
+
+	public synchronized void writeEntry(Entry entry) throws IOException {
+		assertOpen();
+		entry.offset = position;
+		writeLocalHeader(entry);
+		write(entry.data, entry.data.length);
+		// The content is no longer needed, only what's required for the central directory
+		entry.data = null;
+		entries.add(entry);
+	}
+
+	/**
+	 * Writes an uncompressed entry by copying the given stream into the archive. If this writer was constructed with a
+	 * File, the content is not held in memory; otherwise, it is read into memory first so that its CRC is known before
+	 * the entry's header is written. The stream is not closed by this method.
+	 *
+	 * @param name
+	 * @param content
+	 * @param expectedSize the size of the content if known, or -1 if not; used to determine if space must be reserved
+	 *                     for zip64 sizes in the entry's header
+	 * @throws IOException
+	 */
+	public synchronized void writeStoredEntry(String name, InputStream content, long expectedSize) throws IOException {
+		if (fileChannel == null) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			copy(content, out, null);
+			writeEntry(store(name, out.toByteArray()));
+			return;
+		}
+
+		assertOpen();
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		final long offset = position;
+		final boolean zip64 = expectedSize < 0 || expectedSize >= ZIP64_LIMIT;
+		writeLocalHeader(nameBytes, STORED, 0, 0, 0, zip64);
+
+		CRC32 crc = new CRC32();
+		long size = copy(content, null, crc);
+		if (!zip64 && size >= ZIP64_LIMIT) {
+			throw new IOException("Content of entry " + name + " exceeded its expected size of " + expectedSize + " bytes");
+		}
+
+		// Fill in the CRC and sizes now that they're known; positional writes do not affect the append position
+		outputStream.flush();
+		ByteBuffer fields = newBuffer(12).putInt((int) crc.getValue());
+		if (zip64) {
+			fields.putInt((int) ZIP64_LIMIT).putInt((int) ZIP64_LIMIT);
+			writeAt(fields, offset + 14);
+			writeAt(newBuffer(16).putLong(size).putLong(size), offset + 30 + nameBytes.length + 4);
+		} else {
+			fields.putInt((int) size).putInt((int) size);
+			writeAt(fields, offset + 14);
+		}
+
+		Entry entry = new Entry(nameBytes, STORED, crc.getValue(), size, size);
+		entry.offset = offset;
+		entries.add(entry);
+	}
+
+	/**
+	 * Appends every entry written by the given archive, which must have been closed, without decompressing them.
+	 *
+	 * @param archive     the writer that wrote the source file
+	 * @param archiveFile the file that the writer wrote to
+	 * @throws IOException
+	 */
+	public synchronized void appendEntries(ZipArchiveWriter archive, File archiveFile) throws IOException {
+		assertOpen();
+		if (archive.centralDirectoryOffset < 0) {
+			throw new IllegalStateException("Cannot append entries from an archive that has not been closed: " + archiveFile);
+		}
+		final long baseOffset = position;
+		try (InputStream in = Files.newInputStream(archiveFile.toPath())) {
+			byte[] buffer = BUFFERS.get();
+			long remaining = archive.centralDirectoryOffset;
+			while (remaining > 0) {
+				int length = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (length < 0) {
+					throw new IOException("Unexpected end of archive: " + archiveFile);
+				}
+				write(buffer, length);
+				remaining -= length;
+			}
+		}
+		for (Entry entry : archive.entries) {
+			Entry copy = new Entry(entry.name, entry.method, entry.crc, entry.size, entry.compressedSize);
+			copy.offset = baseOffset + entry.offset;
+			entries.add(copy);
+		}
+	}
+
+	/**
+	 * Writes the central directory and closes the underlying OutputStream.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (centralDirectoryOffset >= 0) {
+			return;
+		}
+		centralDirectoryOffset = position;
+		for (Entry entry : entries) {
+			writeCentralHeader(entry);
+		}
+		long centralDirectorySize = position - centralDirectoryOffset;
+		int entryCount = entries.size();
+
+		if (entryCount >= ZIP64_ENTRY_COUNT_LIMIT || centralDirectoryOffset >= ZIP64_LIMIT || centralDirectorySize >= ZIP64_LIMIT) {
+			long zip64EndOffset = position;
+			ByteBuffer end = newBuffer(56 + 20);
+			end.putInt(0x06064b50).putLong(44).putShort((short) ZIP64_VERSION).putShort((short) ZIP64_VERSION)
+				.putInt(0).putInt(0).putLong(entryCount).putLong(entryCount)
+				.putLong(centralDirectorySize).putLong(centralDirectoryOffset);
+			end.putInt(0x07064b50).putInt(0).putLong(zip64EndOffset).putInt(1);
+			write(end);
+		}
+
+		ByteBuffer end = newBuffer(22);
+		end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+			.putShort((short) Math.min(entryCount, ZIP64_ENTRY_COUNT_LIMIT))
+			.putShort((short) Math.min(entryCount, ZIP64_ENTRY_COUNT_LIMIT))
+			.putInt((int) Math.min(centralDirectorySize, ZIP64_LIMIT))
+			.putInt((int) Math.min(centralDirectoryOffset, ZIP64_LIMIT))
+			.putShort((short) 0);
+		write(end);
+		outputStream.close();
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	private void writeLocalHeader(Entry entry) throws IOException {
+		boolean zip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+		writeLocalHeader(entry.name, entry.method, entry.crc, entry.compressedSize, entry.size, zip64);
+	}
+
+	private void writeLocalHeader(byte[] name, int method, long crc, long compressedSize, long size, boolean zip64) throws IOException {
+		int extraLength = zip64 ? 20 : 0;
+		ByteBuffer header = newBuffer(30 + name.length + extraLength);
+		header.putInt(0x04034b50)
+			.putShort((short) (zip64 ? ZIP64_VERSION : VERSION))
+			.putShort((short) UTF8_FLAG)
+			.putShort((short) method)
+			.putShort((short) dosTime)
+			.putShort((short) dosDate)
+			.putInt((int) crc)
+			.putInt((int) (zip64 ? ZIP64_LIMIT : compressedSize))
+			.putInt((int) (zip64 ? ZIP64_LIMIT : size))
+			.putShort((short) name.length)
+			.putShort((short) extraLength)
+			.put(name);
+		if (zip64) {
+			header.putShort((short) 1).putShort((short) 16).putLong(size).putLong(compressedSize);
+		}
+		write(header);
+	}
+
+	private void writeCentralHeader(Entry entry) throws IOException {
+		boolean zip64Size = entry.size >= ZIP64_LIMIT;
+		boolean zip64CompressedSize = entry.compressedSize >= ZIP64_LIMIT;
+		boolean zip64Offset = entry.offset >= ZIP64_LIMIT;
+		int zip64Length = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+		int extraLength = zip64Length > 0 ? 4 + zip64Length : 0;
+		short version = (short) (zip64Length > 0 ? ZIP64_VERSION : VERSION);
+
+		ByteBuffer header = newBuffer(46 + entry.name.length + extraLength);
+		header.putInt(0x02014b50)
+			.putShort(version)
+			.putShort(version)
+			.putShort((short) UTF8_FLAG)
+			.putShort((short) entry.method)
+			.putShort((short) dosTime)
+			.putShort((short) dosDate)
+			.putInt((int) entry.crc)
+			.putInt((int) Math.min(entry.compressedSize, ZIP64_LIMIT))
+			.putInt((int) Math.min(entry.size, ZIP64_LIMIT))
+			.putShort((short) entry.name.length)
+			.putShort((short) extraLength)
+			.putShort((short) 0) // comment length
+			.putShort((short) 0) // disk number
+			.putShort((short) 0) // internal attributes
+			.putInt(0) // external attributes
+			.putInt((int) Math.min(entry.offset, ZIP64_LIMIT))
+			.put(entry.name);
+		if (zip64Length > 0) {
+			header.putShort((short) 1).putShort((short) zip64Length);
+			if (zip64Size) {
+				header.putLong(entry.size);
+			}
+			if (zip64CompressedSize) {
+				header.putLong(entry.compressedSize);
+			}
+			if (zip64Offset) {
+				header.putLong(entry.offset);
+			}
+		}
+		write(header);
+	}
+
+	private ByteBuffer newBuffer(int capacity) {
+		return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		write(buffer.array(), buffer.position());
+	}
+
+	private void write(byte[] bytes, int length) throws IOException {
+		outputStream.write(bytes, 0, length);
+		position += length;
+	}
+
+	private void writeAt(ByteBuffer buffer, long offset) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			offset += fileChannel.write(buffer, offset);
+		}
+	}
+
+	/**
+	 * Copies the given stream either to the given OutputStream or, if that is null, into this archive.
+	 *
+	 * @return the number of bytes copied
+	 */
+	private long copy(InputStream in, OutputStream out, CRC32 crc) throws IOException {
+		byte[] buffer = BUFFERS.get();
+		long size = 0;
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			if (crc != null) {
+				crc.update(buffer, 0, length);
+			}
+			if (out != null) {
+				out.write(buffer, 0, length);
+			} else {
+				write(buffer, length);
+			}
+			size += length;
+		}
+		return size;
+	}
+
+	/**
+	 * @return a buffer that is reused by the calling thread for copying content
+	 */
+	static byte[] getThreadBuffer() {
+		return BUFFERS.get();
+	}
+
+	private void assertOpen() {
+		if (centralDirectoryOffset >= 0) {
+			throw new IllegalStateException("Archive has already been closed");
+		}
+	}
+
+	/**
+	 * A zip entry whose content has been prepared for writing.
+	 */
+	public static class Entry {
+		private final byte[] name;
+		private final int method;
+		private final long crc;
+		private final long size;
+		private final long compressedSize;
+		private byte[] data;
+		private long offset;
+
+		private Entry(String name, int method, long crc, long size, byte[] data) {
+			this(name.getBytes(StandardCharsets.UTF_8), method, crc, size, data.length);
+			this.data = data;
+		}
+
+		private Entry(byte[] name, int method, long crc, long size, long compressedSize) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.compressedSize = compressedSize;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getCompressedSize() {
+			return compressedSize;
+		}
+	}
+}
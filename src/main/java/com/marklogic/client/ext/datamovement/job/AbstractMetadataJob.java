@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+
+/**
+ * Base class for jobs that modify the metadata of the selected records, where the changes can be applied via any
+ * {@code MetadataUpdateStrategy}.
+ */
+public abstract class AbstractMetadataJob extends AbstractQueryBatcherJob {
+
+	private MetadataUpdateStrategy metadataUpdateStrategy = MetadataUpdateStrategy.EVAL;
+	private boolean cacheableQuery = false;
+	private QueryBatchListener metadataListener;
+
+	protected AbstractMetadataJob() {
+		super();
+
+		addJobProperty("metadataUpdateStrategy", "How metadata changes are applied; either 'eval' (the default), " +
+				"which requires eval privileges, or 'documents', which reads and writes metadata via the bulk document endpoints",
+			value -> setMetadataUpdateStrategy(MetadataUpdateStrategy.valueOf(value.trim().toUpperCase())));
+
+		addJobProperty("cacheableQuery", "If true and the metadata update strategy is 'eval', the same query text is " +
+				"used for every batch, with the URIs passed as a single variable, so that the server can reuse the " +
+				"compiled query; defaults to false",
+			value -> setCacheableQuery(Boolean.parseBoolean(value)));
+	}
+
+	/**
+	 * @param strategy
+	 * @return a listener that applies the changes configured on this job via the given strategy
+	 */
+	protected abstract QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy);
+
+	/**
+	 * Replaces the listener that applies this job's changes; subclasses call this whenever their changes are modified.
+	 */
+	protected void updateMetadataListener() {
+		if (metadataListener != null && getUrisReadyListeners() != null) {
+			getUrisReadyListeners().remove(metadataListener);
+		}
+		metadataListener = newMetadataListener(metadataUpdateStrategy);
+		addUrisReadyListener(metadataListener);
+	}
+
+	public boolean isCacheableQuery() {
+		return cacheableQuery;
+	}
+
+	public AbstractMetadataJob setCacheableQuery(boolean cacheableQuery) {
+		this.cacheableQuery = cacheableQuery;
+		if (metadataListener != null) {
+			updateMetadataListener();
+		}
+		return this;
+	}
+
+	public MetadataUpdateStrategy getMetadataUpdateStrategy() {
+		return metadataUpdateStrategy;
+	}
+
+	public AbstractMetadataJob setMetadataUpdateStrategy(MetadataUpdateStrategy metadataUpdateStrategy) {
+		this.metadataUpdateStrategy = metadataUpdateStrategy;
+		if (metadataListener != null) {
+			updateMetadataListener();
+		}
+		return this;
+	}
+}
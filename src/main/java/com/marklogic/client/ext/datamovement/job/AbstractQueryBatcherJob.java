@@ -17,15 +17,27 @@ package com.marklogic.client.ext.datamovement.job;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.*;
+import com.marklogic.client.document.DocumentRecord;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.ext.datamovement.*;
+import com.marklogic.client.ext.datamovement.consumer.ProfilingDocumentConsumer;
+import com.marklogic.client.ext.datamovement.listener.CheckpointListener;
+import com.marklogic.client.ext.datamovement.listener.JobMetricsListener;
 import com.marklogic.client.ext.datamovement.listener.SimpleBatchLoggingListener;
+import com.marklogic.client.ext.datamovement.util.AsyncJobs;
+import com.marklogic.client.ext.datamovement.util.ListenerFailures;
 import com.marklogic.client.ext.datamovement.util.TransformPropertyValueParser;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -43,6 +55,29 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 	private boolean awaitCompletion = true;
 	private boolean stopJobAfterCompletion = true;
 
+	// If set, completed batches are recorded in this file so that a failed job can be resumed
+	private File checkpointFile;
+	private volatile BatchCheckpoint batchCheckpoint;
+
+	// Listeners that handle their own failures are given a failure listener once, which marks the failed batch in the
+	// checkpoint of whichever run is current; DMSDK provides no way to remove such a failure listener
+	private final Set<QueryBatchListener> checkpointedListeners = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// Set by DMSDK once every batch of the current run has been processed; it is not set if the job is stopped first
+	private AtomicBoolean jobCompleted;
+
+	private boolean collectMetrics = true;
+	private volatile JobMetrics jobMetrics;
+	// Listeners that have been instrumented once to record into the metrics of whichever run is processing a batch
+	private final Set<QueryBatchListener> instrumentedListeners = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// If true, the time and memory used by each listener are recorded and logged once the job completes
+	private boolean profileListeners = false;
+	private volatile ListenerProfile listenerProfile;
+
+	// True while this job is prepared as a step of a PipelineJob, which applies its own batcher settings and wrappers
+	private boolean pipelineStep = false;
+
 	// A client can provide its own DataMovementManager to be reused
 	private DataMovementManager dataMovementManager;
 
@@ -52,7 +87,9 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 	private String[] whereUris;
 	private String[] whereCollections;
 	private String whereUriPattern;
+	private boolean whereUriPatternByForest = false;
 	private String whereUrisQuery;
+	private Integer whereUrisQueryPageLength;
 	private boolean requireWhereProperty = true;
 
 	/**
@@ -66,6 +103,36 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 
 	@Override
 	public QueryBatcherJobTicket run(DatabaseClient databaseClient) {
+		QueryBatcherJobTicket ticket = startJob(databaseClient, null);
+		if (awaitCompletion) {
+			ticket.getQueryBatcher().awaitCompletion();
+			finishJob(ticket);
+		}
+		return ticket;
+	}
+
+	/**
+	 * Runs the job without blocking the calling thread, regardless of whether awaitCompletion is set. Once DMSDK
+	 * reports that the job has completed, the job is finished - stopped if stopJobAfterCompletion is true, with any
+	 * checkpoint closed and any file footers written - via the completion executor.
+	 * <p>
+	 * As the results of a run - such as its checkpoint - are held by this class, the job should not be run again until
+	 * the returned future completes.
+	 *
+	 * @param databaseClient
+	 * @return completes with the ticket of the job once it has finished, or exceptionally if the job could not be
+	 * started or finished
+	 */
+	@Override
+	public CompletableFuture<QueryBatcherJobTicket> runAsync(DatabaseClient databaseClient) {
+		return AsyncJobs.runAsync(listener -> startJob(databaseClient, listener), this::finishJob, getCompletionExecutor());
+	}
+
+	private QueryBatcherJobTicket startJob(DatabaseClient databaseClient, QueryBatcherListener jobCompletionListener) {
+		if (checkpointFile != null && !supportsCheckpoint()) {
+			throw new IllegalStateException("A checkpoint file is not supported by this job, as a new run would overwrite its output");
+		}
+
 		DataMovementManager dmm = this.dataMovementManager != null ? this.dataMovementManager : databaseClient.newDataMovementManager();
 
 		String jobDescription = getJobDescription();
@@ -76,21 +143,149 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		QueryBatcherBuilder builder = newQueryBatcherBuilder();
 		QueryBatcher queryBatcher = builder.buildQueryBatcher(databaseClient, dmm);
 
+		batchCheckpoint = checkpointFile != null ? new BatchCheckpoint(checkpointFile) : null;
+		jobMetrics = collectMetrics ? newJobMetrics() : null;
+		listenerProfile = profileListeners ? new ListenerProfile() : null;
+
 		prepareQueryBatcher(queryBatcher);
+		final AtomicBoolean completed = new AtomicBoolean(false);
+		jobCompleted = completed;
+		queryBatcher.onJobCompletion(batcher -> completed.set(true));
+		if (jobCompletionListener != null) {
+			queryBatcher.onJobCompletion(jobCompletionListener);
+		}
 
+		if (jobMetrics != null) {
+			jobMetrics.start();
+		}
 		JobTicket jobTicket = dmm.startJob(queryBatcher);
+		QueryBatcherJobTicket ticket = new QueryBatcherJobTicket(dmm, queryBatcher, jobTicket, jobMetrics,
+			new QueryBatcherListeners(this).exportJobMetrics(jobMetrics, queryBatcher));
+		ticket.setListenerProfile(listenerProfile);
+		return ticket;
+	}
 
-		if (awaitCompletion) {
-			queryBatcher.awaitCompletion();
-			if (stopJobAfterCompletion) {
-				dmm.stopJob(queryBatcher);
+	/**
+	 * Called once the QueryBatcher of the job has completed, when the job is run with awaitCompletion set to true or
+	 * via runAsync. Stops the job and calls finishOutput, and then finishes the checkpoint and logs the metrics. The
+	 * checkpoint is finished after the output so that it's kept if the output - e.g. files still being written by an
+	 * AsyncWriteStage - fails to finish, in which case that failure is rethrown.
+	 *
+	 * @param ticket
+	 */
+	protected void finishJob(QueryBatcherJobTicket ticket) {
+		QueryBatcher queryBatcher = ticket.getQueryBatcher();
+		JobMetrics metrics = ticket.getJobMetrics();
+		if (metrics != null) {
+			metrics.finish();
+		}
+		// isStopped can't be used here, as DMSDK also reports a job that completed normally as stopped
+		boolean stoppedBeforeCompletion = jobCompleted != null && !jobCompleted.get();
+		if (stopJobAfterCompletion) {
+			ticket.getDataMovementManager().stopJob(queryBatcher);
+		}
+		RuntimeException outputFailure = null;
+		try {
+			finishOutput(ticket);
+		} catch (RuntimeException ex) {
+			outputFailure = ex;
+		}
+		if (batchCheckpoint != null) {
+			finishCheckpoint(batchCheckpoint, stoppedBeforeCompletion || outputFailure != null);
+		}
+		String jobDescription = getJobDescription();
+		if (jobDescription != null && logger.isInfoEnabled()) {
+			logger.info("Completed: " + jobDescription);
+		}
+		if (metrics != null && logger.isInfoEnabled()) {
+			logger.info("Job metrics: " + metrics);
+		}
+		if (ticket.getListenerProfile() != null && logger.isInfoEnabled()) {
+			logger.info("Listener profile:\n" + ticket.getListenerProfile());
+		}
+		ticket.stopExportingJobMetrics();
+		if (outputFailure != null) {
+			throw outputFailure;
+		}
+	}
+
+	/**
+	 * Can be overridden by the subclass to finish what the job produces - e.g. closing a file - once the job has
+	 * completed. Unlike finishJob, this is also called when the job is a step of a PipelineJob.
+	 *
+	 * @param ticket
+	 */
+	protected void finishOutput(QueryBatcherJobTicket ticket) {
+	}
+
+	/**
+	 * Prepares this job as a step of a PipelineJob. Only the listeners of this job, and whatever its subclass prepares,
+	 * are added to the given QueryBatcher; the batcher settings, consistent snapshot, rate limits, adaptive thread
+	 * count, adaptive batch size and checkpoint of this job are not applied, as the pipeline applies its own. The
+	 * checkpoint, metrics and listener profile of the pipeline are used in place of this job's own, so that e.g. the
+	 * bytes exported by this job are recorded in the metrics of the pipeline.
+	 *
+	 * @param queryBatcher
+	 * @param pipelineCheckpoint
+	 * @param pipelineMetrics
+	 * @param pipelineProfile
+	 */
+	void prepareAsPipelineStep(QueryBatcher queryBatcher, BatchCheckpoint pipelineCheckpoint, JobMetrics pipelineMetrics,
+	                           ListenerProfile pipelineProfile) {
+		batchCheckpoint = pipelineCheckpoint;
+		jobCompleted = null;
+		jobMetrics = pipelineMetrics;
+		listenerProfile = pipelineProfile;
+		pipelineStep = true;
+		try {
+			prepareQueryBatcher(queryBatcher);
+		} finally {
+			pipelineStep = false;
+		}
+	}
+
+	/**
+	 * @return false if the output of this job can't be resumed from a checkpoint - e.g. a single file that a new run
+	 * would overwrite - in which case a checkpoint file can't be set
+	 */
+	protected boolean supportsCheckpoint() {
+		return true;
+	}
+
+	/**
+	 * @return a new JobMetrics for a run of this job; if the URIs to process are known up front, the metrics can
+	 * estimate the time remaining
+	 */
+	protected JobMetrics newJobMetrics() {
+		JobMetrics metrics = new JobMetrics();
+		if (whereUris != null && whereUris.length > 0 && queryBatcherBuilder == null) {
+			metrics.setExpectedUriCount(whereUris.length);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Closes the checkpoint after the job completes. If every batch succeeded, the checkpoint file is deleted so that
+	 * the next run starts from the beginning; otherwise, it's kept so that the next run only processes the URIs that
+	 * did not succeed.
+	 *
+	 * @param checkpoint
+	 * @param incomplete true if the job was stopped before it completed or if its output could not be finished
+	 */
+	protected void finishCheckpoint(BatchCheckpoint checkpoint, boolean incomplete) {
+		if (checkpoint.hasFailures() || incomplete) {
+			checkpoint.close();
+			if (logger.isInfoEnabled()) {
+				logger.info(String.format("Job did not complete successfully; failed batches: %d; query failures: %d; " +
+						"run the job again to resume from checkpoint file: %s",
+					checkpoint.getFailedBatchCount(), checkpoint.getQueryFailureCount(), checkpoint.getFile()));
 			}
-			if (jobDescription != null && logger.isInfoEnabled()) {
-				logger.info("Completed: " + jobDescription);
+		} else {
+			checkpoint.delete();
+			if (logger.isInfoEnabled() && checkpoint.getSkippedUriCount() > 0) {
+				logger.info("Skipped URIs completed by a previous run: " + checkpoint.getSkippedUriCount());
 			}
 		}
-
-		return new QueryBatcherJobTicket(dmm, queryBatcher, jobTicket);
 	}
 
 	@Override
@@ -107,6 +302,10 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 			}
 		}
 
+		if (checkpointFile != null && !supportsCheckpoint()) {
+			messages.add("The property 'checkpointFile' is not supported by this job, as a new run would overwrite its output");
+		}
+
 		if (requireWhereProperty && !isWherePropertySet() && queryBatcherBuilder == null) {
 			messages.add("At least one 'where' property must be set for selecting records to process");
 		}
@@ -120,12 +319,28 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 	}
 
 	protected void addQueryBatcherJobProperties() {
+		addJobProperty("adaptiveThreadCount", "If true, the number of batches processed at the same time is adjusted " +
+				"between minThreadCount and threadCount based on how the server is responding; defaults to false",
+			value -> setAdaptiveThreadCount(Boolean.parseBoolean(value)));
+
 		addJobProperty("batchSize", "Number of records to process at once; defaults to " + DEFAULT_BATCH_SIZE,
 			value -> setBatchSize(Integer.parseInt(value)));
 
+		addJobProperty("checkpointFile", "Path of a file that records each batch as it completes; if the job fails, " +
+				"running it again with the same file skips the URIs that were already processed. The file is deleted " +
+				"once the job completes without any failures. Not supported by jobs that export to a single file",
+			value -> setCheckpointFile(new File(value)));
+
 		addJobProperty("consistentSnapshot", "Whether or not to apply a consistent snapshot to the query for records; defaults to true",
 			value -> setConsistentSnapshot(Boolean.parseBoolean(value)));
 
+		addJobProperty("jmxMetrics", "If true, the metrics of the job are published via a JMX MXBean while the job runs; defaults to false",
+			value -> {
+				if (Boolean.parseBoolean(value)) {
+					addJobMetricsExporter(new JmxJobMetricsExporter());
+				}
+			});
+
 		addJobProperty("jobId", "Optional ID for the Data Movement job", value -> setJobId(value));
 
 		addJobProperty("jobName", "Optional name for the Data Movement job", value -> setJobName(value));
@@ -136,6 +351,42 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		addJobProperty("logBatchesWithLogger", "Log each batch as it's processed at the info-level using SLF4J",
 			value -> addUrisReadyListener(new SimpleBatchLoggingListener(true)));
 
+		addJobProperty("maxBatchesPerSecond", "If set, the most batches to process per second across all threads; each " +
+				"thread waits as needed so that batches are processed at an even rate",
+			value -> setMaxBatchesPerSecond(Double.parseDouble(value)));
+
+		addJobProperty("maxBatchSize", "When targetBatchLatency is set, the largest number of records to process at once; defaults to batchSize",
+			value -> setMaxBatchSize(Integer.parseInt(value)));
+
+		addJobProperty("maxUrisPerSecond", "If set, the most records to process per second across all threads; each " +
+				"thread waits as needed so that records are processed at an even rate",
+			value -> setMaxUrisPerSecond(Double.parseDouble(value)));
+
+		addJobProperty("micrometerMetrics", "If true, the metrics of the job are published via the Micrometer global " +
+				"registry while the job runs; requires Micrometer to be on the classpath; defaults to false",
+			value -> {
+				if (Boolean.parseBoolean(value)) {
+					if (!MicrometerJobMetricsExporter.isMicrometerAvailable()) {
+						throw new IllegalStateException("Unable to publish job metrics via Micrometer; Micrometer is not on the classpath");
+					}
+					addJobMetricsExporter(new MicrometerJobMetricsExporter());
+				}
+			});
+
+		addJobProperty("minBatchSize", "When targetBatchLatency is set, the smallest number of records to process at once; defaults to 1",
+			value -> setMinBatchSize(Integer.parseInt(value)));
+
+		addJobProperty("minThreadCount", "When adaptiveThreadCount is true, the fewest batches to process at the same time; defaults to 1",
+			value -> setMinThreadCount(Integer.parseInt(value)));
+
+		addJobProperty("profileListeners", "If true, the wall time, CPU time and allocated bytes of each listener are " +
+				"recorded and logged once the job completes; defaults to false",
+			value -> setProfileListeners(Boolean.parseBoolean(value)));
+
+		addJobProperty("targetBatchLatency", "If set, the number of records processed at once is adjusted, between " +
+				"minBatchSize and maxBatchSize, so that each batch takes approximately this many milliseconds",
+			value -> setTargetBatchLatencyMillis(Long.parseLong(value)));
+
 		addJobProperty("threadCount", "Number of threads to process records with; default to " + DEFAULT_THREAD_COUNT,
 			value -> setThreadCount(Integer.parseInt(value)));
 
@@ -149,11 +400,19 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		addJobProperty("whereUriPattern", "URI pattern for selecting records to process",
 			value -> setWhereUriPattern(value));
 
+		addJobProperty("whereUriPatternByForest", "If true, the URI pattern is matched against each forest in parallel " +
+				"instead of against the entire database; defaults to false",
+			value -> setWhereUriPatternByForest(Boolean.parseBoolean(value)));
+
 		addJobProperty("whereUris", "Comma-delimited list of URIs for selecting records to process",
 			value -> setWhereUris(value.split(",")));
 
 		addJobProperty("whereUrisQuery", "CTS URIs query for selecting records to process",
 			value -> setWhereUrisQuery(value));
+
+		addJobProperty("whereUrisQueryPageLength", "If set, the URIs matching whereUrisQuery are read in pages of this size " +
+				"instead of via a single request; requires whereUrisQuery to be a cts query",
+			value -> setWhereUrisQueryPageLength(Integer.parseInt(value)));
 	}
 
 	protected void addJobProperty(String name, String description, Consumer<String> propertyValueConsumer) {
@@ -185,16 +444,63 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 	 * @param queryBatcher
 	 */
 	protected void prepareQueryBatcher(QueryBatcher queryBatcher) {
+		if (pipelineStep) {
+			if (urisReadyListeners != null) {
+				urisReadyListeners.forEach(queryBatcher::onUrisReady);
+			}
+			if (queryFailureListeners != null) {
+				queryFailureListeners.forEach(queryBatcher::onQueryFailure);
+			}
+			return;
+		}
+
 		super.prepareBatcher(queryBatcher);
 
 		if (consistentSnapshot) {
 			queryBatcher.withConsistentSnapshot();
 		}
 
+		QueryBatcherListeners batcherListeners = new QueryBatcherListeners(this);
+		AdaptiveThreadCountController threadCountController = batcherListeners.newAdaptiveThreadCountController();
+
+		// Added first so that they delay every other listener
+		batcherListeners.newRateLimitingListeners().forEach(queryBatcher::onUrisReady);
+
 		if (urisReadyListeners != null) {
+			List<QueryBatchListener> listeners = new ArrayList<>();
 			for (QueryBatchListener listener : urisReadyListeners) {
-				queryBatcher.onUrisReady(listener);
+				if (batchCheckpoint != null && checkpointedListeners.add(listener)) {
+					ListenerFailures.onSelfHandledFailure(listener, batch -> {
+						BatchCheckpoint checkpoint = batchCheckpoint;
+						if (checkpoint != null) {
+							checkpoint.markBatchFailed(batch);
+						}
+					});
+				}
+				if (jobMetrics != null && instrumentedListeners.add(listener)) {
+					JobMetricsListener.instrument(listener);
+				}
+				listeners.add(batcherListeners.applyListenerProfile(batcherListeners.applyAdaptiveBatchSize(listener), listenerProfile));
+			}
+			listeners = batcherListeners.applyAdaptiveThreadCount(listeners, threadCountController);
+			if (jobMetrics != null) {
+				listeners = new ArrayList<>(Arrays.asList(new JobMetricsListener(jobMetrics, listeners)));
 			}
+			if (batchCheckpoint != null) {
+				queryBatcher.onUrisReady(new CheckpointListener(batchCheckpoint, listeners));
+			} else {
+				listeners.forEach(queryBatcher::onUrisReady);
+			}
+		}
+
+		if (batchCheckpoint != null) {
+			final BatchCheckpoint checkpoint = batchCheckpoint;
+			queryBatcher.onQueryFailure(failure -> checkpoint.recordQueryFailure());
+		}
+
+		if (jobMetrics != null) {
+			final JobMetrics metrics = jobMetrics;
+			queryBatcher.onQueryFailure(failure -> metrics.recordQueryFailure());
 		}
 
 		if (queryFailureListeners != null) {
@@ -202,6 +508,21 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 				queryBatcher.onQueryFailure(listener);
 			}
 		}
+
+		if (threadCountController != null) {
+			queryBatcher.onQueryFailure(failure -> threadCountController.recordFailure(failure));
+		}
+	}
+
+	/**
+	 * For a subclass to wrap a consumer that it adds to an ExportListener, so that the consumer is profiled along with
+	 * the job's listeners when profileListeners is true.
+	 *
+	 * @param consumer
+	 * @return
+	 */
+	protected Consumer<DocumentRecord> profileDocumentConsumer(Consumer<DocumentRecord> consumer) {
+		return new ProfilingDocumentConsumer(ListenerProfile.nameOf(consumer), consumer, () -> listenerProfile);
 	}
 
 	/**
@@ -219,10 +540,15 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 			return new CollectionsQueryBatcherBuilder(whereCollections);
 		}
 		if (whereUriPattern != null) {
-			return new UriPatternQueryBatcherBuilder(whereUriPattern);
+			UriPatternQueryBatcherBuilder builder = new UriPatternQueryBatcherBuilder(whereUriPattern);
+			builder.setQueryEachForest(whereUriPatternByForest);
+			builder.setForestConfig(getForestConfig());
+			return builder;
 		}
 		if (whereUrisQuery != null) {
-			return new UrisQueryQueryBatcherBuilder(whereUrisQuery);
+			UrisQueryQueryBatcherBuilder builder = new UrisQueryQueryBatcherBuilder(whereUrisQuery);
+			builder.setPageLength(whereUrisQueryPageLength);
+			return builder;
 		}
 		return null;
 	}
@@ -291,6 +617,15 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		return this;
 	}
 
+	public boolean isWhereUriPatternByForest() {
+		return whereUriPatternByForest;
+	}
+
+	public AbstractQueryBatcherJob setWhereUriPatternByForest(boolean whereUriPatternByForest) {
+		this.whereUriPatternByForest = whereUriPatternByForest;
+		return this;
+	}
+
 	public String getWhereUrisQuery() {
 		return whereUrisQuery;
 	}
@@ -300,6 +635,15 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		return this;
 	}
 
+	public Integer getWhereUrisQueryPageLength() {
+		return whereUrisQueryPageLength;
+	}
+
+	public AbstractQueryBatcherJob setWhereUrisQueryPageLength(Integer whereUrisQueryPageLength) {
+		this.whereUrisQueryPageLength = whereUrisQueryPageLength;
+		return this;
+	}
+
 	public String[] getWhereUris() {
 		return whereUris;
 	}
@@ -336,6 +680,61 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		return this;
 	}
 
+	public boolean isProfileListeners() {
+		return profileListeners;
+	}
+
+	public AbstractQueryBatcherJob setProfileListeners(boolean profileListeners) {
+		this.profileListeners = profileListeners;
+		return this;
+	}
+
+	/**
+	 * @return the time and memory used by each listener during the most recent run of this job, if profileListeners
+	 * was true
+	 */
+	public ListenerProfile getListenerProfile() {
+		return listenerProfile;
+	}
+
+	public File getCheckpointFile() {
+		return checkpointFile;
+	}
+
+	public AbstractQueryBatcherJob setCheckpointFile(File checkpointFile) {
+		this.checkpointFile = checkpointFile;
+		return this;
+	}
+
+	/**
+	 * @return the checkpoint used by the most recent run of this job, if a checkpoint file was set. If the job was not
+	 * run with awaitCompletion set to true, the client is responsible for closing the checkpoint once the job finishes.
+	 */
+	public BatchCheckpoint getBatchCheckpoint() {
+		return batchCheckpoint;
+	}
+
+	public boolean isCollectMetrics() {
+		return collectMetrics;
+	}
+
+	/**
+	 * @param collectMetrics if true, which is the default, a JobMetrics is made available via the QueryBatcherJobTicket
+	 *                       returned by run
+	 * @return
+	 */
+	public AbstractQueryBatcherJob setCollectMetrics(boolean collectMetrics) {
+		this.collectMetrics = collectMetrics;
+		return this;
+	}
+
+	/**
+	 * @return the metrics for the most recent run of this job, or null if metrics are not collected
+	 */
+	public JobMetrics getJobMetrics() {
+		return jobMetrics;
+	}
+
 	public boolean isAwaitCompletion() {
 		return awaitCompletion;
 	}
@@ -354,6 +753,10 @@ public abstract class AbstractQueryBatcherJob extends BatcherConfig implements Q
 		return this;
 	}
 
+	public DataMovementManager getDataMovementManager() {
+		return dataMovementManager;
+	}
+
 	public AbstractQueryBatcherJob setDataMovementManager(DataMovementManager dataMovementManager) {
 		this.dataMovementManager = dataMovementManager;
 		return this;
@@ -15,11 +15,13 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.ext.datamovement.listener.AddCollectionsListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
 
 import java.util.Arrays;
 
-public class AddCollectionsJob extends AbstractQueryBatcherJob implements QueryBatcherJob {
+public class AddCollectionsJob extends AbstractMetadataJob implements QueryBatcherJob {
 
 	private String[] collections;
 
@@ -39,8 +41,16 @@ public class AddCollectionsJob extends AbstractQueryBatcherJob implements QueryB
 		return "Adding documents " + getQueryDescription() + " to collections " + Arrays.asList(collections);
 	}
 
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		if (strategy == MetadataUpdateStrategy.DOCUMENTS) {
+			return new BulkPatchMetadataListener().addCollections(collections);
+		}
+		return new AddCollectionsListener(collections).withCacheableQuery(isCacheableQuery());
+	}
+
 	public void setCollections(String... collections) {
 		this.collections = collections;
-		this.addUrisReadyListener(new AddCollectionsListener(collections));
+		updateMetadataListener();
 	}
 }
@@ -15,11 +15,13 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.ext.datamovement.listener.AddPermissionsListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
 
 import java.util.Arrays;
 
-public class AddPermissionsJob extends AbstractQueryBatcherJob {
+public class AddPermissionsJob extends AbstractMetadataJob {
 
 	private String[] rolesAndCapabilities;
 
@@ -41,8 +43,16 @@ public class AddPermissionsJob extends AbstractQueryBatcherJob {
 		return "Adding permissions " + Arrays.asList(rolesAndCapabilities) + " to documents " + getQueryDescription();
 	}
 
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		if (strategy == MetadataUpdateStrategy.DOCUMENTS) {
+			return new BulkPatchMetadataListener().addPermissions(rolesAndCapabilities);
+		}
+		return new AddPermissionsListener(rolesAndCapabilities).withCacheableQuery(isCacheableQuery());
+	}
+
 	public void setRolesAndCapabilities(String... rolesAndCapabilities) {
 		this.rolesAndCapabilities = rolesAndCapabilities;
-		this.addUrisReadyListener(new AddPermissionsListener(rolesAndCapabilities));
+		updateMetadataListener();
 	}
 }
@@ -15,8 +15,11 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
 import com.marklogic.client.ext.datamovement.listener.ExportBatchesToDirectoryListener;
+import com.marklogic.client.ext.datamovement.util.AsyncWriteStage;
 
 import java.io.File;
 
@@ -24,6 +27,9 @@ public class ExportBatchesToDirectoryJob extends AbstractQueryBatcherJob {
 
 	private ExportBatchesToDirectoryListener exportBatchesToDirectoryListener;
 	private File exportDir;
+	private int writerThreadCount;
+	private long maxQueuedWriteBytes = AsyncWriteStage.DEFAULT_MAX_QUEUED_BYTES;
+	private AsyncWriteStage asyncWriteStage;
 
 	public ExportBatchesToDirectoryJob() {
 		super();
@@ -51,6 +57,14 @@ public class ExportBatchesToDirectoryJob extends AbstractQueryBatcherJob {
 			value -> getExportListener().withRecordSuffix(value));
 
 		addTransformJobProperty((value, transform) -> getExportListener().withTransform(transform));
+
+		addJobProperty("writerThreadCount", "If greater than zero, files are written by this many threads, separate " +
+				"from the threads that read batches, so that reading and writing can happen at the same time; defaults to 0",
+			value -> setWriterThreadCount(Integer.parseInt(value)));
+
+		addJobProperty("maxQueuedWriteBytes", "When writerThreadCount is set, the maximum number of bytes waiting to be " +
+				"written before reading is paused; defaults to " + AsyncWriteStage.DEFAULT_MAX_QUEUED_BYTES,
+			value -> setMaxQueuedWriteBytes(Long.parseLong(value)));
 	}
 
 	public ExportBatchesToDirectoryJob(File exportDir) {
@@ -58,6 +72,36 @@ public class ExportBatchesToDirectoryJob extends AbstractQueryBatcherJob {
 		setExportDir(exportDir);
 	}
 
+	/**
+	 * If writerThreadCount is greater than zero, the files are written via an AsyncWriteStage, which is closed - thus
+	 * waiting on all files to be written - after the job completes. If the job is not configured to await completion
+	 * and is not run via runAsync, the stage is left open and is available via getAsyncWriteStage.
+	 * <p>
+	 * The listener is also given the checkpoint of the run, if any, so that a resumed run does not overwrite the files
+	 * of a previous run.
+	 *
+	 * @param queryBatcher
+	 */
+	@Override
+	protected void prepareQueryBatcher(QueryBatcher queryBatcher) {
+		if (exportBatchesToDirectoryListener != null) {
+			exportBatchesToDirectoryListener.withBatchCheckpoint(getBatchCheckpoint());
+		}
+		if (writerThreadCount > 0 && exportBatchesToDirectoryListener != null) {
+			asyncWriteStage = new AsyncWriteStage(writerThreadCount, maxQueuedWriteBytes);
+			exportBatchesToDirectoryListener.withAsyncWriteStage(asyncWriteStage);
+		}
+
+		super.prepareQueryBatcher(queryBatcher);
+	}
+
+	@Override
+	protected void finishOutput(QueryBatcherJobTicket ticket) {
+		if (asyncWriteStage != null) {
+			asyncWriteStage.close();
+		}
+	}
+
 	@Override
 	protected String getJobDescription() {
 		return "Exporting batches of documents " + getQueryDescription() + " to files at: " + exportDir;
@@ -76,4 +120,16 @@ public class ExportBatchesToDirectoryJob extends AbstractQueryBatcherJob {
 	public File getExportDir() {
 		return exportDir;
 	}
+
+	public void setWriterThreadCount(int writerThreadCount) {
+		this.writerThreadCount = writerThreadCount;
+	}
+
+	public void setMaxQueuedWriteBytes(long maxQueuedWriteBytes) {
+		this.maxQueuedWriteBytes = maxQueuedWriteBytes;
+	}
+
+	public AsyncWriteStage getAsyncWriteStage() {
+		return asyncWriteStage;
+	}
 }
@@ -15,6 +15,7 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatcher;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.ext.datamovement.listener.ExportBatchesToZipsListener;
 
@@ -52,6 +53,20 @@ public class ExportBatchesToZipsJob extends AbstractQueryBatcherJob {
 		setExportDir(exportDir);
 	}
 
+	/**
+	 * Gives the listener the checkpoint of the run, if any, so that a resumed run does not overwrite the zip files of
+	 * a previous run.
+	 *
+	 * @param queryBatcher
+	 */
+	@Override
+	protected void prepareQueryBatcher(QueryBatcher queryBatcher) {
+		if (exportBatchesToZipsListener != null) {
+			exportBatchesToZipsListener.withBatchCheckpoint(getBatchCheckpoint());
+		}
+		super.prepareQueryBatcher(queryBatcher);
+	}
+
 	@Override
 	protected String getJobDescription() {
 		return "Exporting batches of documents " + getQueryDescription() + " to files at: " + exportDir;
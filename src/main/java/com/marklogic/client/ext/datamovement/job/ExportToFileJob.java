@@ -15,16 +15,22 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
-import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.ExportToWriterListener;
+import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.ext.datamovement.ListenerProfile;
 import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import com.marklogic.client.ext.datamovement.listener.ExportBatchesToWriterListener;
 import com.marklogic.client.ext.datamovement.listener.XmlOutputListener;
+import com.marklogic.client.ext.datamovement.util.BufferedFileWriter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
 
 /**
  * Job for exporting all documents matching a query to a single file.
@@ -32,17 +38,27 @@ import java.io.RandomAccessFile;
  * The 1.1 release added <code>setOmitLastRecordSuffix</code>, which can be used to (among other things) write all
  * JSON documents to an array via a record suffix of ",", but the comma after the last document will be removed so that
  * a valid array is written to the file.
+ *
+ * The file is written via a BufferedFileWriter, which uses UTF-8 and a large buffer by default. If appendBatches is
+ * set to true, each batch is written to memory by the thread that processes it and then appended to the file in a
+ * single write, instead of every thread waiting on the file while each batch is written record by record. Note that
+ * in that mode, changes made directly to the ExportToWriterListener returned by getExportListener are not used.
  */
 public class ExportToFileJob extends AbstractQueryBatcherJob {
 
 	private File exportFile;
 	private String fileHeader;
 	private String fileFooter;
-	private FileWriter fileWriter;
+	private BufferedFileWriter fileWriter;
 	private ExportToWriterListener exportToWriterListener;
 	private boolean includeXmlOutputListener = true;
+	private Charset fileCharset;
+	private Integer fileBufferSize;
+	private boolean appendBatches = false;
 
+	private String recordPrefix;
 	private String recordSuffix;
+	private ServerTransform transform;
 	private boolean omitLastRecordSuffix = false;
 
 	public ExportToFileJob() {
@@ -62,12 +78,24 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 			value -> setOmitLastRecordSuffix(Boolean.parseBoolean(value)));
 
 		addJobProperty("recordPrefix", "Optional content to be written before each record is written",
-			value -> getExportListener().withRecordPrefix(value));
+			value -> setRecordPrefix(value));
 
 		addJobProperty("recordSuffix", "Optional content to be written after each record is written",
 			value -> setRecordSuffix(value));
 
-		addTransformJobProperty((value, transform) -> getExportListener().withTransform(transform));
+		addTransformJobProperty((value, transform) -> setTransform(transform));
+
+		addJobProperty("fileEncoding", "The charset used to write the file; defaults to UTF-8",
+			value -> setFileCharset(Charset.forName(value)));
+
+		addJobProperty("fileBufferSize", "The number of characters buffered before being written to the file; defaults to " +
+				BufferedFileWriter.DEFAULT_BUFFER_SIZE,
+			value -> setFileBufferSize(Integer.parseInt(value)));
+
+		addJobProperty("appendBatches", "If true, each batch is written to memory by the thread that processes it and " +
+				"then appended to the file in a single write, which reduces the time that threads wait on one another; " +
+				"records within a batch stay together, but batches are written in the order they finish; defaults to false",
+			value -> setAppendBatches(Boolean.parseBoolean(value)));
 	}
 
 	public ExportToFileJob(File exportFile) {
@@ -80,6 +108,15 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 		return "Exporting documents " + getQueryDescription() + " to file at: " + exportFile;
 	}
 
+	/**
+	 * A checkpoint is not supported, as a resumed run would truncate the file and then write only the records that it
+	 * exported.
+	 */
+	@Override
+	protected boolean supportsCheckpoint() {
+		return false;
+	}
+
 	/**
 	 * If omitLastRecordSuffix is set to true, be sure to use this to set the recordSuffix instead of
 	 * getExportListener().withRecordSuffix.
@@ -93,8 +130,22 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 		}
 	}
 
+	public void setRecordPrefix(String recordPrefix) {
+		this.recordPrefix = recordPrefix;
+		if (this.exportToWriterListener != null) {
+			this.exportToWriterListener.withRecordPrefix(recordPrefix);
+		}
+	}
+
+	public void setTransform(ServerTransform transform) {
+		this.transform = transform;
+		if (this.exportToWriterListener != null) {
+			this.exportToWriterListener.withTransform(transform);
+		}
+	}
+
 	/**
-	 * Initializes this class's FileWriter and ExportToWriterListener.
+	 * Initializes this class's Writer and ExportToWriterListener. The file itself is not opened until the job is run.
 	 *
 	 * @param exportFile
 	 */
@@ -104,25 +155,48 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 		if (parentFile != null) {
 			parentFile.mkdirs();
 		}
-		try {
-			this.fileWriter = new FileWriter(exportFile);
-		} catch (IOException ie) {
-			throw new RuntimeException("Unable to open FileWriter on file: " + exportFile + "; cause: " + ie.getMessage(), ie);
+		this.fileWriter = new BufferedFileWriter(exportFile);
+		if (this.fileCharset != null) {
+			this.fileWriter.setCharset(fileCharset);
+		}
+		if (this.fileBufferSize != null) {
+			this.fileWriter.setBufferSize(fileBufferSize);
 		}
 
 		this.exportToWriterListener = new ExportToWriterListener(fileWriter);
+		if (this.recordPrefix != null) {
+			this.exportToWriterListener.withRecordPrefix(recordPrefix);
+		}
 		if (this.recordSuffix != null) {
 			this.exportToWriterListener.withRecordSuffix(recordSuffix);
 		}
+		if (this.transform != null) {
+			this.exportToWriterListener.withTransform(transform);
+		}
 		this.addUrisReadyListener(exportToWriterListener);
 	}
 
 	@Override
 	protected void prepareQueryBatcher(QueryBatcher queryBatcher) {
+		if (appendBatches) {
+			replaceExportListener(newExportBatchesToWriterListener());
+		}
+
 		super.prepareQueryBatcher(queryBatcher);
 
-		if (includeXmlOutputListener) {
-			this.exportToWriterListener.onGenerateOutput(new XmlOutputListener());
+		if (getJobMetrics() != null) {
+			getJobMetrics().addBytesExportedSource(fileWriter::getBytesWritten);
+		}
+
+		if (includeXmlOutputListener && !appendBatches) {
+			XmlOutputListener xmlOutputListener = new XmlOutputListener();
+			ListenerProfile profile = getListenerProfile();
+			if (profile != null) {
+				this.exportToWriterListener.onGenerateOutput(record -> profile.profile(ListenerProfile.nameOf(xmlOutputListener),
+					() -> xmlOutputListener.generateOutput(record)));
+			} else {
+				this.exportToWriterListener.onGenerateOutput(xmlOutputListener);
+			}
 		}
 
 		try {
@@ -136,9 +210,7 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 	}
 
 	@Override
-	public QueryBatcherJobTicket run(DatabaseClient databaseClient) {
-		QueryBatcherJobTicket ticket = super.run(databaseClient);
-
+	protected void finishOutput(QueryBatcherJobTicket ticket) {
 		if (ticket.getQueryBatcher().isStopped()) {
 			if (omitLastRecordSuffix && this.recordSuffix != null) {
 				removeLastRecordSuffixAndWriteFileFooter(fileWriter, recordSuffix, fileFooter);
@@ -146,12 +218,32 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 				writeFileFooter(fileWriter, fileFooter);
 			}
 		}
+	}
 
-		return ticket;
+	/**
+	 * @return a listener that writes each batch to this class's Writer, configured with the same properties as the
+	 * ExportToWriterListener created by this class
+	 */
+	protected ExportBatchesToWriterListener newExportBatchesToWriterListener() {
+		ExportBatchesToWriterListener listener = new ExportBatchesToWriterListener(fileWriter);
+		listener.withRecordPrefix(recordPrefix).withRecordSuffix(recordSuffix).withXmlOutputListener(includeXmlOutputListener);
+		if (transform != null) {
+			listener.withTransform(transform);
+		}
+		return listener;
+	}
+
+	private void replaceExportListener(QueryBatchListener listener) {
+		List<QueryBatchListener> listeners = getUrisReadyListeners();
+		int index = listeners != null ? listeners.indexOf(exportToWriterListener) : -1;
+		if (index < 0) {
+			throw new IllegalStateException("Unable to append batches; the ExportToWriterListener is no longer registered");
+		}
+		listeners.set(index, listener);
 	}
 
 	/**
-	 * If the last record suffix should be omitted, then the FileWriter is closed and a RandomAccessFile is used to seek
+	 * If the last record suffix should be omitted, then the Writer is closed and a RandomAccessFile is used to seek
 	 * to the end of the file minus the length of the record suffix. It is then overwritten with the file footer, or if
 	 * a file footer is not, then white space is added which matches the length of the record suffix.
 	 *
@@ -159,15 +251,16 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 	 * @param recordSuffix
 	 * @param fileFooter
 	 */
-	protected void removeLastRecordSuffixAndWriteFileFooter(FileWriter fileWriter, String recordSuffix, String fileFooter) {
+	protected void removeLastRecordSuffixAndWriteFileFooter(Writer fileWriter, String recordSuffix, String fileFooter) {
 		closeFileWriter(fileWriter);
 		RandomAccessFile raf = null;
 		try {
 			raf = new RandomAccessFile(this.exportFile, "rw");
-			int len = recordSuffix.length();
+			Charset charset = this.fileWriter.getCharset();
+			int len = recordSuffix.getBytes(charset).length;
 			raf.seek(raf.length() - len);
 			if (fileFooter != null) {
-				raf.write(fileFooter.getBytes());
+				raf.write(fileFooter.getBytes(charset));
 			} else {
 				for (int i = 0; i < len; i++) {
 					raf.write(" ".getBytes());
@@ -186,7 +279,7 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 		}
 	}
 
-	protected void writeFileFooter(FileWriter fileWriter, String fileFooter) {
+	protected void writeFileFooter(Writer fileWriter, String fileFooter) {
 		try {
 			if (fileFooter != null) {
 				fileWriter.write(fileFooter);
@@ -198,7 +291,7 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 		}
 	}
 
-	protected void closeFileWriter(FileWriter fileWriter) {
+	protected void closeFileWriter(Writer fileWriter) {
 		try {
 			fileWriter.close();
 		} catch (IOException e) {
@@ -207,12 +300,12 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 	}
 
 	/**
-	 * Allow client to fiddle with the FileWriter that's created by this class. Note that an exportFile must already
-	 * have been set either via this class's constructor or setExportFile; otherwise, the FileWriter will be null.
+	 * Allow client to fiddle with the Writer that's created by this class. Note that an exportFile must already
+	 * have been set either via this class's constructor or setExportFile; otherwise, the Writer will be null.
 	 *
 	 * @return
 	 */
-	public FileWriter getFileWriter() {
+	public Writer getFileWriter() {
 		return fileWriter;
 	}
 
@@ -245,4 +338,32 @@ public class ExportToFileJob extends AbstractQueryBatcherJob {
 	public void setOmitLastRecordSuffix(boolean omitLastRecordSuffix) {
 		this.omitLastRecordSuffix = omitLastRecordSuffix;
 	}
+
+	/**
+	 * Must be called before the job is run.
+	 *
+	 * @param fileCharset
+	 */
+	public void setFileCharset(Charset fileCharset) {
+		this.fileCharset = fileCharset;
+		if (this.fileWriter != null) {
+			this.fileWriter.setCharset(fileCharset);
+		}
+	}
+
+	/**
+	 * Must be called before the job is run.
+	 *
+	 * @param fileBufferSize
+	 */
+	public void setFileBufferSize(int fileBufferSize) {
+		this.fileBufferSize = fileBufferSize;
+		if (this.fileWriter != null) {
+			this.fileWriter.setBufferSize(fileBufferSize);
+		}
+	}
+
+	public void setAppendBatches(boolean appendBatches) {
+		this.appendBatches = appendBatches;
+	}
 }
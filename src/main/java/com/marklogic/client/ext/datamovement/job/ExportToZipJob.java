@@ -15,12 +15,12 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
-import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.datamovement.ExportListener;
 import com.marklogic.client.document.ServerTransform;
 import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
 import com.marklogic.client.ext.datamovement.consumer.WriteToZipConsumer;
 import com.marklogic.client.ext.datamovement.util.TransformPropertyValueParser;
+import com.marklogic.client.io.Format;
 
 import java.io.File;
 import java.util.function.BiConsumer;
@@ -42,6 +42,26 @@ public class ExportToZipJob extends AbstractQueryBatcherJob {
 
 		addTransformJobProperty((value, transform) -> getExportListener().withTransform(transform));
 
+		addJobProperty("parallelCompression", "If true, each thread compresses its records before the zip file is locked, " +
+				"so that the lock is only held while compressed bytes are written; ignored if shardCount is greater than 1; defaults to false",
+			value -> getWriteToZipConsumer().setParallelCompression(Boolean.parseBoolean(value)));
+
+		addJobProperty("shardCount", "Number of zip files to write to at the same time, each named after the export path " +
+				"with a number appended; use this to avoid having every thread wait on a single zip file; defaults to 1",
+			value -> getWriteToZipConsumer().setShardCount(Integer.parseInt(value)));
+
+		addJobProperty("mergeShards", "If true and shardCount is greater than 1, the zip files are merged into a single " +
+				"zip file at the export path after all records have been exported; defaults to false",
+			value -> getWriteToZipConsumer().setMergeShards(Boolean.parseBoolean(value)));
+
+		addJobProperty("storedFormats", "Comma-delimited list of document formats - e.g. 'binary' - whose records are " +
+				"written to the zip file without being compressed",
+			value -> getWriteToZipConsumer().setStoredFormats(parseFormats(value)));
+
+		addJobProperty("storedMimetypes", "Comma-delimited list of mimetypes - e.g. 'image/*,application/pdf' - whose " +
+				"records are written to the zip file without being compressed",
+			value -> getWriteToZipConsumer().setStoredMimetypes(value.split(",")));
+
 		addJobProperty("uriPrefix", "Prefix to prepend to each URI it is used as an entry name; applied after a URI is optionally flattened",
 			value -> getWriteToZipConsumer().setUriPrefix(value));
 	}
@@ -51,15 +71,17 @@ public class ExportToZipJob extends AbstractQueryBatcherJob {
 		setExportFile(exportFile);
 	}
 
+	/**
+	 * Closes the zip file once the job has completed. If the job is run without awaiting completion, the client is
+	 * responsible for closing the WriteToZipConsumer once the job completes.
+	 *
+	 * @param ticket
+	 */
 	@Override
-	public QueryBatcherJobTicket run(DatabaseClient databaseClient) {
-		QueryBatcherJobTicket ticket = super.run(databaseClient);
-
+	protected void finishOutput(QueryBatcherJobTicket ticket) {
 		if (writeToZipConsumer != null) {
 			writeToZipConsumer.close();
 		}
-
-		return ticket;
 	}
 
 	public void setExportFile(File exportFile) {
@@ -72,15 +94,33 @@ public class ExportToZipJob extends AbstractQueryBatcherJob {
 		this.writeToZipConsumer = new WriteToZipConsumer(exportFile);
 
 		this.exportListener = new ExportListener();
-		this.exportListener.onDocumentReady(writeToZipConsumer);
+		this.exportListener.onDocumentReady(profileDocumentConsumer(writeToZipConsumer));
 		this.addUrisReadyListener(this.exportListener);
 	}
 
+	private Format[] parseFormats(String value) {
+		String[] names = value.split(",");
+		Format[] formats = new Format[names.length];
+		for (int i = 0; i < names.length; i++) {
+			formats[i] = Format.valueOf(names[i].trim().toUpperCase());
+		}
+		return formats;
+	}
+
 	@Override
 	protected String getJobDescription() {
 		return "Exporting documents " + getQueryDescription() + " to file at: " + exportFile;
 	}
 
+	/**
+	 * A checkpoint is not supported, as a resumed run would write a new zip file containing only the records that it
+	 * exported; a zip file can't be appended to once it has been closed.
+	 */
+	@Override
+	protected boolean supportsCheckpoint() {
+		return false;
+	}
+
 	/**
 	 * Allow client to fiddle with the ExportListener created by this class.
 	 *
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+/**
+ * Determines how jobs that modify document metadata - such as {@code AddCollectionsJob} - apply their changes.
+ */
+public enum MetadataUpdateStrategy {
+
+	/**
+	 * Changes are applied via an eval call per batch, which requires eval privileges.
+	 */
+	EVAL,
+
+	/**
+	 * Each batch's metadata is read via a bulk read and then written back via a metadata-only bulk write, which does
+	 * not require eval privileges.
+	 */
+	DOCUMENTS
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.AbstractPatchMetadataListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
+import com.marklogic.client.ext.datamovement.listener.PatchMetadataListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Applies any combination of collection, permission, and metadata value changes to the selected records via a single
+ * request per batch - either an eval call or, with the DOCUMENTS metadata update strategy, a bulk read and write. See
+ * {@code AbstractPatchMetadataListener} for how combined changes are applied.
+ */
+public class PatchMetadataJob extends AbstractMetadataJob {
+
+	private List<Consumer<AbstractPatchMetadataListener<?>>> changes = new ArrayList<>();
+	private List<String> changeDescriptions = new ArrayList<>();
+
+	public PatchMetadataJob() {
+		super();
+
+		addJobProperty("addCollections", "Comma-delimited list of collections to add to selected records",
+			value -> addCollections(value.split(",")));
+
+		addJobProperty("addMetadataValues", "Comma-delimited list of metadata keys and values to add to selected records",
+			value -> addMetadataValues(value.split(",")));
+
+		addJobProperty("addPermissions", "Comma-delimited list of roles and capabilities defining permissions to add to selected records",
+			value -> addPermissions(value.split(",")));
+
+		addJobProperty("removeCollections", "Comma-delimited list of collections to remove from selected records",
+			value -> removeCollections(value.split(",")));
+
+		addJobProperty("removeMetadataKeys", "Comma-delimited list of metadata keys to remove from selected records",
+			value -> removeMetadataKeys(value.split(",")));
+
+		addJobProperty("removePermissions", "Comma-delimited list of roles and capabilities defining permissions to remove from selected records",
+			value -> removePermissions(value.split(",")));
+
+		addJobProperty("setCollections", "Comma-delimited list of collections to set on selected records",
+			value -> setCollections(value.split(",")));
+
+		addJobProperty("setMetadataValues", "Comma-delimited list of metadata keys and values to set on selected records, replacing all existing metadata values",
+			value -> setMetadataValues(value.split(",")));
+
+		addJobProperty("setPermissions", "Comma-delimited list of roles and capabilities defining permissions to set on selected records",
+			value -> setPermissions(value.split(",")));
+	}
+
+	@Override
+	protected String getJobDescription() {
+		return "Patching metadata " + changeDescriptions + " on documents " + getQueryDescription();
+	}
+
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		AbstractPatchMetadataListener<?> listener = strategy == MetadataUpdateStrategy.DOCUMENTS ?
+			new BulkPatchMetadataListener() : new PatchMetadataListener();
+		changes.forEach(change -> change.accept(listener));
+		return listener;
+	}
+
+	public PatchMetadataJob addCollections(String... collections) {
+		return addChange(listener -> listener.addCollections(collections), "adding collections", collections);
+	}
+
+	public PatchMetadataJob setCollections(String... collections) {
+		return addChange(listener -> listener.setCollections(collections), "setting collections", collections);
+	}
+
+	public PatchMetadataJob removeCollections(String... collections) {
+		return addChange(listener -> listener.removeCollections(collections), "removing collections", collections);
+	}
+
+	public PatchMetadataJob addPermissions(String... rolesAndCapabilities) {
+		return addChange(listener -> listener.addPermissions(rolesAndCapabilities), "adding permissions", rolesAndCapabilities);
+	}
+
+	public PatchMetadataJob setPermissions(String... rolesAndCapabilities) {
+		return addChange(listener -> listener.setPermissions(rolesAndCapabilities), "setting permissions", rolesAndCapabilities);
+	}
+
+	public PatchMetadataJob removePermissions(String... rolesAndCapabilities) {
+		return addChange(listener -> listener.removePermissions(rolesAndCapabilities), "removing permissions", rolesAndCapabilities);
+	}
+
+	public PatchMetadataJob addMetadataValues(String... keysAndValues) {
+		return addChange(listener -> listener.addMetadataValues(keysAndValues), "adding metadata values", keysAndValues);
+	}
+
+	public PatchMetadataJob setMetadataValues(String... keysAndValues) {
+		return addChange(listener -> listener.setMetadataValues(keysAndValues), "setting metadata values", keysAndValues);
+	}
+
+	public PatchMetadataJob removeMetadataKeys(String... keys) {
+		return addChange(listener -> listener.removeMetadataKeys(keys), "removing metadata keys", keys);
+	}
+
+	private PatchMetadataJob addChange(Consumer<AbstractPatchMetadataListener<?>> change, String description, String[] values) {
+		changes.add(change);
+		changeDescriptions.add(description + " " + Arrays.asList(values));
+		updateMetadataListener();
+		return this;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.QueryFailureListener;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Applies the listeners of several jobs - the steps of the pipeline - to a single selection of documents, so that the
+ * URIs are only retrieved and batched once. For example, a SetCollectionsJob, an AddPermissionsJob and an
+ * ExportToZipJob can be added as steps so that each batch has its collections set, then its permissions added, and
+ * is then exported, all via one QueryBatcher.
+ * <p>
+ * The documents are selected via the "where" properties of this job, and the QueryBatcher is configured solely by
+ * this job: its batch size, thread count, consistent snapshot, rate limits, adaptive thread count, adaptive batch
+ * size, checkpoint, metrics and listener profile apply to the listeners of every step. None of these settings of a
+ * step are applied. DMSDK calls the listeners of a batch in order on the same thread, so the steps process each batch
+ * in the order in which they were added. A step that fails on a batch does not stop the following steps from
+ * processing that batch.
+ * <p>
+ * What carries over from each step is its URIs ready listeners, its query failure listeners, and whatever the step
+ * prepares and finishes for its output - e.g. ExportToFileJob writes its file header and footer, and ExportToZipJob
+ * closes its zip file once the pipeline has completed. A step that records into the job metrics or listener profile
+ * - e.g. the bytes written by ExportToFileJob - records into those of this job. A step should not also be run on its
+ * own.
+ */
+public class PipelineJob extends AbstractQueryBatcherJob {
+
+	private final List<AbstractQueryBatcherJob> steps = new ArrayList<>();
+
+	public PipelineJob(AbstractQueryBatcherJob... steps) {
+		super();
+		this.steps.addAll(Arrays.asList(steps));
+	}
+
+	public PipelineJob addStep(AbstractQueryBatcherJob step) {
+		this.steps.add(step);
+		return this;
+	}
+
+	public List<AbstractQueryBatcherJob> getSteps() {
+		return steps;
+	}
+
+	@Override
+	protected String getJobDescription() {
+		String stepNames = steps.stream().map(step -> step.getClass().getSimpleName()).collect(Collectors.joining(", "));
+		return "Running pipeline [" + stepNames + "] on documents " + getQueryDescription();
+	}
+
+	/**
+	 * Each step prepares a stand-in for the QueryBatcher that captures the listeners it adds, which are then added to
+	 * the QueryBatcher before any listeners of this job, in the order of the steps, and wrapped like the listeners of
+	 * this job.
+	 *
+	 * @param queryBatcher
+	 */
+	@Override
+	protected void prepareQueryBatcher(QueryBatcher queryBatcher) {
+		if (steps.isEmpty()) {
+			throw new IllegalStateException("At least one step must be added to the pipeline");
+		}
+
+		List<QueryBatchListener> stepListeners = new ArrayList<>();
+		for (AbstractQueryBatcherJob step : steps) {
+			List<QueryFailureListener> stepFailureListeners = new ArrayList<>();
+			step.prepareAsPipelineStep(newStepQueryBatcher(queryBatcher, stepListeners, stepFailureListeners),
+				getBatchCheckpoint(), getJobMetrics(), getListenerProfile());
+			stepFailureListeners.forEach(queryBatcher::onQueryFailure);
+		}
+
+		List<QueryBatchListener> ownListeners = getUrisReadyListeners();
+		List<QueryBatchListener> listeners = new ArrayList<>(stepListeners);
+		if (ownListeners != null) {
+			listeners.addAll(ownListeners);
+		}
+		setUrisReadyListeners(listeners);
+		try {
+			super.prepareQueryBatcher(queryBatcher);
+		} finally {
+			setUrisReadyListeners(ownListeners);
+		}
+	}
+
+	/**
+	 * @return true only if every step supports a checkpoint, as the checkpoint of this job covers the output of every
+	 * step
+	 */
+	@Override
+	protected boolean supportsCheckpoint() {
+		return steps.stream().allMatch(AbstractQueryBatcherJob::supportsCheckpoint);
+	}
+
+	/**
+	 * Finishes the output of each step after this job has finished; the job itself is only stopped, checkpointed and
+	 * logged once, by this job.
+	 *
+	 * @param ticket
+	 */
+	@Override
+	protected void finishOutput(QueryBatcherJobTicket ticket) {
+		super.finishOutput(ticket);
+
+		for (AbstractQueryBatcherJob step : steps) {
+			step.finishOutput(ticket);
+		}
+	}
+
+	/**
+	 * @return a QueryBatcher that adds listeners to the given lists, ignores changes to batcher settings, and
+	 * delegates everything else to the given QueryBatcher
+	 */
+	private QueryBatcher newStepQueryBatcher(QueryBatcher queryBatcher, List<QueryBatchListener> urisReadyListeners,
+	                                         List<QueryFailureListener> queryFailureListeners) {
+		return (QueryBatcher) Proxy.newProxyInstance(QueryBatcher.class.getClassLoader(), new Class[]{QueryBatcher.class},
+			(proxy, method, args) -> {
+				String name = method.getName();
+				if ("onUrisReady".equals(name)) {
+					urisReadyListeners.add((QueryBatchListener) args[0]);
+					return proxy;
+				} else if ("onQueryFailure".equals(name)) {
+					queryFailureListeners.add((QueryFailureListener) args[0]);
+					return proxy;
+				} else if (name.startsWith("with")) {
+					return proxy;
+				}
+				try {
+					return method.invoke(queryBatcher, args);
+				} catch (InvocationTargetException ex) {
+					throw ex.getCause();
+				}
+			});
+	}
+}
@@ -17,9 +17,22 @@ package com.marklogic.client.ext.datamovement.job;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import com.marklogic.client.ext.datamovement.util.AsyncJobs;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface QueryBatcherJob {
 
 	QueryBatcherJobTicket run(DatabaseClient databaseClient);
 
+	/**
+	 * Runs the job without blocking the calling thread. By default, run is invoked on a thread of the default
+	 * completion executor; AbstractQueryBatcherJob overrides this so that no thread is blocked while the job runs.
+	 *
+	 * @param databaseClient
+	 * @return
+	 */
+	default CompletableFuture<QueryBatcherJobTicket> runAsync(DatabaseClient databaseClient) {
+		return CompletableFuture.supplyAsync(() -> run(databaseClient), AsyncJobs.getDefaultCompletionExecutor());
+	}
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.ext.datamovement.AdaptiveThreadCountController;
+import com.marklogic.client.ext.datamovement.BatcherConfig;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs many QueryBatcherJob instances concurrently against a single DatabaseClient, such that the thread counts of
+ * the running jobs never add up to more than a max thread count. Jobs are started in order of priority - highest
+ * first - and then in the order they were submitted; a job waits until enough threads are available, unless no other
+ * job is running, in which case its thread count is reduced to the max.
+ * <p>
+ * Jobs that extend AbstractQueryBatcherJob are given the DataMovementManager of this class, unless they already have
+ * one, so that every job shares the connection pool of the DatabaseClient. If a max number of in-flight batches is
+ * set, those jobs also share a single AdaptiveThreadCountController that limits how many batches are processed at
+ * the same time across every job. Other implementations of QueryBatcherJob are assumed to use the default thread
+ * count. The thread count, controller, and DataMovementManager applied to a job are only for the run that this class
+ * starts; the job's own values are restored once that run finishes, before the job's future completes.
+ */
+public class QueryBatcherJobScheduler implements Closeable {
+
+	private final static Logger logger = LoggerFactory.getLogger(QueryBatcherJobScheduler.class);
+
+	private final DatabaseClient databaseClient;
+	private final DataMovementManager dataMovementManager;
+	// Only a DataMovementManager created by this class is released when this class is closed
+	private final boolean releaseDataMovementManager;
+	private final int maxThreadCount;
+
+	private final PriorityQueue<PendingJob> pendingJobs = new PriorityQueue<>();
+	private final List<CompletableFuture<QueryBatcherJobTicket>> submittedJobs = new ArrayList<>();
+	private volatile AdaptiveThreadCountController inFlightBatchController;
+	private int availableThreadCount;
+	private int runningJobCount;
+	private long submissionCount;
+
+	public QueryBatcherJobScheduler(DatabaseClient databaseClient, int maxThreadCount) {
+		this(databaseClient, databaseClient.newDataMovementManager(), maxThreadCount, true);
+	}
+
+	/**
+	 * @param databaseClient      used to run every job
+	 * @param dataMovementManager shared by every job that extends AbstractQueryBatcherJob and does not have its own;
+	 *                            it is not released when this class is closed, as the caller owns it
+	 * @param maxThreadCount      the most threads that can be used by all of the running jobs
+	 */
+	public QueryBatcherJobScheduler(DatabaseClient databaseClient, DataMovementManager dataMovementManager, int maxThreadCount) {
+		this(databaseClient, dataMovementManager, maxThreadCount, false);
+	}
+
+	private QueryBatcherJobScheduler(DatabaseClient databaseClient, DataMovementManager dataMovementManager, int maxThreadCount,
+	                                 boolean releaseDataMovementManager) {
+		if (maxThreadCount < 1) {
+			throw new IllegalArgumentException("Max thread count must be at least 1; was: " + maxThreadCount);
+		}
+		this.databaseClient = databaseClient;
+		this.dataMovementManager = dataMovementManager;
+		this.maxThreadCount = maxThreadCount;
+		this.availableThreadCount = maxThreadCount;
+		this.releaseDataMovementManager = releaseDataMovementManager;
+	}
+
+	/**
+	 * @param maxInFlightBatches the most batches that can be processed at the same time across every job that extends
+	 *                           AbstractQueryBatcherJob; applies to jobs started after this is set
+	 * @return
+	 */
+	public synchronized QueryBatcherJobScheduler setMaxInFlightBatches(int maxInFlightBatches) {
+		this.inFlightBatchController = maxInFlightBatches > 0 ?
+			new AdaptiveThreadCountController(maxInFlightBatches, maxInFlightBatches) : null;
+		return this;
+	}
+
+	public CompletableFuture<QueryBatcherJobTicket> submit(QueryBatcherJob job) {
+		return submit(job, 0);
+	}
+
+	/**
+	 * @param job
+	 * @param priority jobs with a higher priority are started before jobs with a lower priority
+	 * @return completes with the ticket of the job once it has finished, or exceptionally if it failed
+	 */
+	public CompletableFuture<QueryBatcherJobTicket> submit(QueryBatcherJob job, int priority) {
+		PendingJob pendingJob;
+		synchronized (this) {
+			pendingJob = new PendingJob(job, priority, submissionCount++, getThreadCount(job));
+			pendingJobs.add(pendingJob);
+			submittedJobs.add(pendingJob.future);
+		}
+		startJobs();
+		return pendingJob.future;
+	}
+
+	/**
+	 * Blocks until every job submitted so far has finished, whether it succeeded or not.
+	 */
+	public void awaitCompletion() {
+		List<CompletableFuture<QueryBatcherJobTicket>> futures;
+		synchronized (this) {
+			futures = new ArrayList<>(submittedJobs);
+		}
+		for (CompletableFuture<QueryBatcherJobTicket> future : futures) {
+			try {
+				future.join();
+			} catch (CompletionException ex) {
+				// The failure is available to the client via the future
+			}
+		}
+	}
+
+	/**
+	 * Cancels any jobs that have not started yet and releases the DataMovementManager if this class created it. Jobs
+	 * that are running are not stopped; call awaitCompletion first to wait on them.
+	 */
+	@Override
+	public void close() {
+		List<PendingJob> cancelled;
+		synchronized (this) {
+			cancelled = new ArrayList<>(pendingJobs);
+			pendingJobs.clear();
+		}
+		cancelled.forEach(job -> job.future.cancel(false));
+		if (releaseDataMovementManager) {
+			dataMovementManager.release();
+		}
+	}
+
+	public synchronized int getPendingJobCount() {
+		return pendingJobs.size();
+	}
+
+	public synchronized int getRunningJobCount() {
+		return runningJobCount;
+	}
+
+	public synchronized int getAvailableThreadCount() {
+		return availableThreadCount;
+	}
+
+	public DataMovementManager getDataMovementManager() {
+		return dataMovementManager;
+	}
+
+	/**
+	 * Starts as many pending jobs as the available threads allow. The jobs are started outside of the lock, as
+	 * starting a job involves requests to MarkLogic.
+	 */
+	private void startJobs() {
+		List<PendingJob> jobsToStart = new ArrayList<>();
+		synchronized (this) {
+			while (!pendingJobs.isEmpty()) {
+				PendingJob next = pendingJobs.peek();
+				if (next.threadCount > availableThreadCount && runningJobCount > 0) {
+					break;
+				}
+				pendingJobs.poll();
+				availableThreadCount -= next.threadCount;
+				runningJobCount++;
+				jobsToStart.add(next);
+			}
+		}
+		jobsToStart.forEach(this::startJob);
+	}
+
+	private void startJob(PendingJob pendingJob) {
+		Runnable restoreJob = prepareJob(pendingJob.job, pendingJob.threadCount);
+		CompletableFuture<QueryBatcherJobTicket> jobFuture;
+		try {
+			jobFuture = pendingJob.job.runAsync(databaseClient);
+		} catch (RuntimeException ex) {
+			jobFuture = new CompletableFuture<>();
+			jobFuture.completeExceptionally(ex);
+		}
+		jobFuture.whenComplete((ticket, failure) -> {
+			restoreJob.run();
+			synchronized (this) {
+				availableThreadCount += pendingJob.threadCount;
+				runningJobCount--;
+			}
+			if (failure != null) {
+				Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+				logger.warn("Job failed; cause: " + cause.getMessage());
+				pendingJob.future.completeExceptionally(cause);
+			} else {
+				pendingJob.future.complete(ticket);
+			}
+			startJobs();
+		});
+	}
+
+	private int getThreadCount(QueryBatcherJob job) {
+		Integer threadCount = job instanceof BatcherConfig ? ((BatcherConfig) job).getThreadCount() : null;
+		int count = threadCount != null && threadCount > 0 ? threadCount : BatcherConfig.DEFAULT_THREAD_COUNT;
+		return Math.min(count, maxThreadCount);
+	}
+
+	/**
+	 * Applies the settings of this class to the given job for the run that is about to start.
+	 *
+	 * @return restores the job's own settings once the run has finished
+	 */
+	private Runnable prepareJob(QueryBatcherJob job, int threadCount) {
+		List<Runnable> restorers = new ArrayList<>();
+		if (job instanceof BatcherConfig) {
+			BatcherConfig config = (BatcherConfig) job;
+			final Integer originalThreadCount = config.getThreadCount();
+			config.setThreadCount(threadCount);
+			restorers.add(() -> config.setThreadCount(originalThreadCount));
+			if (inFlightBatchController != null && config.getAdaptiveThreadCountController() == null) {
+				config.setAdaptiveThreadCountController(inFlightBatchController);
+				restorers.add(() -> config.setAdaptiveThreadCountController(null));
+			}
+		}
+		if (job instanceof AbstractQueryBatcherJob) {
+			AbstractQueryBatcherJob abstractJob = (AbstractQueryBatcherJob) job;
+			if (abstractJob.getDataMovementManager() == null) {
+				abstractJob.setDataMovementManager(dataMovementManager);
+				restorers.add(() -> abstractJob.setDataMovementManager(null));
+			}
+		}
+		return () -> restorers.forEach(Runnable::run);
+	}
+
+	private static class PendingJob implements Comparable<PendingJob> {
+
+		private final QueryBatcherJob job;
+		private final int priority;
+		private final long sequence;
+		private final int threadCount;
+		private final CompletableFuture<QueryBatcherJobTicket> future = new CompletableFuture<>();
+
+		private PendingJob(QueryBatcherJob job, int priority, long sequence, int threadCount) {
+			this.job = job;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.threadCount = threadCount;
+		}
+
+		@Override
+		public int compareTo(PendingJob other) {
+			if (priority != other.priority) {
+				return Integer.compare(other.priority, priority);
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -15,13 +15,15 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.ext.datamovement.CollectionsQueryBatcherBuilder;
 import com.marklogic.client.ext.datamovement.QueryBatcherBuilder;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
 import com.marklogic.client.ext.datamovement.listener.RemoveCollectionsListener;
 
 import java.util.Arrays;
 
-public class RemoveCollectionsJob extends AbstractQueryBatcherJob {
+public class RemoveCollectionsJob extends AbstractMetadataJob {
 
 	private String[] collections;
 
@@ -62,8 +64,16 @@ public class RemoveCollectionsJob extends AbstractQueryBatcherJob {
 		return builder != null ? builder : new CollectionsQueryBatcherBuilder(collections);
 	}
 
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		if (strategy == MetadataUpdateStrategy.DOCUMENTS) {
+			return new BulkPatchMetadataListener().removeCollections(collections);
+		}
+		return new RemoveCollectionsListener(collections).withCacheableQuery(isCacheableQuery());
+	}
+
 	public void setCollections(String... collections) {
 		this.collections = collections;
-		this.addUrisReadyListener(new RemoveCollectionsListener(collections));
+		updateMetadataListener();
 	}
 }
@@ -15,11 +15,13 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
 import com.marklogic.client.ext.datamovement.listener.RemovePermissionsListener;
 
 import java.util.Arrays;
 
-public class RemovePermissionsJob extends AbstractQueryBatcherJob {
+public class RemovePermissionsJob extends AbstractMetadataJob {
 
 	private String[] rolesAndCapabilities;
 
@@ -41,8 +43,16 @@ public class RemovePermissionsJob extends AbstractQueryBatcherJob {
 		return "Removing permissions " + Arrays.asList(rolesAndCapabilities) + " from documents " + getQueryDescription();
 	}
 
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		if (strategy == MetadataUpdateStrategy.DOCUMENTS) {
+			return new BulkPatchMetadataListener().removePermissions(rolesAndCapabilities);
+		}
+		return new RemovePermissionsListener(rolesAndCapabilities).withCacheableQuery(isCacheableQuery());
+	}
+
 	public void setRolesAndCapabilities(String... rolesAndCapabilities) {
 		this.rolesAndCapabilities = rolesAndCapabilities;
-		this.addUrisReadyListener(new RemovePermissionsListener(rolesAndCapabilities));
+		updateMetadataListener();
 	}
 }
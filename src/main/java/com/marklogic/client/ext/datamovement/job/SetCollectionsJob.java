@@ -15,11 +15,13 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
 import com.marklogic.client.ext.datamovement.listener.SetCollectionsListener;
 
 import java.util.Arrays;
 
-public class SetCollectionsJob extends AbstractQueryBatcherJob {
+public class SetCollectionsJob extends AbstractMetadataJob {
 
 	private String[] collections;
 
@@ -40,8 +42,16 @@ public class SetCollectionsJob extends AbstractQueryBatcherJob {
 		return "Setting collections " + Arrays.asList(collections) + " on documents " + getQueryDescription();
 	}
 
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		if (strategy == MetadataUpdateStrategy.DOCUMENTS) {
+			return new BulkPatchMetadataListener().setCollections(collections);
+		}
+		return new SetCollectionsListener(collections).withCacheableQuery(isCacheableQuery());
+	}
+
 	public void setCollections(String... collections) {
 		this.collections = collections;
-		this.addUrisReadyListener(new SetCollectionsListener(collections));
+		updateMetadataListener();
 	}
 }
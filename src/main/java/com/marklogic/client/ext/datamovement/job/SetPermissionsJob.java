@@ -15,11 +15,13 @@
  */
 package com.marklogic.client.ext.datamovement.job;
 
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
 import com.marklogic.client.ext.datamovement.listener.SetPermissionsListener;
 
 import java.util.Arrays;
 
-public class SetPermissionsJob extends AbstractQueryBatcherJob {
+public class SetPermissionsJob extends AbstractMetadataJob {
 
 	private String[] rolesAndCapabilities;
 
@@ -41,8 +43,16 @@ public class SetPermissionsJob extends AbstractQueryBatcherJob {
 		return "Setting permissions " + Arrays.asList(rolesAndCapabilities) + " on documents " + getQueryDescription();
 	}
 
+	@Override
+	protected QueryBatchListener newMetadataListener(MetadataUpdateStrategy strategy) {
+		if (strategy == MetadataUpdateStrategy.DOCUMENTS) {
+			return new BulkPatchMetadataListener().setPermissions(rolesAndCapabilities);
+		}
+		return new SetPermissionsListener(rolesAndCapabilities).withCacheableQuery(isCacheableQuery());
+	}
+
 	public void setRolesAndCapabilities(String... rolesAndCapabilities) {
 		this.rolesAndCapabilities = rolesAndCapabilities;
-		this.addUrisReadyListener(new SetPermissionsListener(rolesAndCapabilities));
+		updateMetadataListener();
 	}
 }
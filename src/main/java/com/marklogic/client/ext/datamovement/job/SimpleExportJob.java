@@ -30,7 +30,7 @@ public class SimpleExportJob extends AbstractQueryBatcherJob {
 	public SimpleExportJob(Consumer<DocumentRecord>... consumers) {
 		exportListener = new ExportListener();
 		for (Consumer<DocumentRecord> consumer : consumers) {
-			exportListener.onDocumentReady(consumer);
+			exportListener.onDocumentReady(profileDocumentConsumer(consumer));
 		}
 		this.addUrisReadyListener(exportListener);
 	}
@@ -18,23 +18,43 @@ package com.marklogic.client.ext.datamovement.listener;
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.eval.ServerEvaluationCall;
+import com.marklogic.client.ext.datamovement.util.JsonArrayWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Base class for listeners that modify the collections of each document in a batch via an XQuery function.
+ * <p>
+ * By default, a query is generated for each batch with an external variable for each URI. If withCacheableQuery(true)
+ * is used, then the same query text is used for every batch, with the URIs of the batch being passed as a single
+ * JSON array, and the collections being serialized once. This allows the server to reuse the compiled query instead of
+ * parsing a new query for every batch.
+ */
 public abstract class AbstractCollectionsListener implements QueryBatchListener {
 
 	protected Logger logger = LoggerFactory.getLogger(getClass());
 
 	private String[] collections;
+	private boolean useCacheableQuery = false;
+
+	// Built once and reused for each batch when useCacheableQuery is true
+	private String cacheableQuery;
+	private final String collectionsJson;
 
 	public AbstractCollectionsListener(String... collections) {
 		this.collections = collections;
+		this.collectionsJson = JsonArrayWriter.toJsonArray(collections);
 	}
 
 	protected abstract String getXqueryFunction();
 
 	@Override
 	public void processEvent(QueryBatch queryBatch) {
+		if (useCacheableQuery) {
+			processEventWithCacheableQuery(queryBatch);
+			return;
+		}
+
 		String[] uris = queryBatch.getItems();
 
 		StringBuilder sb = new StringBuilder();
@@ -73,4 +93,41 @@ public abstract class AbstractCollectionsListener implements QueryBatchListener
 		call.xquery(sb.toString());
 		call.eval();
 	}
+
+	protected void processEventWithCacheableQuery(QueryBatch queryBatch) {
+		if (cacheableQuery == null) {
+			cacheableQuery = buildCacheableQuery();
+		}
+
+		queryBatch.getClient().newServerEval()
+			.xquery(cacheableQuery)
+			.addVariable("uris", JsonArrayWriter.toJsonArray(queryBatch.getItems()))
+			.addVariable("collections", collectionsJson)
+			.eval();
+	}
+
+	/**
+	 * @return a query that depends only on the XQuery function of this class, and thus is the same for every batch
+	 */
+	protected String buildCacheableQuery() {
+		return "declare variable $uris as xs:string external;\n" +
+			"declare variable $collections as xs:string external;\n" +
+			"let $collections := json:array-values(xdmp:from-json-string($collections))\n" +
+			"for $uri in json:array-values(xdmp:from-json-string($uris))\n" +
+			"return " + getXqueryFunction() + "($uri, $collections)";
+	}
+
+	/**
+	 * @param useCacheableQuery if true, the same query text is used for every batch, with the URIs passed as a
+	 *                          single variable
+	 * @return
+	 */
+	public AbstractCollectionsListener withCacheableQuery(boolean useCacheableQuery) {
+		this.useCacheableQuery = useCacheableQuery;
+		return this;
+	}
+
+	public boolean isCacheableQuery() {
+		return useCacheableQuery;
+	}
 }
@@ -20,6 +20,7 @@ import com.marklogic.client.datamovement.ExportListener;
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.document.DocumentManager;
 import com.marklogic.client.document.ServerTransform;
+import com.marklogic.client.ext.datamovement.BatchCheckpoint;
 import com.marklogic.client.io.Format;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +37,11 @@ public abstract class AbstractExportBatchesListener extends ExportListener {
 	private String filenameExtension = "";
 	private String filenamePrefix = "batch-";
 
+	// Batch numbers restart with each run, so a run that resumes from a checkpoint includes this in each filename so
+	// that it does not overwrite the files written by a previous run
+	private String filenameRunId;
+	private BatchCheckpoint batchCheckpoint;
+
 	private ServerTransform transform;
 	private Format nonDocumentFormat;
 	private boolean consistentSnapshot;
@@ -67,6 +73,9 @@ public abstract class AbstractExportBatchesListener extends ExportListener {
 	 */
 	protected File getFileForBatch(QueryBatch queryBatch, File exportDir) {
 		String filename = queryBatch.getJobBatchNumber() + filenameExtension;
+		if (filenameRunId != null) {
+			filename = filenameRunId + "-" + filename;
+		}
 		if (filenamePrefix != null) {
 			filename = filenamePrefix + filename;
 		}
@@ -96,6 +105,24 @@ public abstract class AbstractExportBatchesListener extends ExportListener {
 		}
 	}
 
+	/**
+	 * Set by a job that records each batch in a checkpoint, before each run of the job. If the checkpoint resumes a
+	 * previous run, each filename then includes an ID unique to this run, as the batch numbers of this run start over
+	 * at 1 and would otherwise overwrite the files - and thus the completed URIs - of the previous run.
+	 *
+	 * @param batchCheckpoint the checkpoint of the current run, or null if the job does not have one
+	 * @return
+	 */
+	public AbstractExportBatchesListener withBatchCheckpoint(BatchCheckpoint batchCheckpoint) {
+		this.batchCheckpoint = batchCheckpoint;
+		this.filenameRunId = batchCheckpoint != null && batchCheckpoint.isResumed() ? "resumed-" + System.currentTimeMillis() : null;
+		return this;
+	}
+
+	public BatchCheckpoint getBatchCheckpoint() {
+		return batchCheckpoint;
+	}
+
 	public AbstractExportBatchesListener withFilenamePrefix(String filenamePrefix) {
 		this.filenamePrefix = filenamePrefix;
 		return this;
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the collection, permission, and metadata value changes to apply to each batch of URIs. Subclasses determine
+ * how the changes are applied. For each property, changes are applied by starting with the values to set - or the
+ * document's current values if none are set - then adding values, and then removing values.
+ *
+ * @param <T> the type of the subclass, which is returned by each method that configures a change so that calls can be
+ *            chained
+ */
+public abstract class AbstractPatchMetadataListener<T extends AbstractPatchMetadataListener<T>> implements QueryBatchListener {
+
+	protected Logger logger = LoggerFactory.getLogger(getClass());
+
+	protected String[] collectionsToAdd;
+	protected String[] collectionsToSet;
+	protected String[] collectionsToRemove;
+	protected String[] permissionsToAdd;
+	protected String[] permissionsToSet;
+	protected String[] permissionsToRemove;
+	protected String[] metadataValuesToAdd;
+	protected String[] metadataValuesToSet;
+	protected String[] metadataKeysToRemove;
+
+	/**
+	 * Invoked whenever a change is configured, in case a subclass has built anything based on the changes.
+	 */
+	protected void onChangesModified() {
+	}
+
+	@SuppressWarnings("unchecked")
+	protected T self() {
+		return (T) this;
+	}
+
+	protected boolean hasChanges() {
+		return countNonNull(collectionsToAdd, collectionsToSet, collectionsToRemove, permissionsToAdd, permissionsToSet,
+			permissionsToRemove, metadataValuesToAdd, metadataValuesToSet, metadataKeysToRemove) > 0;
+	}
+
+	protected static int countNonNull(Object... values) {
+		int count = 0;
+		for (Object value : values) {
+			if (value != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public T addCollections(String... collections) {
+		this.collectionsToAdd = collections;
+		onChangesModified();
+		return self();
+	}
+
+	public T setCollections(String... collections) {
+		this.collectionsToSet = collections;
+		onChangesModified();
+		return self();
+	}
+
+	public T removeCollections(String... collections) {
+		this.collectionsToRemove = collections;
+		onChangesModified();
+		return self();
+	}
+
+	/**
+	 * @param rolesAndCapabilities alternating roles and capabilities, e.g. "rest-reader", "read", "rest-writer", "update"
+	 * @return
+	 */
+	public T addPermissions(String... rolesAndCapabilities) {
+		this.permissionsToAdd = rolesAndCapabilities;
+		onChangesModified();
+		return self();
+	}
+
+	public T setPermissions(String... rolesAndCapabilities) {
+		this.permissionsToSet = rolesAndCapabilities;
+		onChangesModified();
+		return self();
+	}
+
+	public T removePermissions(String... rolesAndCapabilities) {
+		this.permissionsToRemove = rolesAndCapabilities;
+		onChangesModified();
+		return self();
+	}
+
+	/**
+	 * @param keysAndValues alternating metadata keys and values; existing values for other keys are retained
+	 * @return
+	 */
+	public T addMetadataValues(String... keysAndValues) {
+		this.metadataValuesToAdd = keysAndValues;
+		onChangesModified();
+		return self();
+	}
+
+	/**
+	 * @param keysAndValues alternating metadata keys and values; all existing metadata values are replaced
+	 * @return
+	 */
+	public T setMetadataValues(String... keysAndValues) {
+		this.metadataValuesToSet = keysAndValues;
+		onChangesModified();
+		return self();
+	}
+
+	public T removeMetadataKeys(String... keys) {
+		this.metadataKeysToRemove = keys;
+		onChangesModified();
+		return self();
+	}
+}
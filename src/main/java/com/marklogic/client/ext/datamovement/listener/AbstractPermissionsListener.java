@@ -18,23 +18,42 @@ package com.marklogic.client.ext.datamovement.listener;
 import com.marklogic.client.datamovement.QueryBatch;
 import com.marklogic.client.datamovement.QueryBatchListener;
 import com.marklogic.client.eval.ServerEvaluationCall;
+import com.marklogic.client.ext.datamovement.util.JsonArrayWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Base class for listeners that modify the permissions of each document in a batch via an XQuery function.
+ * <p>
+ * By default, a query is generated for each batch with an external variable for each URI, role, and capability. If
+ * withCacheableQuery(true) is used, then the same query text is used for every batch; the roles and capabilities are
+ * serialized once into a single JSON array, and the URIs of each batch are passed as another JSON array.
+ */
 public abstract class AbstractPermissionsListener implements QueryBatchListener {
 
 	protected Logger logger = LoggerFactory.getLogger(getClass());
 
 	private String[] rolesAndCapabilities;
+	private boolean useCacheableQuery = false;
+
+	// Built once and reused for each batch when useCacheableQuery is true
+	private String cacheableQuery;
+	private final String rolesAndCapabilitiesJson;
 
 	public AbstractPermissionsListener(String... rolesAndCapabilities) {
 		this.rolesAndCapabilities = rolesAndCapabilities;
+		this.rolesAndCapabilitiesJson = JsonArrayWriter.toJsonArray(rolesAndCapabilities);
 	}
 
 	protected abstract String getXqueryFunction();
 
 	@Override
 	public void processEvent(QueryBatch queryBatch) {
+		if (useCacheableQuery) {
+			processEventWithCacheableQuery(queryBatch);
+			return;
+		}
+
 		String[] uris = queryBatch.getItems();
 		StringBuilder sb = new StringBuilder();
 
@@ -74,5 +93,42 @@ public abstract class AbstractPermissionsListener implements QueryBatchListener
 		call.xquery(sb.toString());
 		call.eval();
 	}
-}
 
+	protected void processEventWithCacheableQuery(QueryBatch queryBatch) {
+		if (cacheableQuery == null) {
+			cacheableQuery = buildCacheableQuery();
+		}
+
+		queryBatch.getClient().newServerEval()
+			.xquery(cacheableQuery)
+			.addVariable("uris", JsonArrayWriter.toJsonArray(queryBatch.getItems()))
+			.addVariable("rolesAndCapabilities", rolesAndCapabilitiesJson)
+			.eval();
+	}
+
+	/**
+	 * @return a query that depends only on the XQuery function of this class, and thus is the same for every batch
+	 */
+	protected String buildCacheableQuery() {
+		return "declare variable $uris as xs:string external;\n" +
+			"declare variable $rolesAndCapabilities as xs:string external;\n" +
+			"let $values := json:array-values(xdmp:from-json-string($rolesAndCapabilities))\n" +
+			"let $permissions := for $i in 1 to fn:count($values) idiv 2 return xdmp:permission($values[2 * $i - 1], $values[2 * $i])\n" +
+			"for $uri in json:array-values(xdmp:from-json-string($uris))\n" +
+			"return " + getXqueryFunction() + "($uri, $permissions)";
+	}
+
+	/**
+	 * @param useCacheableQuery if true, the same query text is used for every batch, with the URIs passed as a
+	 *                          single variable
+	 * @return
+	 */
+	public AbstractPermissionsListener withCacheableQuery(boolean useCacheableQuery) {
+		this.useCacheableQuery = useCacheableQuery;
+		return this;
+	}
+
+	public boolean isCacheableQuery() {
+		return useCacheableQuery;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.ext.datamovement.AdaptiveBatchSizeController;
+import com.marklogic.client.ext.datamovement.util.SubBatches;
+
+import java.util.Arrays;
+
+/**
+ * Wraps a listener that processes the URIs in each batch itself - such as AbstractCollectionsListener or DMSDK's
+ * ExportListener - and passes it sub-batches whose size is determined by an AdaptiveBatchSizeController. The QueryBatcher
+ * is expected to use the controller's max batch size, so that each batch can be split into smaller batches as needed.
+ * <p>
+ * Each sub-batch has the same job batch number as the batch it came from, so this should not be used with a listener
+ * that uses the job batch number to name its output, such as ExportBatchesToZipsListener.
+ * <p>
+ * If the wrapped listener throws an exception, the failure is recorded and the remaining sub-batches are still
+ * processed; the first exception is then rethrown.
+ */
+public class AdaptiveBatchSizeListener implements QueryBatchListener {
+
+	private final QueryBatchListener listener;
+	private final AdaptiveBatchSizeController controller;
+
+	public AdaptiveBatchSizeListener(QueryBatchListener listener, AdaptiveBatchSizeController controller) {
+		this.listener = listener;
+		this.controller = controller;
+	}
+
+	@Override
+	public void initializeListener(QueryBatcher queryBatcher) {
+		listener.initializeListener(queryBatcher);
+	}
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		final String[] items = queryBatch.getItems();
+		RuntimeException firstFailure = null;
+		int start = 0;
+		while (start < items.length) {
+			int end = Math.min(items.length, start + controller.getBatchSize());
+			String[] subItems = start == 0 && end == items.length ? items : Arrays.copyOfRange(items, start, end);
+			long startTime = System.currentTimeMillis();
+			try {
+				listener.processEvent(subItems == items ? queryBatch : newSubBatch(queryBatch, subItems));
+				controller.recordSuccess(subItems.length, System.currentTimeMillis() - startTime);
+			} catch (RuntimeException ex) {
+				controller.recordFailure();
+				if (firstFailure == null) {
+					firstFailure = ex;
+				}
+			}
+			start = end;
+		}
+		if (firstFailure != null) {
+			throw firstFailure;
+		}
+	}
+
+	protected QueryBatch newSubBatch(QueryBatch queryBatch, String[] items) {
+		return SubBatches.newSubBatch(queryBatch, items);
+	}
+
+	public QueryBatchListener getListener() {
+		return listener;
+	}
+
+	public AdaptiveBatchSizeController getController() {
+		return controller;
+	}
+}
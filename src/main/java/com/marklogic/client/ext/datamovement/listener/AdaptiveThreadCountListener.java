@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.ext.datamovement.AdaptiveThreadCountController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Wraps every listener of a job so that a batch is only processed after acquiring a permit from an
+ * AdaptiveThreadCountController, and reports how long all of the listeners took - or why one failed - back to the
+ * controller. The permit is acquired once per batch rather than once per listener.
+ * <p>
+ * An exception thrown by one listener does not stop the remaining listeners from being called; the first exception is
+ * reported and rethrown while any others are logged.
+ */
+public class AdaptiveThreadCountListener implements QueryBatchListener {
+
+	private final static Logger logger = LoggerFactory.getLogger(AdaptiveThreadCountListener.class);
+
+	private final List<QueryBatchListener> listeners;
+	private final AdaptiveThreadCountController controller;
+
+	public AdaptiveThreadCountListener(List<QueryBatchListener> listeners, AdaptiveThreadCountController controller) {
+		this.listeners = listeners;
+		this.controller = controller;
+	}
+
+	@Override
+	public void initializeListener(QueryBatcher queryBatcher) {
+		listeners.forEach(listener -> listener.initializeListener(queryBatcher));
+	}
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		try {
+			controller.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting to process batch " + queryBatch.getJobBatchNumber(), e);
+		}
+		try {
+			long start = System.currentTimeMillis();
+			RuntimeException firstFailure = null;
+			for (QueryBatchListener listener : listeners) {
+				try {
+					listener.processEvent(queryBatch);
+				} catch (RuntimeException ex) {
+					if (firstFailure == null) {
+						firstFailure = ex;
+					} else {
+						logger.error("Exception thrown by an onUrisReady listener", ex);
+					}
+				}
+			}
+			if (firstFailure != null) {
+				controller.recordFailure(firstFailure);
+				throw firstFailure;
+			}
+			controller.recordSuccess(System.currentTimeMillis() - start);
+		} finally {
+			controller.release();
+		}
+	}
+
+	public List<QueryBatchListener> getListeners() {
+		return listeners;
+	}
+
+	public AdaptiveThreadCountController getController() {
+		return controller;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.document.DocumentManager;
+import com.marklogic.client.document.DocumentPage;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.document.DocumentWriteSet;
+import com.marklogic.client.document.GenericDocumentManager;
+import com.marklogic.client.io.DocumentMetadataHandle;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies collection, permission, and metadata value changes without using eval, and thus without requiring eval
+ * privileges. For each batch, the metadata of every document is read via a single bulk read request, the changes are
+ * applied to it on the client, and the metadata is then written back via a single bulk write request that does not
+ * include any content.
+ * <p>
+ * Each batch is read and written via the client of the host that the batch was retrieved from, so batches are spread
+ * across hosts in the same fashion as with the eval-based listeners. Because the metadata is read and then written in
+ * separate requests, a change made to a document's metadata by another process in between those requests is lost.
+ */
+public class BulkPatchMetadataListener extends AbstractPatchMetadataListener<BulkPatchMetadataListener> {
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		if (!hasChanges()) {
+			throw new IllegalStateException("At least one collection, permission, or metadata change must be configured");
+		}
+
+		GenericDocumentManager documentManager = queryBatch.getClient().newDocumentManager();
+		// All categories are read so that none are reset when the metadata is written back
+		documentManager.setMetadataCategories(DocumentManager.Metadata.ALL);
+
+		DocumentWriteSet writeSet = documentManager.newWriteSet();
+		DocumentPage page = documentManager.readMetadata(queryBatch.getItems());
+		try {
+			while (page.hasNext()) {
+				DocumentRecord record = page.next();
+				DocumentMetadataHandle metadata = record.getMetadata(new DocumentMetadataHandle());
+				applyChanges(metadata);
+				writeSet.add(record.getUri(), metadata);
+			}
+		} finally {
+			page.close();
+		}
+
+		if (!writeSet.isEmpty()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Writing metadata for " + writeSet.size() + " documents");
+			}
+			documentManager.write(writeSet);
+		}
+	}
+
+	/**
+	 * Applies the configured changes to the given metadata. Other categories of metadata are not modified.
+	 *
+	 * @param metadata
+	 */
+	public void applyChanges(DocumentMetadataHandle metadata) {
+		Set<String> collections = metadata.getCollections();
+		if (collectionsToSet != null) {
+			collections.clear();
+			collections.addAll(Arrays.asList(collectionsToSet));
+		}
+		if (collectionsToAdd != null) {
+			collections.addAll(Arrays.asList(collectionsToAdd));
+		}
+		if (collectionsToRemove != null) {
+			collections.removeAll(Arrays.asList(collectionsToRemove));
+		}
+
+		Map<String, Set<DocumentMetadataHandle.Capability>> permissions = metadata.getPermissions();
+		if (permissionsToSet != null) {
+			permissions.clear();
+			addPermissions(permissions, permissionsToSet);
+		}
+		if (permissionsToAdd != null) {
+			addPermissions(permissions, permissionsToAdd);
+		}
+		if (permissionsToRemove != null) {
+			for (int i = 0; i < permissionsToRemove.length; i += 2) {
+				Set<DocumentMetadataHandle.Capability> capabilities = permissions.get(permissionsToRemove[i]);
+				if (capabilities != null) {
+					capabilities.remove(toCapability(permissionsToRemove[i + 1]));
+					if (capabilities.isEmpty()) {
+						permissions.remove(permissionsToRemove[i]);
+					}
+				}
+			}
+		}
+
+		Map<String, String> metadataValues = metadata.getMetadataValues();
+		if (metadataValuesToSet != null) {
+			metadataValues.clear();
+			putMetadataValues(metadataValues, metadataValuesToSet);
+		}
+		if (metadataValuesToAdd != null) {
+			putMetadataValues(metadataValues, metadataValuesToAdd);
+		}
+		if (metadataKeysToRemove != null) {
+			for (String key : metadataKeysToRemove) {
+				metadataValues.remove(key);
+			}
+		}
+	}
+
+	private void addPermissions(Map<String, Set<DocumentMetadataHandle.Capability>> permissions, String[] rolesAndCapabilities) {
+		for (int i = 0; i < rolesAndCapabilities.length; i += 2) {
+			permissions.computeIfAbsent(rolesAndCapabilities[i], role -> new HashSet<>())
+				.add(toCapability(rolesAndCapabilities[i + 1]));
+		}
+	}
+
+	private void putMetadataValues(Map<String, String> metadataValues, String[] keysAndValues) {
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			metadataValues.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+	}
+
+	/**
+	 * @param capability e.g. "read" or "node-update", as used by xdmp:permission
+	 * @return
+	 */
+	protected DocumentMetadataHandle.Capability toCapability(String capability) {
+		return DocumentMetadataHandle.Capability.valueOf(capability.trim().toUpperCase().replace('-', '_'));
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.ext.datamovement.BatchCheckpoint;
+import com.marklogic.client.ext.datamovement.util.SubBatches;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Wraps every listener of a job so that URIs completed by a previous run, as recorded by a BatchCheckpoint, are not
+ * processed again, and so that a batch is recorded as completed only once every listener has processed it.
+ * <p>
+ * As with a QueryBatcher, an exception thrown by one listener does not stop the remaining listeners from being called;
+ * the batch is then not recorded as completed, and the first exception is rethrown while any others are logged. A
+ * listener that handles its own failures must mark the batch as failed via BatchCheckpoint.markBatchFailed. A listener
+ * that writes the output of a batch after returning must defer the batch via BatchCheckpoint.deferBatch, so that the
+ * batch is recorded only once its output has been written.
+ */
+public class CheckpointListener implements QueryBatchListener {
+
+	private final static Logger logger = LoggerFactory.getLogger(CheckpointListener.class);
+
+	private final BatchCheckpoint checkpoint;
+	private final List<QueryBatchListener> listeners;
+
+	public CheckpointListener(BatchCheckpoint checkpoint, List<QueryBatchListener> listeners) {
+		this.checkpoint = checkpoint;
+		this.listeners = listeners;
+	}
+
+	@Override
+	public void initializeListener(QueryBatcher queryBatcher) {
+		for (QueryBatchListener listener : listeners) {
+			listener.initializeListener(queryBatcher);
+		}
+	}
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		final String[] items = queryBatch.getItems();
+		final String[] remainingItems = checkpoint.filterCompletedUris(items);
+		if (remainingItems.length == 0) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Skipping batch " + queryBatch.getJobBatchNumber() + " as all of its URIs were completed by a previous run");
+			}
+			return;
+		}
+
+		QueryBatch batchToProcess = remainingItems == items ? queryBatch : SubBatches.newSubBatch(queryBatch, remainingItems);
+		RuntimeException firstFailure = null;
+		for (QueryBatchListener listener : listeners) {
+			try {
+				listener.processEvent(batchToProcess);
+			} catch (RuntimeException ex) {
+				if (firstFailure == null) {
+					firstFailure = ex;
+				} else {
+					logger.error("Exception thrown by an onUrisReady listener", ex);
+				}
+			}
+		}
+
+		boolean markedFailed = checkpoint.removeBatchFailure(queryBatch);
+		checkpoint.finishBatch(queryBatch, batchToProcess, firstFailure == null && !markedFailed);
+		if (firstFailure != null) {
+			throw firstFailure;
+		}
+	}
+
+	public BatchCheckpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	public List<QueryBatchListener> getListeners() {
+		return listeners;
+	}
+}
@@ -17,11 +17,18 @@ package com.marklogic.client.ext.datamovement.listener;
 
 import com.marklogic.client.datamovement.ExportToWriterListener;
 import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.ext.datamovement.BatchCheckpoint;
+import com.marklogic.client.ext.datamovement.util.AsyncWriteStage;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 
 /**
  * Supports exporting each QueryBatch to a separate File in a given directory.
@@ -30,6 +37,12 @@ import java.io.IOException;
  * <p>
  * Reuses ExportToWriterListener. Many of the properties that can be set on this class are copied over to each
  * ExportToWriterListener, which handles writing each QueryBatch to a File via a FileWriter.
+ * <p>
+ * If an AsyncWriteStage is set, each batch is instead written to memory and then written to its File by one of the
+ * stage's threads, so that the next batch can be read while the previous one is written. The client that sets the
+ * stage is responsible for closing it after the job completes. A failure to write a file is then reported by the
+ * stage instead of to the failure listeners of this class. If a BatchCheckpoint is set, a batch is only recorded in it
+ * once its file has been written.
  */
 public class ExportBatchesToDirectoryListener extends AbstractExportBatchesListener {
 
@@ -41,6 +54,7 @@ public class ExportBatchesToDirectoryListener extends AbstractExportBatchesListe
 	private String recordSuffix;
 	private String fileHeader;
 	private String fileFooter;
+	private AsyncWriteStage asyncWriteStage;
 
 	public ExportBatchesToDirectoryListener(File exportDir) {
 		withFilenameExtension(".xml");
@@ -55,6 +69,10 @@ public class ExportBatchesToDirectoryListener extends AbstractExportBatchesListe
 	 */
 	protected void exportBatch(QueryBatch queryBatch) {
 		File file = getFileForBatch(queryBatch, exportDir);
+		if (asyncWriteStage != null) {
+			exportBatchAsync(queryBatch, file);
+			return;
+		}
 
 		FileWriter fileWriter = null;
 		try {
@@ -83,6 +101,46 @@ public class ExportBatchesToDirectoryListener extends AbstractExportBatchesListe
 		}
 	}
 
+	/**
+	 * Writes the batch to memory, using the same charset as a FileWriter, and then submits the writing of the bytes to
+	 * the given file to the AsyncWriteStage.
+	 *
+	 * @param queryBatch
+	 * @param file
+	 */
+	protected void exportBatchAsync(QueryBatch queryBatch, File file) {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(content, Charset.defaultCharset())) {
+			if (fileHeader != null) {
+				writer.write(fileHeader);
+			}
+			ExportToWriterListener listener = new ExportToWriterListener(writer);
+			prepareExportToWriterListener(listener);
+			listener.processEvent(queryBatch);
+			if (fileFooter != null) {
+				writer.write(fileFooter);
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		final byte[] bytes = content.toByteArray();
+		final BatchCheckpoint checkpoint = getBatchCheckpoint();
+		if (checkpoint == null) {
+			asyncWriteStage.submit(bytes.length, () -> Files.write(file.toPath(), bytes));
+			return;
+		}
+
+		// The batch is only recorded in the checkpoint once its file has been written
+		checkpoint.deferBatch(queryBatch);
+		try {
+			asyncWriteStage.submit(bytes.length, () -> Files.write(file.toPath(), bytes),
+				failure -> checkpoint.completeDeferredBatch(queryBatch, failure == null));
+		} catch (RuntimeException ex) {
+			checkpoint.completeDeferredBatch(queryBatch, false);
+			throw ex;
+		}
+	}
 
 	/**
 	 * Copies all of the applicable properties to the listener that have been set on this class.
@@ -123,6 +181,16 @@ public class ExportBatchesToDirectoryListener extends AbstractExportBatchesListe
 		return this;
 	}
 
+	/**
+	 * @param asyncWriteStage if set, files are written by the threads of this stage instead of by the thread that
+	 *                        processes each batch
+	 * @return
+	 */
+	public ExportBatchesToDirectoryListener withAsyncWriteStage(AsyncWriteStage asyncWriteStage) {
+		this.asyncWriteStage = asyncWriteStage;
+		return this;
+	}
+
 	public ExportBatchesToDirectoryListener withXmlOutputListener(boolean includeXmlOutputListener) {
 		this.includeXmlOutputListener = includeXmlOutputListener;
 		return this;
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.ExportToWriterListener;
+import com.marklogic.client.datamovement.QueryBatch;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Exports every QueryBatch to a single Writer that is shared across threads. Unlike ExportToWriterListener, which holds
+ * the lock on the Writer while it generates the output for every record in a batch, this listener writes each batch to
+ * a buffer owned by the current thread and then appends the whole batch to the Writer in a single write. The lock on
+ * the Writer is thus only held while the batch is copied to it.
+ * <p>
+ * The order of the records within a batch is preserved, but batches are written in the order they finish.
+ */
+public class ExportBatchesToWriterListener extends AbstractExportBatchesListener {
+
+	// Buffers that have grown beyond this after a large batch are discarded instead of being reused
+	private final static int MAX_RETAINED_BUFFER_SIZE = 16 * 1024 * 1024;
+
+	private final Writer writer;
+	private final ThreadLocal<StringWriter> threadBuffer = ThreadLocal.withInitial(StringWriter::new);
+
+	// Copied over to the ExportToWriterListener instances created by this class
+	private boolean includeXmlOutputListener = true;
+	private String recordPrefix;
+	private String recordSuffix;
+
+	public ExportBatchesToWriterListener(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	protected void exportBatch(QueryBatch queryBatch) {
+		StringWriter buffer = threadBuffer.get();
+		StringBuffer content = buffer.getBuffer();
+		content.setLength(0);
+
+		ExportToWriterListener listener = new ExportToWriterListener(buffer);
+		prepareExportToWriterListener(listener);
+		listener.processEvent(queryBatch);
+
+		try {
+			if (content.length() > 0) {
+				synchronized (writer) {
+					writer.append(content);
+				}
+			}
+		} catch (IOException ex) {
+			throw new RuntimeException("Unable to write batch " + queryBatch.getJobBatchNumber() + "; cause: " + ex.getMessage(), ex);
+		} finally {
+			if (content.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+				threadBuffer.remove();
+			}
+		}
+	}
+
+	/**
+	 * Copies all of the applicable properties to the listener that have been set on this class.
+	 *
+	 * @param listener
+	 */
+	protected void prepareExportToWriterListener(ExportToWriterListener listener) {
+		super.prepareExportListener(listener);
+
+		if (includeXmlOutputListener) {
+			listener.onGenerateOutput(new XmlOutputListener());
+		}
+		if (recordPrefix != null) {
+			listener.withRecordPrefix(recordPrefix);
+		}
+		if (recordSuffix != null) {
+			listener.withRecordSuffix(recordSuffix);
+		}
+	}
+
+	public ExportBatchesToWriterListener withRecordPrefix(String recordPrefix) {
+		this.recordPrefix = recordPrefix;
+		return this;
+	}
+
+	public ExportBatchesToWriterListener withRecordSuffix(String recordSuffix) {
+		this.recordSuffix = recordSuffix;
+		return this;
+	}
+
+	public ExportBatchesToWriterListener withXmlOutputListener(boolean includeXmlOutputListener) {
+		this.includeXmlOutputListener = includeXmlOutputListener;
+		return this;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.ExportListener;
+import com.marklogic.client.datamovement.ExportToWriterListener;
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.ext.datamovement.JobMetrics;
+import com.marklogic.client.ext.datamovement.util.ListenerFailures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Wraps every listener of a job so that each batch is recorded in a JobMetrics once all of the listeners have
+ * processed it, with the batch latency being the time taken by all of the listeners.
+ * <p>
+ * An exception thrown by one listener does not stop the remaining listeners from being called; the failure is
+ * recorded, and the first exception is rethrown while any others are logged.
+ * <p>
+ * While the listeners process a batch, the JobMetrics of this class is available to them via getCurrentJobMetrics, so
+ * that a listener shared by several jobs running at the same time records into the metrics of the job whose batch it
+ * is processing.
+ */
+public class JobMetricsListener implements QueryBatchListener {
+
+	private final static Logger logger = LoggerFactory.getLogger(JobMetricsListener.class);
+
+	private final static ThreadLocal<JobMetrics> CURRENT_JOB_METRICS = new ThreadLocal<>();
+
+	private final JobMetrics jobMetrics;
+	private final List<QueryBatchListener> listeners;
+
+	public JobMetricsListener(JobMetrics jobMetrics, List<QueryBatchListener> listeners) {
+		this.jobMetrics = jobMetrics;
+		this.listeners = listeners;
+	}
+
+	/**
+	 * @return the JobMetrics of the JobMetricsListener that is processing a batch on the calling thread, or null if
+	 * there is none
+	 */
+	public static JobMetrics getCurrentJobMetrics() {
+		return CURRENT_JOB_METRICS.get();
+	}
+
+	/**
+	 * Adds failure and document listeners to the given listener, where supported, so that failures it handles itself
+	 * and the size of each document it exports are recorded in the JobMetrics of the JobMetricsListener that is
+	 * processing the batch, as DMSDK calls these listeners on the thread that processes the batch. As DMSDK provides
+	 * no way to remove these listeners, this should be called only once for a listener, even if it's reused across
+	 * runs or by runs at the same time.
+	 *
+	 * @param listener
+	 */
+	public static void instrument(QueryBatchListener listener) {
+		ListenerFailures.onSelfHandledFailure(listener, batch -> {
+			JobMetrics jobMetrics = getCurrentJobMetrics();
+			if (jobMetrics != null) {
+				jobMetrics.recordBatchFailure();
+			}
+		});
+		// Subclasses that write documents themselves don't pass them to document listeners
+		if (listener instanceof ExportListener
+			&& !(listener instanceof ExportToWriterListener)
+			&& !(listener instanceof AbstractExportBatchesListener)) {
+			((ExportListener) listener).onDocumentReady(record -> {
+				JobMetrics jobMetrics = getCurrentJobMetrics();
+				if (jobMetrics != null) {
+					jobMetrics.recordBytesExported(record.getLength());
+				}
+			});
+		}
+	}
+
+	@Override
+	public void initializeListener(QueryBatcher queryBatcher) {
+		for (QueryBatchListener listener : listeners) {
+			listener.initializeListener(queryBatcher);
+		}
+	}
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		jobMetrics.batchStarted();
+		final long start = System.nanoTime();
+		RuntimeException firstFailure = null;
+		final JobMetrics previousJobMetrics = CURRENT_JOB_METRICS.get();
+		CURRENT_JOB_METRICS.set(jobMetrics);
+		try {
+			for (QueryBatchListener listener : listeners) {
+				try {
+					listener.processEvent(queryBatch);
+				} catch (RuntimeException ex) {
+					jobMetrics.recordBatchFailure();
+					if (firstFailure == null) {
+						firstFailure = ex;
+					} else {
+						logger.error("Exception thrown by an onUrisReady listener", ex);
+					}
+				}
+			}
+		} finally {
+			if (previousJobMetrics != null) {
+				CURRENT_JOB_METRICS.set(previousJobMetrics);
+			} else {
+				CURRENT_JOB_METRICS.remove();
+			}
+		}
+		jobMetrics.recordBatch(queryBatch, System.nanoTime() - start);
+		if (firstFailure != null) {
+			throw firstFailure;
+		}
+	}
+
+	public JobMetrics getJobMetrics() {
+		return jobMetrics;
+	}
+
+	public List<QueryBatchListener> getListeners() {
+		return listeners;
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.eval.ServerEvaluationCall;
+import com.marklogic.client.ext.datamovement.util.JsonArrayWriter;
+
+/**
+ * Applies any combination of collection, permission, and metadata value changes to each batch of URIs via a single
+ * eval call, and thus a single transaction, per batch. Using separate listeners for each kind of change instead
+ * requires a separate eval call per listener per batch.
+ * <p>
+ * When only one kind of change - e.g. adding collections - is made to a property of a document, the same XQuery
+ * function as the corresponding listener - e.g. {@code AddCollectionsListener} - is used. When set, add, and/or remove
+ * changes are combined for the same property, the resulting value is computed first and then set once, as a
+ * document property can only be updated once per statement.
+ * <p>
+ * The query depends only on which kinds of changes are configured, and thus it is built once and reused for every
+ * batch, with the URIs and values passed as external variables.
+ */
+public class PatchMetadataListener extends AbstractPatchMetadataListener<PatchMetadataListener> {
+
+	// Built on the first batch and then reused, as it only depends on which changes are configured
+	private String query;
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		if (query == null) {
+			query = buildQuery();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Patching metadata with query: " + query);
+			}
+		}
+
+		ServerEvaluationCall call = queryBatch.getClient().newServerEval()
+			.xquery(query)
+			.addVariable("uris", JsonArrayWriter.toJsonArray(queryBatch.getItems()));
+		addVariable(call, "addCollections", collectionsToAdd);
+		addVariable(call, "setCollections", collectionsToSet);
+		addVariable(call, "removeCollections", collectionsToRemove);
+		addVariable(call, "addPermissions", permissionsToAdd);
+		addVariable(call, "setPermissions", permissionsToSet);
+		addVariable(call, "removePermissions", permissionsToRemove);
+		addVariable(call, "addMetadataValues", metadataValuesToAdd);
+		addVariable(call, "setMetadataValues", metadataValuesToSet);
+		addVariable(call, "removeMetadataKeys", metadataKeysToRemove);
+		call.eval();
+	}
+
+	private void addVariable(ServerEvaluationCall call, String name, String[] values) {
+		if (values != null) {
+			call.addVariable(name, JsonArrayWriter.toJsonArray(values));
+		}
+	}
+
+	/**
+	 * @return the XQuery that is evaluated for each batch, based on which changes have been configured
+	 */
+	public String buildQuery() {
+		if (!hasChanges()) {
+			throw new IllegalStateException("At least one collection, permission, or metadata change must be configured");
+		}
+		boolean patchCollections = countNonNull(collectionsToAdd, collectionsToSet, collectionsToRemove) > 0;
+		boolean patchPermissions = countNonNull(permissionsToAdd, permissionsToSet, permissionsToRemove) > 0;
+		boolean patchMetadata = countNonNull(metadataValuesToAdd, metadataValuesToSet, metadataKeysToRemove) > 0;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("declare namespace sec = \"http://marklogic.com/xdmp/security\";\n");
+		sb.append("declare variable $uris as xs:string external;\n");
+		String[] names = new String[]{"addCollections", "setCollections", "removeCollections", "addPermissions",
+			"setPermissions", "removePermissions", "addMetadataValues", "setMetadataValues", "removeMetadataKeys"};
+		String[][] values = new String[][]{collectionsToAdd, collectionsToSet, collectionsToRemove, permissionsToAdd,
+			permissionsToSet, permissionsToRemove, metadataValuesToAdd, metadataValuesToSet, metadataKeysToRemove};
+		for (int i = 0; i < names.length; i++) {
+			if (values[i] != null) {
+				sb.append("declare variable $").append(names[i]).append(" as xs:string external;\n");
+			}
+		}
+
+		sb.append("declare function local:strings($json as xs:string) as xs:string* {\n" +
+			"  json:array-values(xdmp:from-json-string($json))\n" +
+			"};\n");
+		if (patchPermissions) {
+			sb.append("declare function local:permissions($json as xs:string) as element(sec:permission)* {\n" +
+				"  let $values := local:strings($json)\n" +
+				"  for $i in 1 to fn:count($values) idiv 2\n" +
+				"  return xdmp:permission($values[2 * $i - 1], $values[2 * $i])\n" +
+				"};\n" +
+				"declare function local:permission-key($permission as element(sec:permission)) as xs:string {\n" +
+				"  fn:concat($permission/sec:role-id, \" \", $permission/sec:capability)\n" +
+				"};\n" +
+				"declare function local:distinct-permissions($permissions as element(sec:permission)*) as element(sec:permission)* {\n" +
+				"  let $map := map:map()\n" +
+				"  let $_ := for $permission in $permissions return map:put($map, local:permission-key($permission), $permission)\n" +
+				"  for $key in map:keys($map) return map:get($map, $key)\n" +
+				"};\n");
+		}
+		if (patchMetadata) {
+			sb.append("declare function local:metadata($json as xs:string) as map:map {\n" +
+				"  let $values := local:strings($json)\n" +
+				"  let $map := map:map()\n" +
+				"  let $_ := for $i in 1 to fn:count($values) idiv 2 return map:put($map, $values[2 * $i - 1], $values[2 * $i])\n" +
+				"  return $map\n" +
+				"};\n");
+		}
+
+		if (collectionsToAdd != null) {
+			sb.append("let $collectionsToAdd := local:strings($addCollections)\n");
+		}
+		if (collectionsToSet != null) {
+			sb.append("let $collectionsToSet := local:strings($setCollections)\n");
+		}
+		if (collectionsToRemove != null) {
+			sb.append("let $collectionsToRemove := local:strings($removeCollections)\n");
+		}
+		if (permissionsToAdd != null) {
+			sb.append("let $permissionsToAdd := local:permissions($addPermissions)\n");
+		}
+		if (permissionsToSet != null) {
+			sb.append("let $permissionsToSet := local:permissions($setPermissions)\n");
+		}
+		if (permissionsToRemove != null) {
+			sb.append("let $permissionKeysToRemove := for $p in local:permissions($removePermissions) return local:permission-key($p)\n");
+		}
+		if (metadataValuesToAdd != null) {
+			sb.append("let $metadataToAdd := local:metadata($addMetadataValues)\n");
+		}
+		if (metadataValuesToSet != null) {
+			sb.append("let $metadataToSet := local:metadata($setMetadataValues)\n");
+		}
+		if (metadataKeysToRemove != null) {
+			sb.append("let $metadataKeysToRemove := local:strings($removeMetadataKeys)\n");
+		}
+
+		sb.append("for $uri in local:strings($uris)\nreturn (");
+		boolean first = true;
+		if (patchCollections) {
+			sb.append("\n  ").append(buildCollectionsExpression());
+			first = false;
+		}
+		if (patchPermissions) {
+			sb.append(first ? "\n  " : ",\n  ").append(buildPermissionsExpression());
+			first = false;
+		}
+		if (patchMetadata) {
+			sb.append(first ? "\n  " : ",\n  ").append(buildMetadataExpression());
+		}
+		return sb.append("\n)").toString();
+	}
+
+	private String buildCollectionsExpression() {
+		if (countNonNull(collectionsToAdd, collectionsToSet, collectionsToRemove) == 1) {
+			if (collectionsToAdd != null) {
+				return "xdmp:document-add-collections($uri, $collectionsToAdd)";
+			}
+			if (collectionsToSet != null) {
+				return "xdmp:document-set-collections($uri, $collectionsToSet)";
+			}
+			return "xdmp:document-remove-collections($uri, $collectionsToRemove)";
+		}
+		String collections = "(" + (collectionsToSet != null ? "$collectionsToSet" : "xdmp:document-get-collections($uri)") +
+			(collectionsToAdd != null ? ", $collectionsToAdd)" : ")") +
+			(collectionsToRemove != null ? "[fn:not(. = $collectionsToRemove)]" : "");
+		return "xdmp:document-set-collections($uri, fn:distinct-values(" + collections + "))";
+	}
+
+	private String buildPermissionsExpression() {
+		if (countNonNull(permissionsToAdd, permissionsToSet, permissionsToRemove) == 1) {
+			if (permissionsToAdd != null) {
+				return "xdmp:document-add-permissions($uri, $permissionsToAdd)";
+			}
+			if (permissionsToSet != null) {
+				return "xdmp:document-set-permissions($uri, $permissionsToSet)";
+			}
+			return "xdmp:document-remove-permissions($uri, local:permissions($removePermissions))";
+		}
+		String permissions = "(" + (permissionsToSet != null ? "$permissionsToSet" : "xdmp:document-get-permissions($uri)") +
+			(permissionsToAdd != null ? ", $permissionsToAdd)" : ")") +
+			(permissionsToRemove != null ? "[fn:not(local:permission-key(.) = $permissionKeysToRemove)]" : "");
+		return "xdmp:document-set-permissions($uri, local:distinct-permissions(" + permissions + "))";
+	}
+
+	private String buildMetadataExpression() {
+		if (countNonNull(metadataValuesToAdd, metadataValuesToSet, metadataKeysToRemove) == 1) {
+			if (metadataValuesToAdd != null) {
+				return "xdmp:document-put-metadata($uri, $metadataToAdd)";
+			}
+			if (metadataValuesToSet != null) {
+				return "xdmp:document-set-metadata($uri, $metadataToSet)";
+			}
+			return "xdmp:document-remove-metadata($uri, $metadataKeysToRemove)";
+		}
+		return "(\n" +
+			"    let $metadata := map:map()\n" +
+			"    let $_ := for $source in (" + (metadataValuesToSet != null ? "$metadataToSet" : "xdmp:document-get-metadata($uri)") +
+			(metadataValuesToAdd != null ? ", $metadataToAdd" : "") + ")\n" +
+			"      for $key in map:keys($source) return map:put($metadata, $key, map:get($source, $key))\n" +
+			(metadataKeysToRemove != null ? "    let $_ := for $key in $metadataKeysToRemove return map:delete($metadata, $key)\n" : "") +
+			"    return xdmp:document-set-metadata($uri, $metadata)\n" +
+			"  )";
+	}
+
+	@Override
+	protected void onChangesModified() {
+		this.query = null;
+	}
+}
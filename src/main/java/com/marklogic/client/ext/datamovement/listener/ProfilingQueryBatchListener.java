@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.ext.datamovement.ListenerProfile;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each batch processed by the wrapped listener in a
+ * ListenerProfile.
+ */
+public class ProfilingQueryBatchListener implements QueryBatchListener {
+
+	private final String name;
+	private final QueryBatchListener listener;
+	private final ListenerProfile listenerProfile;
+
+	public ProfilingQueryBatchListener(QueryBatchListener listener, ListenerProfile listenerProfile) {
+		this(ListenerProfile.nameOf(listener), listener, listenerProfile);
+	}
+
+	/**
+	 * @param name            the name under which the measurements are recorded
+	 * @param listener
+	 * @param listenerProfile
+	 */
+	public ProfilingQueryBatchListener(String name, QueryBatchListener listener, ListenerProfile listenerProfile) {
+		this.name = name;
+		this.listener = listener;
+		this.listenerProfile = listenerProfile;
+	}
+
+	@Override
+	public void initializeListener(QueryBatcher queryBatcher) {
+		listener.initializeListener(queryBatcher);
+	}
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		listenerProfile.profile(name, () -> listener.processEvent(queryBatch));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public QueryBatchListener getListener() {
+		return listener;
+	}
+
+	public ListenerProfile getListenerProfile() {
+		return listenerProfile;
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.RateLimiter;
+
+/**
+ * Blocks the thread processing a batch until the batch can be processed without exceeding the rate of a RateLimiter,
+ * measured in either URIs or batches. DMSDK calls the listeners of a batch in order on the same thread, so this is
+ * expected to be the first listener of a QueryBatcher, which then limits the rate of every listener after it.
+ */
+public class RateLimitingListener implements QueryBatchListener {
+
+	private final RateLimiter rateLimiter;
+	private final boolean limitUris;
+
+	/**
+	 * @param rateLimiter
+	 * @param limitUris   if true, each batch acquires a permit per URI; otherwise, each batch acquires a single permit
+	 */
+	public RateLimitingListener(RateLimiter rateLimiter, boolean limitUris) {
+		this.rateLimiter = rateLimiter;
+		this.limitUris = limitUris;
+	}
+
+	@Override
+	public void processEvent(QueryBatch queryBatch) {
+		int permits = 1;
+		if (limitUris) {
+			permits = queryBatch.getItems() != null ? queryBatch.getItems().length : 0;
+		}
+		if (permits > 0) {
+			try {
+				rateLimiter.acquire(permits);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting to process batch " + queryBatch.getJobBatchNumber(), e);
+			}
+		}
+	}
+
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	public boolean isLimitUris() {
+		return limitUris;
+	}
+}
@@ -17,7 +17,6 @@ package com.marklogic.client.ext.datamovement.listener;
 
 import com.marklogic.client.datamovement.ExportToWriterListener;
 import com.marklogic.client.document.DocumentRecord;
-import com.marklogic.client.io.DOMHandle;
 import com.marklogic.client.io.Format;
 import com.marklogic.client.io.StringHandle;
 import org.slf4j.Logger;
@@ -26,6 +25,7 @@ import org.w3c.dom.Document;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -37,6 +37,9 @@ import java.io.StringWriter;
  * If you're writing multiple XML documents to a single Writer, you most likely do not want the XML declaration
  * included. If so, pass an instance of this class to ExportToWriterListener.onGenerateOutput, as it defaults to
  * removing the XML declaration.
+ * <p>
+ * The XML declaration is removed by skipping over it in the content returned by MarkLogic, rather than by parsing the
+ * document and serializing it again, so the rest of the document is returned exactly as MarkLogic serialized it.
  */
 public class XmlOutputListener implements ExportToWriterListener.OutputListener {
 
@@ -45,24 +48,68 @@ public class XmlOutputListener implements ExportToWriterListener.OutputListener
 	private boolean omitXmlDeclaration = true;
 	private TransformerFactory transformerFactory = TransformerFactory.newInstance();
 
+	// Transformers are not thread-safe, but one instance of this class is typically used by every thread in a job
+	private final ThreadLocal<Transformer> threadTransformer = ThreadLocal.withInitial(() -> {
+		try {
+			return transformerFactory.newTransformer();
+		} catch (TransformerConfigurationException e) {
+			throw new RuntimeException("Unable to create XML transformer: " + e.getMessage(), e);
+		}
+	});
+
 	@Override
 	public String generateOutput(DocumentRecord documentRecord) {
+		String content = documentRecord.getContent(new StringHandle()).get();
 		if (Format.XML.equals(documentRecord.getFormat())) {
-			return convertDocumentToString(documentRecord.getContent(new DOMHandle()).get());
+			return omitXmlDeclaration ? removeXmlDeclaration(content) : content;
 		} else if (logger.isDebugEnabled()) {
 			logger.debug(String.format("Document '%s' has a format of '%s', so will not attempt to remove the XML declaration from it",
 				documentRecord.getUri(), documentRecord.getFormat().name()));
 		}
+		return content;
+	}
+
+	/**
+	 * Removes the XML declaration, along with any byte order mark before it and any whitespace after it, from the given
+	 * XML. A processing instruction such as "xml-stylesheet" is not mistaken for an XML declaration.
+	 *
+	 * @param xml
+	 * @return the XML without its declaration, or the given XML if it does not start with one
+	 */
+	public static String removeXmlDeclaration(String xml) {
+		if (xml == null) {
+			return null;
+		}
+		int start = xml.startsWith("\uFEFF") ? 1 : 0;
+		if (!xml.startsWith("<?xml", start) || xml.length() <= start + 5 || !isXmlDeclarationDelimiter(xml.charAt(start + 5))) {
+			return xml;
+		}
+		int end = xml.indexOf("?>", start + 5);
+		if (end < 0) {
+			return xml;
+		}
+		end += 2;
+		while (end < xml.length() && Character.isWhitespace(xml.charAt(end))) {
+			end++;
+		}
+		return xml.substring(end);
+	}
 
-		return documentRecord.getContent(new StringHandle()).get();
+	private static boolean isXmlDeclarationDelimiter(char c) {
+		return c == '?' || c == ' ' || c == '\t' || c == '\r' || c == '\n';
 	}
 
+	/**
+	 * Serializes the given DOM document, omitting the XML declaration if this class is configured to do so. Each thread
+	 * reuses its own Transformer.
+	 *
+	 * @param document
+	 * @return
+	 */
 	protected String convertDocumentToString(Document document) {
 		try {
-			Transformer transformer = transformerFactory.newTransformer();
-			if (omitXmlDeclaration) {
-				transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-			}
+			Transformer transformer = threadTransformer.get();
+			transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, omitXmlDeclaration ? "yes" : "no");
 			StringWriter writer = new StringWriter();
 			transformer.transform(new DOMSource(document), new StreamResult(writer));
 			return writer.toString();
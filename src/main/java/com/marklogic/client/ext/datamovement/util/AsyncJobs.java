@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import com.marklogic.client.datamovement.QueryBatcherListener;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Support for running a QueryBatcher job without blocking the calling thread. Instead of a thread waiting on each job
+ * via awaitCompletion, the job notifies a job completion listener, which then finishes the job - e.g. stopping it and
+ * writing a file footer - on a completion thread.
+ */
+public abstract class AsyncJobs {
+
+	private final static AtomicInteger threadCounter = new AtomicInteger();
+
+	/**
+	 * Shared by every job that is not given its own executor. Threads are only created when jobs finish, and are
+	 * daemon threads so that they do not prevent the JVM from exiting.
+	 */
+	private final static ExecutorService defaultCompletionExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "query-batcher-job-completion-" + threadCounter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public static Executor getDefaultCompletionExecutor() {
+		return defaultCompletionExecutor;
+	}
+
+	/**
+	 * @param starter            starts the job, after adding the given listener to its QueryBatcher via onJobCompletion
+	 * @param finisher           finishes the job once its QueryBatcher has completed
+	 * @param completionExecutor runs the finisher
+	 * @return completes with the ticket of the job once the finisher has run, or exceptionally if the job could not
+	 * be started or finished
+	 */
+	public static CompletableFuture<QueryBatcherJobTicket> runAsync(Function<QueryBatcherListener, QueryBatcherJobTicket> starter,
+	                                                               Consumer<QueryBatcherJobTicket> finisher, Executor completionExecutor) {
+		// The job may complete before the starter returns its ticket, so both are needed before finishing the job
+		CompletableFuture<Void> jobCompleted = new CompletableFuture<>();
+		CompletableFuture<QueryBatcherJobTicket> jobStarted = new CompletableFuture<>();
+		try {
+			jobStarted.complete(starter.apply(queryBatcher -> jobCompleted.complete(null)));
+		} catch (RuntimeException ex) {
+			jobStarted.completeExceptionally(ex);
+			return jobStarted;
+		}
+		return jobStarted.thenCombineAsync(jobCompleted, (ticket, ignore) -> {
+			ticket.getQueryBatcher().awaitCompletion();
+			finisher.accept(ticket);
+			return ticket;
+		}, completionExecutor);
+	}
+}
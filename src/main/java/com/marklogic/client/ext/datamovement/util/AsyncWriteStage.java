@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hands off writes - typically to disk - from the threads that produce the content, such as DMSDK's QueryBatcher
+ * threads, to a separate pool of writer threads. This allows reading from MarkLogic and writing to disk to happen at
+ * the same time instead of one waiting on the other.
+ * <p>
+ * The amount of content waiting to be written is bounded by a number of bytes; submit blocks when adding the given
+ * content would exceed that bound, so that a slow disk causes reads to slow down instead of running out of memory.
+ * Content larger than the bound is accepted once nothing else is queued.
+ * <p>
+ * A failed write is logged, and the first failure is rethrown by the next call to submit or awaitCompletion.
+ */
+public class AsyncWriteStage implements Closeable {
+
+	public final static long DEFAULT_MAX_QUEUED_BYTES = 64L * 1024 * 1024;
+
+	private final static Logger logger = LoggerFactory.getLogger(AsyncWriteStage.class);
+
+	/**
+	 * A write to perform on a writer thread.
+	 */
+	public interface WriteTask {
+		void write() throws IOException;
+	}
+
+	private final ExecutorService executorService;
+	private final long maxQueuedBytes;
+	private final Object lock = new Object();
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private long queuedBytes;
+	private int pendingTasks;
+	private volatile Throwable firstFailure;
+
+	public AsyncWriteStage(int threadCount) {
+		this(threadCount, DEFAULT_MAX_QUEUED_BYTES);
+	}
+
+	/**
+	 * @param threadCount    the number of threads that perform writes
+	 * @param maxQueuedBytes the maximum number of bytes waiting to be written before submit blocks
+	 */
+	public AsyncWriteStage(int threadCount, long maxQueuedBytes) {
+		this.maxQueuedBytes = maxQueuedBytes;
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		this.executorService = Executors.newFixedThreadPool(Math.max(1, threadCount), runnable -> {
+			Thread thread = new Thread(runnable, "async-write-stage-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Queues the given task, blocking until there is room for the given number of bytes.
+	 *
+	 * @param byteCount the size of the content that the task will write
+	 * @param task
+	 */
+	public void submit(long byteCount, WriteTask task) {
+		submit(byteCount, task, null);
+	}
+
+	/**
+	 * Queues the given task, blocking until there is room for the given number of bytes. Once the task has run, the
+	 * given listener - if not null - is called on the writer thread with the failure of the task, or with null if the
+	 * task succeeded. The listener is not called if this method throws an exception, as the task is then not queued.
+	 *
+	 * @param byteCount          the size of the content that the task will write
+	 * @param task
+	 * @param completionListener
+	 */
+	public void submit(long byteCount, WriteTask task, Consumer<Throwable> completionListener) {
+		throwIfFailed();
+		final long reservedBytes = Math.min(Math.max(byteCount, 0), maxQueuedBytes);
+		synchronized (lock) {
+			while (queuedBytes > 0 && queuedBytes + reservedBytes > maxQueuedBytes) {
+				awaitLock();
+			}
+			queuedBytes += reservedBytes;
+			pendingTasks++;
+		}
+
+		try {
+			executorService.execute(() -> {
+				Throwable failure = null;
+				try {
+					task.write();
+				} catch (Throwable t) {
+					failure = t;
+					failureCount.incrementAndGet();
+					if (firstFailure == null) {
+						firstFailure = t;
+					}
+					logger.error("Unable to perform asynchronous write: " + t.getMessage(), t);
+				} finally {
+					try {
+						if (completionListener != null) {
+							completionListener.accept(failure);
+						}
+					} catch (RuntimeException ex) {
+						logger.error("Exception thrown by a write completion listener: " + ex.getMessage(), ex);
+					} finally {
+						release(reservedBytes);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			release(reservedBytes);
+			throw new IllegalStateException("Unable to submit write; the write stage has been closed", e);
+		}
+	}
+
+	private void release(long reservedBytes) {
+		synchronized (lock) {
+			queuedBytes -= reservedBytes;
+			pendingTasks--;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Blocks until every submitted task has finished.
+	 */
+	public void awaitCompletion() {
+		synchronized (lock) {
+			while (pendingTasks > 0) {
+				awaitLock();
+			}
+		}
+		throwIfFailed();
+	}
+
+	/**
+	 * Waits for every submitted task to finish and then stops the writer threads.
+	 */
+	@Override
+	public void close() {
+		try {
+			awaitCompletion();
+		} finally {
+			executorService.shutdown();
+			try {
+				executorService.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	private void awaitLock() {
+		try {
+			lock.wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting on asynchronous writes", e);
+		}
+	}
+
+	private void throwIfFailed() {
+		Throwable failure = firstFailure;
+		if (failure != null) {
+			throw new RuntimeException("Asynchronous write failed; cause: " + failure.getMessage(), failure);
+		}
+	}
+}
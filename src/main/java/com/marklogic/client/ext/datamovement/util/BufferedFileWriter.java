@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer for a single file that uses an explicit charset - UTF-8 by default - and a buffer that is much larger than
+ * that of a FileWriter. The file is not opened until the first write, flush, or close, which allows for the charset and
+ * buffer size to be configured after this is constructed, as is the case when a job is configured via properties.
+ */
+public class BufferedFileWriter extends Writer {
+
+	public final static int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	private final File file;
+	private Charset charset = StandardCharsets.UTF_8;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private Writer writer;
+	private boolean closed;
+	private volatile long bytesWritten;
+
+	public BufferedFileWriter(File file) {
+		this.file = file;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock) {
+			getWriter().write(cbuf, off, len);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		synchronized (lock) {
+			getWriter().write(str, off, len);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		synchronized (lock) {
+			getWriter().flush();
+		}
+	}
+
+	/**
+	 * Closes the file, creating it first if nothing has been written to it. Calling this more than once has no effect.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			if (!closed) {
+				getWriter().close();
+				closed = true;
+			}
+		}
+	}
+
+	private Writer getWriter() throws IOException {
+		if (closed) {
+			throw new IOException("Writer has been closed for file: " + file);
+		}
+		if (writer == null) {
+			OutputStream out = new FilterOutputStream(new FileOutputStream(file)) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					this.out.write(b, off, len);
+					bytesWritten += len;
+				}
+
+				@Override
+				public void write(int b) throws IOException {
+					this.out.write(b);
+					bytesWritten++;
+				}
+			};
+			writer = new BufferedWriter(new OutputStreamWriter(out, charset), bufferSize);
+		}
+		return writer;
+	}
+
+	private void verifyNotOpened() {
+		if (writer != null) {
+			throw new IllegalStateException("Cannot be changed after the file has been opened: " + file);
+		}
+	}
+
+	/**
+	 * @return the number of bytes written to the file so far, which excludes any content still in the buffer
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	public void setCharset(Charset charset) {
+		synchronized (lock) {
+			verifyNotOpened();
+			this.charset = charset;
+		}
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		synchronized (lock) {
+			verifyNotOpened();
+			this.bufferSize = bufferSize;
+		}
+	}
+}
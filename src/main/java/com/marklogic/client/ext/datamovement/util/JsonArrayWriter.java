@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+public abstract class JsonArrayWriter {
+
+	/**
+	 * Serializes the given values as a JSON array of strings. This allows for a sequence of values to be passed to an
+	 * eval call as a single external variable, which can then be converted back to a sequence via
+	 * json:array-values(xdmp:from-json-string($variable)).
+	 *
+	 * @param values
+	 * @return
+	 */
+	public static String toJsonArray(String... values) {
+		int length = 2;
+		for (String value : values) {
+			length += value.length() + 3;
+		}
+		StringBuilder sb = new StringBuilder(length);
+		sb.append('[');
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			appendJsonString(sb, values[i]);
+		}
+		return sb.append(']').toString();
+	}
+
+	private static void appendJsonString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+}
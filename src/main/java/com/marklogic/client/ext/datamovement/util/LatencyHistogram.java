@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of non-negative values, such as latencies in microseconds, with a fixed memory footprint.
+ * Values below 16 are counted exactly; larger values are counted in buckets whose width is 1/16th of the power of
+ * two below them, so a percentile is accurate to within about 6%.
+ */
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKET_BITS = 4;
+	private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKET_COUNT * (64 - SUB_BUCKET_BITS));
+
+	public void record(long value) {
+		counts.incrementAndGet(bucketIndex(Math.max(0, value)));
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket containing the given percentile, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = getCount();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return bucketUpperBound(i);
+			}
+		}
+		return bucketUpperBound(counts.length() - 1);
+	}
+
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			total += counts.get(i);
+		}
+		return total;
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+		long lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
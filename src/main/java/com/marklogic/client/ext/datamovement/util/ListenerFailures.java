@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import com.marklogic.client.datamovement.DeleteListener;
+import com.marklogic.client.datamovement.ExportListener;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryEvent;
+
+import java.util.function.Consumer;
+
+public abstract class ListenerFailures {
+
+	/**
+	 * DMSDK's ExportListener and DeleteListener catch their own exceptions and pass them to failure listeners instead
+	 * of throwing them, so a wrapping listener never sees them. This adds a failure listener to either type of
+	 * listener that passes each failed batch to the given callback; other listeners are left as-is.
+	 *
+	 * @param listener
+	 * @param callback
+	 */
+	public static void onSelfHandledFailure(QueryBatchListener listener, Consumer<QueryEvent> callback) {
+		if (listener instanceof ExportListener) {
+			((ExportListener) listener).onBatchFailure((batch, throwable) -> callback.accept(batch));
+		} else if (listener instanceof DeleteListener) {
+			((DeleteListener) listener).onFailure((batch, throwable) -> {
+				if (batch instanceof QueryEvent) {
+					callback.accept((QueryEvent) batch);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Iterator of URIs that are read one page at a time, where each page is fetched by the given function based on the
+ * last URI of the previous page. This allows for a large set of URIs to be read via a series of small requests instead
+ * of one long-lived request that returns every URI.
+ * <p>
+ * While the current page is being consumed, the next page is fetched on a separate thread, which then waits for the
+ * consumer to take it. The first page starts at the given start URI, inclusive. Each subsequent page is expected to
+ * start with the last URI of the previous page, as cts:uris does, and that URI is skipped so that it is not returned
+ * twice. Iteration ends when a page has fewer URIs than the page length.
+ * <p>
+ * If the consumer stops before reading every URI - e.g. because the QueryBatcher reading this iterator was stopped -
+ * this must be closed so that the fetching thread and the page it fetched ahead are released. As a QueryBatcher has
+ * no listener for being stopped, a close condition can be set instead, which the fetching thread checks while waiting
+ * for the consumer to take the next page.
+ */
+public class PagedUrisIterator implements Iterator<String>, Closeable {
+
+	private final Function<String, List<String>> pageFetcher;
+	private final int pageLength;
+	private final ExecutorService executorService;
+	// Hands each page to the consumer, so that only one page is fetched ahead of the consumer
+	private final SynchronousQueue<Page> pages = new SynchronousQueue<>();
+
+	private volatile boolean closed;
+	private volatile BooleanSupplier closeCondition;
+	private boolean lastPageRead;
+	private List<String> currentPage = Collections.emptyList();
+	private int currentIndex;
+
+	/**
+	 * @param pageFetcher returns a page of at most pageLength URIs, starting with the given URI (which may be null for
+	 *                    the first page)
+	 * @param pageLength  the maximum number of URIs returned by each call to the page fetcher; must be at least 2 so
+	 *                    that each page can make progress after skipping the last URI of the previous page
+	 * @param startUri    optional URI to start from, which allows for resuming from a known point
+	 */
+	public PagedUrisIterator(Function<String, List<String>> pageFetcher, int pageLength, String startUri) {
+		if (pageLength < 2) {
+			throw new IllegalArgumentException("Page length must be at least 2; was: " + pageLength);
+		}
+		this.pageFetcher = pageFetcher;
+		this.pageLength = pageLength;
+		this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "paged-uris-iterator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executorService.execute(() -> fetchPages(startUri));
+		executorService.shutdown();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (closed) {
+			return false;
+		}
+		while (currentIndex >= currentPage.size()) {
+			if (lastPageRead || closed) {
+				return false;
+			}
+			Page page = takePage();
+			if (page == null) {
+				return false;
+			}
+			if (page.failure != null) {
+				close();
+				throw new RuntimeException("Unable to read next page of URIs; cause: " + page.failure.getMessage(), page.failure);
+			}
+			currentPage = page.uris;
+			currentIndex = 0;
+			lastPageRead = page.lastUri == null;
+		}
+		return true;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return currentPage.get(currentIndex++);
+	}
+
+	/**
+	 * Interrupts the fetching thread and discards the page it fetched ahead, if any.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * @param closeCondition checked by the fetching thread while it waits for the consumer to take the next page; if
+	 *                       it returns true, this iterator is closed - e.g. {@code queryBatcher::isStopped}
+	 */
+	public void setCloseCondition(BooleanSupplier closeCondition) {
+		this.closeCondition = closeCondition;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private void fetchPages(String startUri) {
+		String start = startUri;
+		boolean skipStartUri = false;
+		while (!closed) {
+			Page page;
+			try {
+				List<String> uris = pageFetcher.apply(start);
+				// A page with fewer URIs than the page length is the last one, so there's no URI to continue from
+				String lastUri = uris.size() < pageLength ? null : uris.get(uris.size() - 1);
+				if (skipStartUri && !uris.isEmpty() && uris.get(0).equals(start)) {
+					uris = uris.subList(1, uris.size());
+				}
+				page = new Page(uris, lastUri, null);
+			} catch (Throwable t) {
+				page = new Page(Collections.emptyList(), null, t);
+			}
+			if (!putPage(page) || page.lastUri == null) {
+				return;
+			}
+			start = page.lastUri;
+			skipStartUri = true;
+		}
+	}
+
+	/**
+	 * @return false if this iterator was closed before the consumer took the page
+	 */
+	private boolean putPage(Page page) {
+		try {
+			while (!pages.offer(page, 1, TimeUnit.SECONDS)) {
+				BooleanSupplier condition = closeCondition;
+				if (!closed && condition != null && condition.getAsBoolean()) {
+					close();
+				}
+				if (closed) {
+					return false;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			// This iterator was closed, so there's nothing left to do
+			return false;
+		}
+	}
+
+	private Page takePage() {
+		try {
+			Page page = null;
+			while (page == null && !closed) {
+				page = pages.poll(1, TimeUnit.SECONDS);
+			}
+			return page;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new RuntimeException("Interrupted while waiting for next page of URIs", e);
+		}
+	}
+
+	private static class Page {
+		private final List<String> uris;
+		private final String lastUri;
+		private final Throwable failure;
+
+		private Page(List<String> uris, String lastUri, Throwable failure) {
+			this.uris = uris;
+			this.lastUri = lastUri;
+			this.failure = failure;
+		}
+	}
+}
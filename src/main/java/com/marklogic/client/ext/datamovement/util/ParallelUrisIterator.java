@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Merges the URIs from multiple sources into a single Iterator, with each source being read on a separate thread.
+ * URIs are handed from the source threads to the consuming thread in chunks via a bounded queue, so a source blocks
+ * when the consumer falls behind instead of buffering all of its URIs in memory. The order of the URIs is not defined.
+ * <p>
+ * Each source is a function that is given a Consumer and passes each of its URIs to that Consumer. If any source
+ * throws an exception, it is rethrown by this class when the consumer reaches it.
+ * <p>
+ * If the consumer stops before reading every URI - e.g. because the QueryBatcher reading this iterator was stopped -
+ * this must be closed so that the source threads, which would otherwise wait forever for space in the queue, are
+ * interrupted and can release whatever they are reading from. As a QueryBatcher has no listener for being stopped, a
+ * close condition can be set instead, which the source threads check while waiting for space in the queue.
+ */
+public class ParallelUrisIterator implements Iterator<String>, Closeable {
+
+	public final static int DEFAULT_CHUNK_SIZE = 1000;
+	public final static int DEFAULT_QUEUE_CAPACITY = 100;
+
+	// Marks that a source has finished; compared by identity
+	private final static List<String> END_OF_SOURCE = new ArrayList<>();
+
+	private final BlockingQueue<List<String>> queue;
+	private final ExecutorService executorService;
+	private final int chunkSize;
+
+	private int remainingSources;
+	private volatile Throwable sourceFailure;
+	private volatile boolean closed;
+	private volatile BooleanSupplier closeCondition;
+	private List<String> currentChunk = Collections.emptyList();
+	private int currentIndex;
+
+	public ParallelUrisIterator(List<Consumer<Consumer<String>>> uriSources, int threadCount) {
+		this(uriSources, threadCount, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param uriSources    each source passes its URIs to the Consumer that it is given
+	 * @param threadCount   the number of sources to read at the same time
+	 * @param chunkSize     the number of URIs a source collects before adding them to the queue
+	 * @param queueCapacity the maximum number of chunks in the queue before sources block
+	 */
+	public ParallelUrisIterator(List<Consumer<Consumer<String>>> uriSources, int threadCount, int chunkSize, int queueCapacity) {
+		this.chunkSize = chunkSize;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.remainingSources = uriSources.size();
+		this.executorService = Executors.newFixedThreadPool(Math.max(1, threadCount), runnable -> {
+			Thread thread = new Thread(runnable, "parallel-uris-iterator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (Consumer<Consumer<String>> source : uriSources) {
+			executorService.execute(() -> readSource(source));
+		}
+		executorService.shutdown();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (currentIndex >= currentChunk.size()) {
+			if (remainingSources == 0 || closed) {
+				return false;
+			}
+			List<String> chunk = takeChunk();
+			if (chunk == null) {
+				return false;
+			}
+			if (chunk == END_OF_SOURCE) {
+				remainingSources--;
+				if (sourceFailure != null) {
+					close();
+					throw new RuntimeException("Unable to read URIs; cause: " + sourceFailure.getMessage(), sourceFailure);
+				}
+			} else {
+				currentChunk = chunk;
+				currentIndex = 0;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return currentChunk.get(currentIndex++);
+	}
+
+	/**
+	 * Interrupts the source threads and discards any URIs that have not been read yet.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executorService.shutdownNow();
+		queue.clear();
+	}
+
+	/**
+	 * @param closeCondition checked by each source thread while it waits for space in the queue; if it returns true,
+	 *                       this iterator is closed - e.g. {@code queryBatcher::isStopped}
+	 */
+	public void setCloseCondition(BooleanSupplier closeCondition) {
+		this.closeCondition = closeCondition;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private void readSource(Consumer<Consumer<String>> source) {
+		List<String> chunk = new ArrayList<>(chunkSize);
+		try {
+			source.accept(uri -> {
+				chunk.add(uri);
+				if (chunk.size() >= chunkSize) {
+					putChunk(new ArrayList<>(chunk));
+					chunk.clear();
+				}
+			});
+			if (!chunk.isEmpty()) {
+				putChunk(chunk);
+			}
+		} catch (Throwable t) {
+			if (!closed) {
+				sourceFailure = t;
+			}
+		}
+		try {
+			putChunk(END_OF_SOURCE);
+		} catch (RuntimeException e) {
+			// This iterator was closed, so there's nothing left to do
+		}
+	}
+
+	private void putChunk(List<String> chunk) {
+		try {
+			while (!queue.offer(chunk, 1, TimeUnit.SECONDS)) {
+				BooleanSupplier condition = closeCondition;
+				if (!closed && condition != null && condition.getAsBoolean()) {
+					close();
+				}
+				if (closed) {
+					throw new IllegalStateException("URI iterator was closed before all URIs were read");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while queueing URIs", e);
+		}
+	}
+
+	private List<String> takeChunk() {
+		try {
+			List<String> chunk = null;
+			while (chunk == null && !closed) {
+				chunk = queue.poll(1, TimeUnit.SECONDS);
+			}
+			return chunk;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new RuntimeException("Interrupted while waiting for URIs", e);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import com.marklogic.client.datamovement.QueryBatch;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+public abstract class SubBatches {
+
+	/**
+	 * A proxy is used so that every method besides getItems is delegated to the original batch, regardless of which
+	 * methods the QueryBatch interface defines in a particular version of DMSDK.
+	 *
+	 * @param queryBatch
+	 * @param items
+	 * @return a QueryBatch with the given items, and otherwise identical to the given batch
+	 */
+	public static QueryBatch newSubBatch(QueryBatch queryBatch, String[] items) {
+		return (QueryBatch) Proxy.newProxyInstance(QueryBatch.class.getClassLoader(), new Class[]{QueryBatch.class},
+			(proxy, method, args) -> {
+				if ("getItems".equals(method.getName()) && method.getParameterCount() == 0) {
+					return items;
+				}
+				try {
+					return method.invoke(queryBatch, args);
+				} catch (InvocationTargetException ex) {
+					throw ex.getCause();
+				}
+			});
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveBatchSizeControllerTest {
+
+    private AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(10, 1000, 1000);
+
+    @Test
+    public void startsAtMax() {
+        assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void shrinksWhenSlow() {
+        // 1000 items in 4 seconds is 4ms per item, so 250 items should take the target of 1 second
+        controller.recordSuccess(1000, 4000);
+        assertEquals(250, controller.getBatchSize());
+    }
+
+    @Test
+    public void growsAtMostDoubleWhenFast() {
+        controller.recordFailure();
+        controller.recordFailure();
+        assertEquals(250, controller.getBatchSize());
+
+        // Even though the batches are now very fast, the size can only double each time
+        controller.recordSuccess(250, 1);
+        assertEquals(500, controller.getBatchSize());
+        controller.recordSuccess(500, 1);
+        assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void recentBatchesAreSmoothed() {
+        controller.recordSuccess(1000, 10000);
+        assertEquals(100, controller.getBatchSize());
+
+        // 10ms per item on average, then 1ms per item for a batch, results in an average of 8.2ms per item
+        controller.recordSuccess(100, 100);
+        assertEquals(121, controller.getBatchSize());
+    }
+
+    @Test
+    public void staysWithinMinAndMax() {
+        controller.recordSuccess(10, 100000);
+        assertEquals(10, controller.getBatchSize());
+
+        controller = new AdaptiveBatchSizeController(10, 1000, 1000);
+        controller.recordSuccess(1000, 1);
+        assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void halvesOnFailure() {
+        controller.recordFailure();
+        assertEquals(500, controller.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            controller.recordFailure();
+        }
+        assertEquals(10, controller.getBatchSize());
+    }
+
+    @Test
+    public void invalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizeController(0, 10, 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizeController(20, 10, 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizeController(1, 10, 0));
+    }
+}
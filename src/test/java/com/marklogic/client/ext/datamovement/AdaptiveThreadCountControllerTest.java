@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveThreadCountControllerTest {
+
+    private AdaptiveThreadCountController controller = new AdaptiveThreadCountController(2, 16);
+
+    @Test
+    public void startsBetweenMinAndMax() {
+        assertEquals(9, controller.getLimit());
+    }
+
+    @Test
+    public void increasesAfterLimitOfSuccesses() {
+        for (int i = 0; i < 8; i++) {
+            controller.recordSuccess(100);
+        }
+        assertEquals(9, controller.getLimit());
+        controller.recordSuccess(100);
+        assertEquals(10, controller.getLimit());
+    }
+
+    @Test
+    public void decreasesWhenLatencyRises() {
+        for (int i = 0; i < 9; i++) {
+            controller.recordSuccess(100);
+        }
+        assertEquals(10, controller.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            controller.recordSuccess(1000);
+        }
+        assertEquals(9, controller.getLimit());
+    }
+
+    @Test
+    public void halvesOnBackPressure() {
+        controller.recordFailure(new RuntimeException("Wrapper", new RuntimeException("XDMP-XDQPDISC: XDQP connection disconnected")));
+        assertEquals(4, controller.getLimit());
+        controller.recordFailure(new RuntimeException("Service Unavailable"));
+        assertEquals(2, controller.getLimit(), "Should not go below the min");
+    }
+
+    @Test
+    public void ignoresOtherFailures() {
+        controller.recordFailure(new RuntimeException("XDMP-UNDVAR: Undefined variable"));
+        assertEquals(9, controller.getLimit());
+    }
+
+    @Test
+    public void permitsFollowLimit() throws Exception {
+        controller.recordFailure(new RuntimeException("Service Unavailable"));
+        assertEquals(4, controller.getLimit());
+        for (int i = 0; i < 4; i++) {
+            controller.acquire();
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                controller.acquire();
+            } catch (InterruptedException e) {
+                // Expected when the test ends
+            }
+        });
+        thread.start();
+        thread.join(200);
+        assertTrue(thread.isAlive(), "A fifth permit should not be available");
+        controller.release();
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchCheckpointTest {
+
+    @Test
+    public void resumeFromPreviousRun() throws Exception {
+        File file = new File(Files.createTempDirectory("batch-checkpoint-test").toFile(), "checkpoint.txt");
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+        String[] uris = new String[]{"/a.json", "/b.json", "/c.json"};
+        assertSame(uris, checkpoint.filterCompletedUris(uris), "Nothing should be filtered on the first run");
+        checkpoint.recordCompletedBatch(newQueryBatch(1, "/a.json", "/with\ttab\\and\nnewline.json"));
+        checkpoint.recordCompletedBatch(newQueryBatch(2, "/c.json"));
+        checkpoint.close();
+
+        checkpoint = new BatchCheckpoint(file);
+        assertEquals(3, checkpoint.getPreviouslyCompletedUriCount());
+        assertEquals(1234, checkpoint.getPreviousServerTimestamp());
+        assertArrayEquals(new String[]{"/b.json"}, checkpoint.filterCompletedUris(uris));
+        assertArrayEquals(new String[0], checkpoint.filterCompletedUris(new String[]{"/with\ttab\\and\nnewline.json"}));
+        assertEquals(3, checkpoint.getSkippedUriCount());
+
+        checkpoint.delete();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void partialLastLineIsDiscarded() throws Exception {
+        File file = new File(Files.createTempDirectory("batch-checkpoint-test").toFile(), "checkpoint.txt");
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+        checkpoint.recordCompletedBatch(newQueryBatch(1, "/a.json"));
+        checkpoint.close();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("1234\tforest-1\t2\t/b.js".getBytes(StandardCharsets.UTF_8));
+        }
+
+        checkpoint = new BatchCheckpoint(file);
+        assertEquals(1, checkpoint.getPreviouslyCompletedUriCount());
+        checkpoint.recordCompletedBatch(newQueryBatch(3, "/c.json"));
+        checkpoint.close();
+
+        checkpoint = new BatchCheckpoint(file);
+        assertArrayEquals(new String[]{"/b.json"}, checkpoint.filterCompletedUris(new String[]{"/a.json", "/b.json", "/c.json"}),
+            "The partial line should have been removed so that the next batch was written on its own line");
+        checkpoint.close();
+    }
+
+    @Test
+    public void manyCompletedUris() throws Exception {
+        File file = new File(Files.createTempDirectory("batch-checkpoint-test").toFile(), "checkpoint.txt");
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+        for (int batch = 0; batch < 100; batch++) {
+            String[] uris = new String[100];
+            for (int i = 0; i < uris.length; i++) {
+                uris[i] = "/completed/" + (batch * 100 + i) + ".json";
+            }
+            checkpoint.recordCompletedBatch(newQueryBatch(batch, uris));
+        }
+        checkpoint.close();
+
+        checkpoint = new BatchCheckpoint(file);
+        assertEquals(10000, checkpoint.getPreviouslyCompletedUriCount());
+        for (int i = 0; i < 10000; i += 100) {
+            String[] remaining = checkpoint.filterCompletedUris(new String[]{"/completed/" + i + ".json", "/new/" + i + ".json"});
+            assertArrayEquals(new String[]{"/new/" + i + ".json"}, remaining);
+        }
+        assertEquals(100, checkpoint.getSkippedUriCount());
+        checkpoint.close();
+    }
+
+    @Test
+    public void failures() throws Exception {
+        File file = new File(Files.createTempDirectory("batch-checkpoint-test").toFile(), "checkpoint.txt");
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+        assertFalse(checkpoint.hasFailures());
+
+        QueryBatch batch = newQueryBatch(5, "/a.json");
+        checkpoint.markBatchFailed(batch);
+        assertTrue(checkpoint.removeBatchFailure(batch));
+        assertFalse(checkpoint.removeBatchFailure(batch));
+
+        checkpoint.recordQueryFailure();
+        assertTrue(checkpoint.hasFailures());
+        checkpoint.close();
+    }
+
+    @Test
+    public void deferredBatches() throws Exception {
+        File file = new File(Files.createTempDirectory("batch-checkpoint-test").toFile(), "checkpoint.txt");
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+
+        QueryBatch written = newQueryBatch(1, "/a.json");
+        checkpoint.deferBatch(written);
+        checkpoint.finishBatch(written, written, true);
+        assertEquals(0, checkpoint.getCompletedBatchCount(), "The batch should not be recorded until its output is written");
+        checkpoint.completeDeferredBatch(written, true);
+        assertEquals(1, checkpoint.getCompletedBatchCount());
+
+        QueryBatch notWritten = newQueryBatch(2, "/b.json");
+        checkpoint.deferBatch(notWritten);
+        checkpoint.completeDeferredBatch(notWritten, false);
+        checkpoint.finishBatch(notWritten, notWritten, true);
+        assertEquals(1, checkpoint.getCompletedBatchCount());
+        assertEquals(1, checkpoint.getFailedBatchCount(), "A failed write should fail the batch, even if it fails " +
+            "before the listeners of the batch have returned");
+
+        QueryBatch notDeferred = newQueryBatch(3, "/c.json");
+        checkpoint.finishBatch(notDeferred, notDeferred, true);
+        assertEquals(2, checkpoint.getCompletedBatchCount());
+        checkpoint.close();
+
+        checkpoint = new BatchCheckpoint(file);
+        assertArrayEquals(new String[]{"/b.json"}, checkpoint.filterCompletedUris(new String[]{"/a.json", "/b.json", "/c.json"}));
+        checkpoint.close();
+    }
+
+    public static QueryBatch newQueryBatch(long jobBatchNumber, String... items) {
+        return (QueryBatch) Proxy.newProxyInstance(BatchCheckpointTest.class.getClassLoader(), new Class[]{QueryBatch.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getItems":
+                        return items;
+                    case "getJobBatchNumber":
+                        return jobBatchNumber;
+                    case "getServerTimestamp":
+                        return 1234L;
+                    default:
+                        return null;
+                }
+            });
+    }
+}
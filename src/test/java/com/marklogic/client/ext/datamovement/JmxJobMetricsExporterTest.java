@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JmxJobMetricsExporterTest {
+
+    private MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    private JmxJobMetricsExporter exporter = new JmxJobMetricsExporter(mbeanServer, "jmx-job-metrics-exporter-test");
+
+    @Test
+    public void exportAndStop() throws Exception {
+        JobMetrics metrics = new JobMetrics();
+        metrics.start();
+        metrics.batchStarted();
+        metrics.recordBytesExported(100);
+        metrics.recordQueryFailure();
+
+        Closeable export = exporter.export(metrics, "my job", "job-1");
+        ObjectName name = exporter.newObjectName("my job", "job-1");
+        assertTrue(mbeanServer.isRegistered(name));
+        assertEquals("my job", mbeanServer.getAttribute(name, "JobName"));
+        assertEquals(1L, mbeanServer.getAttribute(name, "BatchesInProgress"));
+        assertEquals(100L, mbeanServer.getAttribute(name, "BytesExported"));
+        assertEquals(1L, mbeanServer.getAttribute(name, "QueryFailureCount"));
+
+        metrics.recordBytesExported(50);
+        assertEquals(150L, mbeanServer.getAttribute(name, "BytesExported"), "The MXBean should reflect the live metrics");
+
+        export.close();
+        assertFalse(mbeanServer.isRegistered(name));
+    }
+
+    @Test
+    public void jobWithoutName() throws Exception {
+        Closeable export = exporter.export(new JobMetrics(), null, "job-2");
+        ObjectName name = exporter.newObjectName(null, "job-2");
+        assertEquals("jmx-job-metrics-exporter-test:type=QueryBatcherJob,name=\"unnamed\",id=\"job-2\"", name.toString());
+        assertTrue(mbeanServer.isRegistered(name));
+
+        Closeable duplicate = exporter.export(new JobMetrics(), null, "job-2");
+        duplicate.close();
+        assertTrue(mbeanServer.isRegistered(name), "A duplicate registration is logged and ignored, so closing it " +
+            "should not unregister the original MXBean");
+
+        export.close();
+        assertFalse(mbeanServer.isRegistered(name));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.Forest;
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.JobMetricsListener;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobMetricsTest {
+
+    @Test
+    public void recordBatchesViaListener() {
+        JobMetrics metrics = new JobMetrics();
+        metrics.setExpectedUriCount(10);
+        metrics.start();
+
+        QueryBatchListener slowListener = batch -> sleep(5);
+        QueryBatchListener failingListener = batch -> {
+            if (batch.getItems().length == 1) {
+                throw new RuntimeException("Expected failure");
+            }
+        };
+        JobMetricsListener listener = new JobMetricsListener(metrics, Arrays.asList(failingListener, slowListener));
+
+        listener.processEvent(newQueryBatch("forest-1", "host-1", "a", "b"));
+        listener.processEvent(newQueryBatch("forest-2", "host-1", "c", "d"));
+        assertThrows(RuntimeException.class, () -> listener.processEvent(newQueryBatch("forest-3", "host-2", "e")));
+        metrics.recordBytesExported(100);
+        metrics.addBytesExportedSource(() -> 50);
+        metrics.finish();
+
+        assertEquals(3, metrics.getBatchCount());
+        assertEquals(5, metrics.getUriCount());
+        assertEquals(150, metrics.getBytesExported());
+        assertEquals(1, metrics.getBatchFailureCount());
+        assertEquals(0, metrics.getBatchesInProgress());
+        assertTrue(metrics.getBatchLatencyMillis(50) >= 4, "Each batch should include the time of the slow listener");
+        assertTrue(metrics.getBatchLatencyMillis(99) >= metrics.getBatchLatencyMillis(50));
+        assertTrue(metrics.getEstimatedRemainingMillis() >= 0);
+
+        assertEquals(3, metrics.getForestMetrics().size());
+        assertEquals(2, metrics.getHostMetrics().size());
+        assertEquals(4, metrics.getHostMetrics().get("host-1").getUriCount());
+        assertEquals(2, metrics.getHostMetrics().get("host-1").getBatchCount());
+        assertTrue(metrics.getHostMetrics().get("host-1").getAverageBatchLatencyMillis() >= 4);
+    }
+
+    @Test
+    public void sharedListenerRecordsIntoMetricsOfEachJob() throws Exception {
+        QueryBatchListener sharedListener = batch -> JobMetricsListener.getCurrentJobMetrics().recordBytesExported(batch.getItems().length);
+        JobMetrics firstMetrics = new JobMetrics();
+        JobMetrics secondMetrics = new JobMetrics();
+        JobMetricsListener firstJob = new JobMetricsListener(firstMetrics, Arrays.asList(sharedListener));
+        JobMetricsListener secondJob = new JobMetricsListener(secondMetrics, Arrays.asList(sharedListener));
+
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                secondJob.processEvent(newQueryBatch("forest-1", "host-1", "a", "b"));
+            }
+        });
+        thread.start();
+        for (int i = 0; i < 100; i++) {
+            firstJob.processEvent(newQueryBatch("forest-1", "host-1", "a"));
+        }
+        thread.join();
+
+        assertEquals(100, firstMetrics.getBytesExported());
+        assertEquals(200, secondMetrics.getBytesExported());
+        assertNull(JobMetricsListener.getCurrentJobMetrics(), "The current metrics should be cleared once a batch is processed");
+    }
+
+    @Test
+    public void noExpectedUriCount() {
+        JobMetrics metrics = new JobMetrics();
+        metrics.start();
+        assertEquals(-1, metrics.getEstimatedRemainingMillis());
+        assertEquals(0, metrics.getBatchLatencyMillis(50), 0);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private QueryBatch newQueryBatch(String forestName, String host, String... items) {
+        Forest forest = (Forest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Forest.class},
+            (proxy, method, args) -> "getForestName".equals(method.getName()) ? forestName : null);
+        DatabaseClient client = (DatabaseClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DatabaseClient.class},
+            (proxy, method, args) -> "getHost".equals(method.getName()) ? host : null);
+        return (QueryBatch) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{QueryBatch.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getItems":
+                        return items;
+                    case "getForest":
+                        return forest;
+                    case "getClient":
+                        return client;
+                    default:
+                        return null;
+                }
+            });
+    }
+}
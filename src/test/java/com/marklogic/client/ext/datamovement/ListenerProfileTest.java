@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.ext.datamovement.consumer.ProfilingDocumentConsumer;
+import com.marklogic.client.ext.datamovement.listener.ProfilingQueryBatchListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ListenerProfileTest {
+
+    private ListenerProfile profile = new ListenerProfile();
+
+    @Test
+    public void profileListener() {
+        List<byte[]> retained = new ArrayList<>();
+        QueryBatchListener listener = new ProfilingQueryBatchListener("allocating", batch -> retained.add(new byte[1024 * 1024]), profile);
+        listener.processEvent(null);
+        listener.processEvent(null);
+
+        ListenerProfile.Timings timings = profile.getTimings("allocating");
+        assertEquals(2, timings.getInvocationCount());
+        assertTrue(timings.getWallNanos() > 0);
+        if (timings.getAllocatedBytes() >= 0) {
+            assertTrue(timings.getAllocatedBytes() >= 2 * 1024 * 1024, "Each invocation allocated 1MB; allocated: " + timings.getAllocatedBytes());
+        }
+        if (timings.getCpuNanos() >= 0) {
+            assertTrue(timings.getCpuNanos() <= timings.getWallNanos() + 1000000, "CPU time should not meaningfully exceed wall time");
+        }
+    }
+
+    @Test
+    public void failureIsStillRecorded() {
+        QueryBatchListener listener = new ProfilingQueryBatchListener("failing", batch -> {
+            throw new RuntimeException("Expected failure");
+        }, profile);
+        assertThrows(RuntimeException.class, () -> listener.processEvent(null));
+        assertEquals(1, profile.getTimings("failing").getInvocationCount());
+    }
+
+    @Test
+    public void consumerWithoutProfile() {
+        List<DocumentRecord> records = new ArrayList<>();
+        ProfilingDocumentConsumer consumer = new ProfilingDocumentConsumer("consumer", records::add, () -> null);
+        consumer.accept(null);
+        assertEquals(1, records.size(), "The record should still be passed to the consumer when there's no profile");
+        assertTrue(profile.getAllTimings().isEmpty());
+
+        consumer = new ProfilingDocumentConsumer("consumer", records::add, () -> profile);
+        consumer.accept(null);
+        assertEquals(2, records.size());
+        assertEquals(1, profile.getTimings("consumer").getInvocationCount());
+    }
+
+    @Test
+    public void nameOf() {
+        Consumer<DocumentRecord> lambda = record -> {
+        };
+        assertEquals("ListenerProfileTest lambda", ListenerProfile.nameOf(lambda));
+        assertEquals("ListenerProfile", ListenerProfile.nameOf(profile));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MicrometerJobMetricsExporterTest {
+
+    private SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MicrometerJobMetricsExporter exporter = new MicrometerJobMetricsExporter(registry);
+
+    @Test
+    public void exportAndStop() throws Exception {
+        JobMetrics metrics = new JobMetrics();
+        metrics.start();
+        metrics.batchStarted();
+        metrics.recordBytesExported(100);
+        metrics.recordQueryFailure();
+
+        Closeable export = exporter.export(metrics, "my job", "job-1");
+        assertFalse(registry.getMeters().isEmpty());
+        for (Meter meter : registry.getMeters()) {
+            assertTrue(meter.getId().getName().startsWith(MicrometerJobMetricsExporter.DEFAULT_PREFIX + "."));
+            assertEquals("my job", meter.getId().getTag("job.name"));
+            assertEquals("job-1", meter.getId().getTag("job.id"));
+        }
+
+        FunctionCounter bytesExported = registry.find("marklogic.datamovement.job.bytes.exported")
+            .tags("job.name", "my job", "job.id", "job-1").functionCounter();
+        assertNotNull(bytesExported);
+        assertEquals(100, bytesExported.count());
+
+        metrics.recordBytesExported(50);
+        assertEquals(150, bytesExported.count(), "The meter should reflect the live metrics");
+
+        Gauge batchesInProgress = registry.find("marklogic.datamovement.job.batches.in.progress").gauge();
+        assertNotNull(batchesInProgress);
+        assertEquals(1, batchesInProgress.value());
+
+        FunctionCounter queryFailures = registry.find("marklogic.datamovement.job.query.failures").functionCounter();
+        assertNotNull(queryFailures);
+        assertEquals(1, queryFailures.count());
+
+        export.close();
+        assertTrue(registry.getMeters().isEmpty(), "The meters of the job should be removed once the export is closed");
+    }
+
+    @Test
+    public void jobWithoutName() throws Exception {
+        Closeable first = exporter.export(new JobMetrics(), null, "job-2");
+        Closeable second = exporter.export(new JobMetrics(), null, "job-3");
+        assertEquals("unnamed", registry.find("marklogic.datamovement.job.batches").tag("job.id", "job-2")
+            .functionCounter().getId().getTag("job.name"));
+
+        first.close();
+        assertTrue(registry.find("marklogic.datamovement.job.batches").tag("job.id", "job-2").meters().isEmpty());
+        assertNotNull(registry.find("marklogic.datamovement.job.batches").tag("job.id", "job-3").functionCounter(),
+            "Closing the export of one job should not remove the meters of another job");
+
+        second.close();
+        assertTrue(registry.getMeters().isEmpty());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.listener.AdaptiveBatchSizeListener;
+import com.marklogic.client.ext.datamovement.listener.AdaptiveThreadCountListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryBatcherListenersTest {
+
+    @Test
+    public void defaultSettings() {
+        QueryBatcherListeners batcherListeners = new QueryBatcherListeners(new BatcherConfig());
+        QueryBatchListener listener = batch -> {
+        };
+
+        assertSame(listener, batcherListeners.applyAdaptiveBatchSize(listener));
+        assertSame(listener, batcherListeners.applyListenerProfile(listener, null));
+        assertNull(batcherListeners.newAdaptiveThreadCountController());
+        assertTrue(batcherListeners.newRateLimitingListeners().isEmpty());
+    }
+
+    @Test
+    public void adaptiveSettings() {
+        BatcherConfig config = new BatcherConfig()
+            .setTargetBatchLatencyMillis(500L)
+            .setAdaptiveThreadCount(true)
+            .setThreadCount(6)
+            .setMinThreadCount(2)
+            .setMaxUrisPerSecond(100.0)
+            .setMaxBatchesPerSecond(10.0);
+        QueryBatcherListeners batcherListeners = new QueryBatcherListeners(config);
+        QueryBatchListener listener = batch -> {
+        };
+
+        assertTrue(batcherListeners.applyAdaptiveBatchSize(listener) instanceof AdaptiveBatchSizeListener);
+
+        AdaptiveThreadCountController controller = batcherListeners.newAdaptiveThreadCountController();
+        assertEquals(2, controller.getMinThreadCount());
+        assertEquals(6, controller.getMaxThreadCount());
+
+        List<QueryBatchListener> wrapped = batcherListeners.applyAdaptiveThreadCount(Arrays.asList(listener, listener), controller);
+        assertEquals(1, wrapped.size(), "All of the listeners should be wrapped in a single listener");
+        assertEquals(2, ((AdaptiveThreadCountListener) wrapped.get(0)).getListeners().size());
+
+        assertEquals(2, batcherListeners.newRateLimitingListeners().size());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    private final static long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void permitsAreSpacedEvenly() {
+        RateLimiter limiter = new RateLimiter(100);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.reserve(10, now), "The first permits should not have to wait");
+        assertEquals(100 * MILLIS, limiter.reserve(10, now), 1000, "10 permits at 100 per second take 100ms");
+        assertEquals(200 * MILLIS, limiter.reserve(1, now), 1000);
+        assertEquals(110 * MILLIS, limiter.reserve(1, now + 100 * MILLIS), 1000);
+    }
+
+    @Test
+    public void idleTimeDoesNotAccumulate() {
+        RateLimiter limiter = new RateLimiter(100);
+        long later = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, limiter.reserve(10, later));
+        assertEquals(100 * MILLIS, limiter.reserve(10, later), 1000, "Being idle should not allow for a burst");
+    }
+
+    @Test
+    public void burst() {
+        RateLimiter limiter = new RateLimiter(100, 20);
+        long later = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        assertEquals(0, limiter.reserve(10, later));
+        assertEquals(0, limiter.reserve(10, later));
+        assertEquals(0, limiter.reserve(10, later));
+        assertEquals(100 * MILLIS, limiter.reserve(10, later), 1000, "The burst of 20 permits has been used up");
+    }
+
+    @Test
+    public void acquireBlocks() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(200);
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(10);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 140, "The last 30 permits should have waited about 150ms; elapsed: " + elapsedMillis);
+    }
+
+    @Test
+    public void invalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement;
+
+import com.marklogic.client.document.DocumentRecord;
+import com.marklogic.client.io.BytesHandle;
+import com.marklogic.client.io.Format;
+import com.marklogic.client.io.InputStreamHandle;
+import com.marklogic.client.io.StringHandle;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Creates DocumentRecord instances for tests that do not need MarkLogic.
+ */
+public abstract class TestDocumentRecords {
+
+    public static DocumentRecord newDocumentRecord(String uri, String content) {
+        return newDocumentRecord(uri, Format.XML, "application/xml", content);
+    }
+
+    /**
+     * @return a DocumentRecord whose content can be read via a BytesHandle, StringHandle, or InputStreamHandle
+     */
+    public static DocumentRecord newDocumentRecord(String uri, Format format, String mimetype, String content) {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return (DocumentRecord) Proxy.newProxyInstance(TestDocumentRecords.class.getClassLoader(), new Class[]{DocumentRecord.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getUri":
+                        return uri;
+                    case "getFormat":
+                        return format;
+                    case "getMimetype":
+                        return mimetype;
+                    case "getLength":
+                        return (long) bytes.length;
+                    case "getContent":
+                        if (args[0] instanceof InputStreamHandle) {
+                            ((InputStreamHandle) args[0]).set(new ByteArrayInputStream(bytes));
+                        } else if (args[0] instanceof BytesHandle) {
+                            ((BytesHandle) args[0]).set(bytes);
+                        } else {
+                            ((StringHandle) args[0]).set(content);
+                        }
+                        return args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import com.marklogic.client.ext.datamovement.util.AsyncWriteStage;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.marklogic.client.ext.datamovement.TestDocumentRecords.newDocumentRecord;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteDocumentToFileConsumerTest {
+
+    @Test
+    public void writeFromManyThreads() throws Exception {
+        File baseDir = Files.createTempDirectory("write-document-to-file-test").toFile();
+        WriteDocumentToFileConsumer consumer = new WriteDocumentToFileConsumer(baseDir);
+        consumer.setLogErrors(false);
+        // A small buffer and cache ensure that documents span multiple writes and that the cache is cleared
+        consumer.setBufferSize(16);
+        consumer.setMaxCachedDirectories(3);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 200; i++) {
+            final String uri = "/dir" + (i % 10) + "/nested/" + i + ".xml";
+            executor.execute(() -> consumer.accept(newDocumentRecord(uri, "<test>" + uri + "</test>")));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 200; i++) {
+            String uri = "/dir" + (i % 10) + "/nested/" + i + ".xml";
+            File file = new File(baseDir, uri);
+            assertTrue(file.exists(), "Expected file to exist: " + file);
+            assertEquals("<test>" + uri + "</test>", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void overwriteExistingFile() throws Exception {
+        File baseDir = Files.createTempDirectory("write-document-to-file-test").toFile();
+        WriteDocumentToFileConsumer consumer = new WriteDocumentToFileConsumer(baseDir);
+        consumer.accept(newDocumentRecord("/test.json", "{\"a\":\"a much longer value\"}"));
+        consumer.accept(newDocumentRecord("/test.json", "{\"a\":1}"));
+        assertEquals("{\"a\":1}", new String(Files.readAllBytes(new File(baseDir, "test.json").toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeViaAsyncWriteStage() throws Exception {
+        File baseDir = Files.createTempDirectory("write-document-to-file-test").toFile();
+        WriteDocumentToFileConsumer consumer = new WriteDocumentToFileConsumer(baseDir);
+        consumer.setAsyncWriteStage(new AsyncWriteStage(2, 64));
+        for (int i = 0; i < 50; i++) {
+            consumer.accept(newDocumentRecord("/async/" + i + ".json", "{\"value\":" + i + "}"));
+        }
+        consumer.close();
+
+        for (int i = 0; i < 50; i++) {
+            File file = new File(baseDir, "async/" + i + ".json");
+            assertEquals("{\"value\":" + i + "}", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+}
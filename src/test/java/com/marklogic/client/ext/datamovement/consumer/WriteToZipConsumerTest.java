@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import com.marklogic.client.io.Format;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static com.marklogic.client.ext.datamovement.TestDocumentRecords.newDocumentRecord;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteToZipConsumerTest {
+
+    @Test
+    public void shards() throws Exception {
+        File file = new File(Files.createTempDirectory("write-to-zip-test").toFile(), "export.zip");
+        WriteToZipConsumer consumer = new WriteToZipConsumer(file);
+        consumer.setShardCount(3);
+        writeDocuments(consumer, 100);
+        consumer.close();
+
+        assertFalse(file.exists(), "The single zip file should not be written when shards are used");
+        int entryCount = 0;
+        for (int i = 0; i < 3; i++) {
+            File shardFile = new File(file.getParentFile(), "export-" + i + ".zip");
+            assertEquals(shardFile, consumer.getShardFiles()[i]);
+            try (ZipFile zipFile = new ZipFile(shardFile)) {
+                entryCount += zipFile.size();
+            }
+        }
+        assertEquals(100, entryCount);
+    }
+
+    @Test
+    public void mergeShards() throws Exception {
+        File file = new File(Files.createTempDirectory("write-to-zip-test").toFile(), "export.zip");
+        WriteToZipConsumer consumer = new WriteToZipConsumer(file);
+        consumer.setShardCount(4);
+        consumer.setMergeShards(true);
+        consumer.setUriPrefix("prefix");
+        writeDocuments(consumer, 100);
+        consumer.close();
+
+        for (File shardFile : consumer.getShardFiles()) {
+            assertFalse(shardFile.exists(), "Shards should be deleted after being merged");
+        }
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(100, zipFile.size());
+            assertNotNull(zipFile.getEntry("prefix/test/42.xml"));
+        }
+    }
+
+    @Test
+    public void parallelCompression() throws Exception {
+        File file = new File(Files.createTempDirectory("write-to-zip-test").toFile(), "export.zip");
+        WriteToZipConsumer consumer = new WriteToZipConsumer(file);
+        consumer.setParallelCompression(true);
+        consumer.setFlattenUri(true);
+        writeDocuments(consumer, 100);
+        consumer.close();
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(100, zipFile.size());
+            assertNotNull(zipFile.getEntry("42.xml"));
+        }
+    }
+
+    @Test
+    public void storedEntriesWithParallelCompression() throws Exception {
+        File file = new File(Files.createTempDirectory("write-to-zip-test").toFile(), "export.zip");
+        WriteToZipConsumer consumer = new WriteToZipConsumer(file);
+        consumer.setParallelCompression(true);
+        consumer.setStoredFormats(Format.BINARY);
+        consumer.setStoredMimetypes("image/*");
+        consumer.accept(newDocumentRecord("/test.xml", Format.XML, "application/xml", "<test/><test/><test/><test/>"));
+        consumer.accept(newDocumentRecord("/test.bin", Format.BINARY, "application/octet-stream", "binary"));
+        consumer.accept(newDocumentRecord("/test.png", Format.UNKNOWN, "image/png; charset=binary", "image"));
+        consumer.close();
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("/test.xml").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("/test.bin").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("/test.png").getMethod());
+            assertEquals(6, zipFile.getEntry("/test.bin").getCompressedSize());
+        }
+    }
+
+    @Test
+    public void storedMimetypeWithZipOutputStream() throws Exception {
+        File file = new File(Files.createTempDirectory("write-to-zip-test").toFile(), "export.zip");
+        WriteToZipConsumer consumer = new WriteToZipConsumer(new ZipOutputStream(new FileOutputStream(file)));
+        consumer.setStoredMimetypes(WriteToZipConsumer.COMPRESSED_MIMETYPES);
+        String content = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+        consumer.accept(newDocumentRecord("/test.pdf", Format.BINARY, "application/pdf", content));
+        consumer.accept(newDocumentRecord("/test.txt", Format.TEXT, "text/plain", content));
+        consumer.close();
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertTrue(zipFile.getEntry("/test.pdf").getCompressedSize() >= content.length(),
+                "The PDF should have been written without compression");
+            assertTrue(zipFile.getEntry("/test.txt").getCompressedSize() < content.length(),
+                "The ZipOutputStream should have been restored to the default compression level");
+        }
+    }
+
+    @Test
+    public void compressionLevelIsRestoredAfterStoredEntry() throws Exception {
+        File file = new File(Files.createTempDirectory("write-to-zip-test").toFile(), "export.zip");
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file));
+        zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+        WriteToZipConsumer consumer = new WriteToZipConsumer(zipOutputStream);
+        consumer.setCompressionLevel(Deflater.NO_COMPRESSION);
+        consumer.setStoredMimetypes(WriteToZipConsumer.COMPRESSED_MIMETYPES);
+        String content = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+        consumer.accept(newDocumentRecord("/test.pdf", Format.BINARY, "application/pdf", content));
+        consumer.accept(newDocumentRecord("/test.txt", Format.TEXT, "text/plain", content));
+        consumer.close();
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertTrue(zipFile.getEntry("/test.txt").getCompressedSize() >= content.length(),
+                "The ZipOutputStream should have been restored to the level set by the caller, not the default level");
+        }
+    }
+
+    private void writeDocuments(WriteToZipConsumer consumer, int count) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < count; i++) {
+            final String uri = "/test/" + i + ".xml";
+            executor.execute(() -> consumer.accept(newDocumentRecord(uri, Format.XML, "application/xml", "<test>" + uri + "</test>")));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZipArchiveWriterTest {
+
+    @Test
+    public void deflatedAndStoredEntries() throws IOException {
+        File file = newFile("entries.zip");
+        byte[] content = repeat("<hello>world</hello>", 100);
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(file))) {
+            ZipArchiveWriter.Entry deflated = ZipArchiveWriter.deflate("/test/deflated.xml", content);
+            assertTrue(deflated.getCompressedSize() < deflated.getSize());
+            writer.writeEntry(deflated);
+            writer.writeEntry(ZipArchiveWriter.store("/test/stored.bin", content));
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(2, zipFile.size());
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("/test/deflated.xml").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("/test/stored.bin").getMethod());
+            assertEquals(new String(content, StandardCharsets.UTF_8), read(zipFile.getInputStream(zipFile.getEntry("/test/deflated.xml"))));
+            assertEquals(new String(content, StandardCharsets.UTF_8), read(zipFile.getInputStream(zipFile.getEntry("/test/stored.bin"))));
+        }
+
+        // Verify the local headers as well, which ZipInputStream depends on
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file.toPath()))) {
+            assertEquals("/test/deflated.xml", in.getNextEntry().getName());
+            assertEquals(new String(content, StandardCharsets.UTF_8), read(in));
+            assertEquals("/test/stored.bin", in.getNextEntry().getName());
+            assertEquals(new String(content, StandardCharsets.UTF_8), read(in));
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    public void streamedEntries() throws IOException {
+        File file = newFile("streamed.zip");
+        byte[] content = repeat("<hello>world</hello>", 100);
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(file)) {
+            writer.writeEntry(ZipArchiveWriter.deflate("deflated.xml", new ByteArrayInputStream(content)));
+            writer.writeStoredEntry("stored.bin", new ByteArrayInputStream(content), content.length);
+            writer.writeStoredEntry("unknown-size.bin", new ByteArrayInputStream(content), -1);
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(3, zipFile.size());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("stored.bin").getMethod());
+            assertEquals(content.length, zipFile.getEntry("unknown-size.bin").getSize());
+        }
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file.toPath()))) {
+            for (String name : new String[]{"deflated.xml", "stored.bin", "unknown-size.bin"}) {
+                assertEquals(name, in.getNextEntry().getName());
+                assertEquals(new String(content, StandardCharsets.UTF_8), read(in));
+            }
+        }
+    }
+
+    @Test
+    public void appendEntries() throws IOException {
+        File first = newFile("first.zip");
+        ZipArchiveWriter firstWriter = new ZipArchiveWriter(new FileOutputStream(first));
+        firstWriter.writeEntry(ZipArchiveWriter.deflate("a.txt", "A".getBytes(StandardCharsets.UTF_8)));
+        firstWriter.writeEntry(ZipArchiveWriter.deflate("b.txt", "B".getBytes(StandardCharsets.UTF_8)));
+        firstWriter.close();
+
+        File second = newFile("second.zip");
+        ZipArchiveWriter secondWriter = new ZipArchiveWriter(new FileOutputStream(second));
+        secondWriter.writeEntry(ZipArchiveWriter.deflate("c.txt", "C".getBytes(StandardCharsets.UTF_8)));
+        secondWriter.close();
+
+        File merged = newFile("merged.zip");
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(merged))) {
+            writer.appendEntries(firstWriter, first);
+            writer.appendEntries(secondWriter, second);
+        }
+
+        try (ZipFile zipFile = new ZipFile(merged)) {
+            assertEquals(3, zipFile.size());
+            assertEquals("A", read(zipFile.getInputStream(zipFile.getEntry("a.txt"))));
+            assertEquals("B", read(zipFile.getInputStream(zipFile.getEntry("b.txt"))));
+            assertEquals("C", read(zipFile.getInputStream(zipFile.getEntry("c.txt"))));
+        }
+    }
+
+    @Test
+    public void moreEntriesThanOriginalFormatAllows() throws IOException {
+        File file = newFile("zip64.zip");
+        final int count = 70000;
+        try (ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(file))) {
+            for (int i = 0; i < count; i++) {
+                writer.writeEntry(ZipArchiveWriter.store(i + ".txt", new byte[]{'x'}));
+            }
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(count, zipFile.size());
+            assertEquals("x", read(zipFile.getInputStream(zipFile.getEntry("69999.txt"))));
+        }
+    }
+
+    private File newFile(String name) throws IOException {
+        File dir = Files.createTempDirectory("zip-archive-writer-test").toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, name);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private byte[] repeat(String text, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(text);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -17,6 +17,7 @@ package com.marklogic.client.ext.datamovement.job;
 
 import com.marklogic.client.ext.datamovement.AbstractDataMovementTest;
 import com.marklogic.client.ext.datamovement.UrisQueryQueryBatcherBuilder;
+import com.marklogic.client.ext.datamovement.listener.AddCollectionsListener;
 import com.marklogic.client.ext.datamovement.listener.RemoveCollectionsListener;
 import com.marklogic.client.ext.datamovement.listener.SetCollectionsListener;
 import com.marklogic.client.ext.helper.ClientHelper;
@@ -98,6 +99,48 @@ public class ManageCollectionsTest extends AbstractDataMovementTest {
 		assertUriInCollections(SECOND_URI, COLLECTION, "blue");
 	}
 
+	@Test
+	public void cacheableQuery() {
+		queryBatcherTemplate.applyOnCollections(new SetCollectionsListener(COLLECTION, "red").withCacheableQuery(true), COLLECTION);
+		assertUriInCollections(FIRST_URI, COLLECTION, "red");
+		assertUriInCollections(SECOND_URI, COLLECTION, "red");
+
+		queryBatcherTemplate.applyOnCollections(new AddCollectionsListener("blue", "green").withCacheableQuery(true), COLLECTION);
+		assertUriInCollections(FIRST_URI, COLLECTION, "red", "blue", "green");
+		assertUriInCollections(SECOND_URI, COLLECTION, "red", "blue", "green");
+
+		queryBatcherTemplate.applyOnCollections(new RemoveCollectionsListener("red", "blue").withCacheableQuery(true), COLLECTION);
+		assertUriInCollections(FIRST_URI, COLLECTION, "green");
+		assertUriInCollections(SECOND_URI, COLLECTION, "green");
+	}
+
+	@Test
+	public void documentsMetadataUpdateStrategy() {
+		SetCollectionsJob setJob = new SetCollectionsJob(COLLECTION, "red");
+		setJob.setMetadataUpdateStrategy(MetadataUpdateStrategy.DOCUMENTS);
+		setJob.setWhereCollections(COLLECTION).run(client);
+		assertUriInCollections(FIRST_URI, COLLECTION, "red");
+		assertUriInCollections(SECOND_URI, COLLECTION, "red");
+
+		Properties props = new Properties();
+		props.setProperty("collections", "blue,green");
+		props.setProperty("whereCollections", COLLECTION);
+		props.setProperty("metadataUpdateStrategy", "documents");
+		AddCollectionsJob addJob = new AddCollectionsJob();
+		List<String> messages = addJob.configureJob(props);
+		assertTrue(messages.isEmpty(), "Should not have any validation messages: " + messages);
+		assertEquals(MetadataUpdateStrategy.DOCUMENTS, addJob.getMetadataUpdateStrategy());
+		addJob.run(client);
+		assertUriInCollections(FIRST_URI, COLLECTION, "red", "blue", "green");
+		assertUriInCollections(SECOND_URI, COLLECTION, "red", "blue", "green");
+
+		RemoveCollectionsJob removeJob = new RemoveCollectionsJob("red", "blue");
+		removeJob.setMetadataUpdateStrategy(MetadataUpdateStrategy.DOCUMENTS);
+		removeJob.setWhereCollections(COLLECTION).run(client);
+		assertUriInCollections(FIRST_URI, COLLECTION, "green");
+		assertUriInCollections(SECOND_URI, COLLECTION, "green");
+	}
+
 	private void assertUriInCollections(String uri, String... collections) {
 		ClientHelper clientHelper = new ClientHelper(client);
 		List<String> list = clientHelper.getCollections(uri);
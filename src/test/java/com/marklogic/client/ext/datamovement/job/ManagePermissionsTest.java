@@ -20,6 +20,9 @@ import com.marklogic.client.document.DocumentWriteOperation;
 import com.marklogic.client.ext.batch.RestBatchWriter;
 import com.marklogic.client.ext.datamovement.AbstractDataMovementTest;
 import com.marklogic.client.ext.datamovement.QueryBatcherTemplate;
+import com.marklogic.client.ext.datamovement.listener.AddPermissionsListener;
+import com.marklogic.client.ext.datamovement.listener.RemovePermissionsListener;
+import com.marklogic.client.ext.datamovement.listener.SetPermissionsListener;
 import com.marklogic.client.ext.helper.ClientHelper;
 import com.marklogic.client.impl.DocumentWriteOperationImpl;
 import com.marklogic.client.io.DocumentMetadataHandle;
@@ -89,4 +92,76 @@ public class ManagePermissionsTest extends AbstractDataMovementTest {
         assertTrue(perms.get("alert-user").contains(DocumentMetadataHandle.Capability.READ));
         assertTrue(perms.get("alert-user").contains(DocumentMetadataHandle.Capability.UPDATE));
     }
+
+    @Test
+    public void cacheableQuery() {
+        final String uri = "/test/manage-permissions-cacheable-test.xml";
+
+        QueryBatcherTemplate qbt = new QueryBatcherTemplate(newClient("Documents"));
+        qbt.applyOnDocumentUris(new DeleteListener(), uri);
+
+        RestBatchWriter writer = new RestBatchWriter(client, false);
+        DocumentMetadataHandle metadata = new DocumentMetadataHandle();
+        metadata.getPermissions().add("app-user", DocumentMetadataHandle.Capability.READ, DocumentMetadataHandle.Capability.UPDATE);
+        writer.write(Arrays.asList(
+                new DocumentWriteOperationImpl(DocumentWriteOperation.OperationType.DOCUMENT_WRITE, uri, metadata, new StringHandle("<one/>").withFormat(Format.XML))
+        ));
+        writer.waitForCompletion();
+
+        ClientHelper helper = new ClientHelper(client);
+
+        qbt.applyOnDocumentUris(new SetPermissionsListener("alert-user", "read", "alert-user", "update").withCacheableQuery(true), uri);
+        DocumentMetadataHandle.DocumentPermissions perms = helper.getMetadata(uri).getPermissions();
+        assertEquals(1, perms.size());
+        assertEquals(2, perms.get("alert-user").size());
+
+        qbt.applyOnDocumentUris(new AddPermissionsListener("app-user", "read").withCacheableQuery(true), uri);
+        perms = helper.getMetadata(uri).getPermissions();
+        assertEquals(2, perms.size());
+        assertEquals(1, perms.get("app-user").size());
+        assertTrue(perms.get("app-user").contains(DocumentMetadataHandle.Capability.READ));
+
+        qbt.applyOnDocumentUris(new RemovePermissionsListener("app-user", "read").withCacheableQuery(true), uri);
+        perms = helper.getMetadata(uri).getPermissions();
+        assertEquals(1, perms.size());
+        assertEquals(2, perms.get("alert-user").size());
+    }
+
+    @Test
+    public void patchCollectionsAndPermissionsTogether() {
+        final String uri = "/test/manage-permissions-patch-test.xml";
+
+        QueryBatcherTemplate qbt = new QueryBatcherTemplate(newClient("Documents"));
+        qbt.applyOnDocumentUris(new DeleteListener(), uri);
+
+        RestBatchWriter writer = new RestBatchWriter(client, false);
+        DocumentMetadataHandle metadata = new DocumentMetadataHandle();
+        metadata.getCollections().add("red");
+        metadata.getPermissions().add("app-user", DocumentMetadataHandle.Capability.READ, DocumentMetadataHandle.Capability.UPDATE);
+        writer.write(Arrays.asList(
+                new DocumentWriteOperationImpl(DocumentWriteOperation.OperationType.DOCUMENT_WRITE, uri, metadata, new StringHandle("<one/>").withFormat(Format.XML))
+        ));
+        writer.waitForCompletion();
+
+        new PatchMetadataJob()
+                .addCollections("blue", "green")
+                .removeCollections("red")
+                .addPermissions("alert-user", "read")
+                .removePermissions("app-user", "update")
+                .addMetadataValues("status", "patched")
+                .setWhereUris(uri).run(client);
+
+        DocumentMetadataHandle patched = new ClientHelper(client).getMetadata(uri);
+        assertEquals(2, patched.getCollections().size());
+        assertTrue(patched.getCollections().contains("blue"));
+        assertTrue(patched.getCollections().contains("green"));
+
+        DocumentMetadataHandle.DocumentPermissions perms = patched.getPermissions();
+        assertEquals(1, perms.get("app-user").size());
+        assertTrue(perms.get("app-user").contains(DocumentMetadataHandle.Capability.READ));
+        assertEquals(1, perms.get("alert-user").size());
+        assertTrue(perms.get("alert-user").contains(DocumentMetadataHandle.Capability.READ));
+
+        assertEquals("patched", patched.getMetadataValues().get("status"));
+    }
 }
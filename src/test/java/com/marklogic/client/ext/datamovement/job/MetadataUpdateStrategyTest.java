@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.ext.datamovement.listener.AddPermissionsListener;
+import com.marklogic.client.ext.datamovement.listener.BulkPatchMetadataListener;
+import com.marklogic.client.ext.datamovement.listener.PatchMetadataListener;
+import com.marklogic.client.ext.datamovement.listener.SetCollectionsListener;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetadataUpdateStrategyTest {
+
+    @Test
+    public void evalIsTheDefault() {
+        AddPermissionsJob job = new AddPermissionsJob("rest-reader", "read");
+        assertEquals(MetadataUpdateStrategy.EVAL, job.getMetadataUpdateStrategy());
+        assertEquals(1, job.getUrisReadyListeners().size());
+        assertTrue(job.getUrisReadyListeners().get(0) instanceof AddPermissionsListener);
+    }
+
+    @Test
+    public void changingStrategyReplacesListener() {
+        AddPermissionsJob job = new AddPermissionsJob("rest-reader", "read");
+        job.setMetadataUpdateStrategy(MetadataUpdateStrategy.DOCUMENTS);
+        assertEquals(1, job.getUrisReadyListeners().size());
+        assertTrue(job.getUrisReadyListeners().get(0) instanceof BulkPatchMetadataListener);
+
+        job.setRolesAndCapabilities("rest-writer", "update");
+        assertEquals(1, job.getUrisReadyListeners().size(), "Changing the permissions should replace the listener too");
+    }
+
+    @Test
+    public void patchMetadataJob() {
+        PatchMetadataJob job = new PatchMetadataJob().addCollections("red").removePermissions("rest-reader", "read");
+        assertEquals(1, job.getUrisReadyListeners().size());
+        assertTrue(job.getUrisReadyListeners().get(0) instanceof PatchMetadataListener);
+
+        job.setMetadataUpdateStrategy(MetadataUpdateStrategy.DOCUMENTS);
+        assertEquals(1, job.getUrisReadyListeners().size());
+        assertTrue(job.getUrisReadyListeners().get(0) instanceof BulkPatchMetadataListener);
+    }
+
+    @Test
+    public void cacheableCollectionsQuery() {
+        Properties props = new Properties();
+        props.setProperty("collections", "red");
+        props.setProperty("whereCollections", "blue");
+        props.setProperty("cacheableQuery", "true");
+        SetCollectionsJob job = new SetCollectionsJob();
+        assertTrue(job.configureJob(props).isEmpty());
+        assertEquals(1, job.getUrisReadyListeners().size());
+        assertTrue(((SetCollectionsListener) job.getUrisReadyListeners().get(0)).isCacheableQuery());
+    }
+
+    @Test
+    public void cacheablePermissionsQuery() {
+        AddPermissionsJob job = new AddPermissionsJob("rest-reader", "read");
+        job.setCacheableQuery(true);
+        assertEquals(1, job.getUrisReadyListeners().size());
+        assertTrue(((AddPermissionsListener) job.getUrisReadyListeners().get(0)).isCacheableQuery(),
+            "Setting cacheableQuery after the permissions should replace the listener");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PipelineJobTest {
+
+    private List<String> calls = new ArrayList<>();
+    private List<QueryBatchListener> registeredListeners = new ArrayList<>();
+
+    @Test
+    public void stepsRunInOrderOnEachBatch() {
+        SimpleQueryBatcherJob first = new SimpleQueryBatcherJob(batch -> calls.add("first"));
+        first.setBatchSize(5);
+        first.setConsistentSnapshot(false);
+        first.setMaxBatchesPerSecond(1.0);
+        SimpleQueryBatcherJob second = new SimpleQueryBatcherJob(batch -> calls.add("second"), batch -> calls.add("third"));
+
+        PipelineJob pipeline = new PipelineJob(first, second);
+        pipeline.addUrisReadyListener(batch -> calls.add("own"));
+        pipeline.setBatchSize(50);
+        pipeline.setCollectMetrics(false);
+        pipeline.prepareQueryBatcher(newQueryBatcher());
+
+        assertEquals(Arrays.asList("withBatchSize 50", "withThreadCount 8", "withConsistentSnapshot"), calls,
+            "Only the batcher settings of the pipeline should be applied");
+        calls.clear();
+
+        assertEquals(4, registeredListeners.size(), "The rate limit of a step should not be applied");
+        registeredListeners.forEach(listener -> listener.processEvent(null));
+        assertEquals(Arrays.asList("first", "second", "third", "own"), calls);
+        assertEquals(1, pipeline.getUrisReadyListeners().size(), "The pipeline's own listeners should be restored");
+    }
+
+    @Test
+    public void stepsOnlyFinishTheirOutput() {
+        SimpleQueryBatcherJob step = new SimpleQueryBatcherJob(batch -> calls.add("step")) {
+            @Override
+            protected void finishOutput(QueryBatcherJobTicket ticket) {
+                calls.add("finishOutput");
+            }
+        };
+
+        PipelineJob pipeline = new PipelineJob(step);
+        pipeline.setStopJobAfterCompletion(false);
+        pipeline.finishJob(new QueryBatcherJobTicket(null, newQueryBatcher(), null));
+
+        assertEquals(Arrays.asList("finishOutput"), calls);
+    }
+
+    @Test
+    public void noSteps() {
+        assertThrows(IllegalStateException.class, () -> new PipelineJob().prepareQueryBatcher(newQueryBatcher()));
+    }
+
+    private QueryBatcher newQueryBatcher() {
+        return (QueryBatcher) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{QueryBatcher.class},
+            (proxy, method, args) -> {
+                String name = method.getName();
+                if ("onUrisReady".equals(name)) {
+                    registeredListeners.add((QueryBatchListener) args[0]);
+                } else if (name.startsWith("with")) {
+                    calls.add(args != null ? name + " " + args[0] : name);
+                }
+                return method.getReturnType().isInstance(proxy) ? proxy : null;
+            });
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.job;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryBatcherJobSchedulerTest {
+
+    private List<String> startedJobs = new ArrayList<>();
+
+    @Test
+    public void priorityAndThreadBudget() {
+        // Each job uses the default of 8 threads, so two jobs can run at once
+        QueryBatcherJobScheduler scheduler = new QueryBatcherJobScheduler(null, null, 16);
+        FakeJob a = new FakeJob("a");
+        FakeJob b = new FakeJob("b");
+        FakeJob c = new FakeJob("c");
+        FakeJob d = new FakeJob("d");
+
+        scheduler.submit(a);
+        scheduler.submit(b);
+        CompletableFuture<QueryBatcherJobTicket> futureC = scheduler.submit(c, 0);
+        CompletableFuture<QueryBatcherJobTicket> futureD = scheduler.submit(d, 10);
+        assertEquals(Arrays.asList("a", "b"), startedJobs);
+        assertEquals(2, scheduler.getPendingJobCount());
+        assertEquals(0, scheduler.getAvailableThreadCount());
+
+        a.future.complete(null);
+        assertEquals(Arrays.asList("a", "b", "d"), startedJobs, "d has a higher priority than c, so it should start first");
+
+        b.future.complete(null);
+        d.future.complete(null);
+        assertEquals(Arrays.asList("a", "b", "d", "c"), startedJobs);
+        assertTrue(futureD.isDone());
+        assertFalse(futureC.isDone());
+
+        c.future.complete(null);
+        scheduler.awaitCompletion();
+        assertEquals(16, scheduler.getAvailableThreadCount());
+        assertEquals(0, scheduler.getRunningJobCount());
+    }
+
+    @Test
+    public void jobLargerThanBudget() {
+        QueryBatcherJobScheduler scheduler = new QueryBatcherJobScheduler(null, null, 4).setMaxInFlightBatches(2);
+        FakeAbstractJob job = new FakeAbstractJob();
+        job.setThreadCount(32);
+
+        scheduler.submit(job);
+        assertEquals(4, job.getThreadCount().intValue(), "The job's thread count should be reduced to the max");
+        assertNotNull(job.getAdaptiveThreadCountController(), "The job should share the in-flight batch controller");
+        assertEquals(0, scheduler.getAvailableThreadCount());
+        job.future.complete(null);
+        assertEquals(4, scheduler.getAvailableThreadCount());
+        assertEquals(32, job.getThreadCount().intValue(), "The job's own thread count should be restored after the run");
+        assertNull(job.getAdaptiveThreadCountController(), "The shared controller should only apply to the scheduled run");
+    }
+
+    @Test
+    public void failedJob() {
+        QueryBatcherJobScheduler scheduler = new QueryBatcherJobScheduler(null, null, 8);
+        FakeJob a = new FakeJob("a");
+        FakeJob b = new FakeJob("b");
+        CompletableFuture<QueryBatcherJobTicket> futureA = scheduler.submit(a);
+        scheduler.submit(b);
+
+        a.future.completeExceptionally(new RuntimeException("Expected failure"));
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> futureA.get());
+        assertEquals("Expected failure", ex.getCause().getMessage());
+        assertEquals(Arrays.asList("a", "b"), startedJobs, "The next job should start after a job fails");
+    }
+
+    @Test
+    public void closeCancelsPendingJobs() {
+        QueryBatcherJobScheduler scheduler = new QueryBatcherJobScheduler(null, null, 8);
+        scheduler.submit(new FakeJob("a"));
+        CompletableFuture<QueryBatcherJobTicket> futureB = scheduler.submit(new FakeJob("b"));
+        scheduler.close();
+        assertTrue(futureB.isCancelled());
+        assertEquals(Arrays.asList("a"), startedJobs);
+    }
+
+    @Test
+    public void closeDoesNotReleaseCallersDataMovementManager() {
+        List<String> calls = new ArrayList<>();
+        DataMovementManager dmm = (DataMovementManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[]{DataMovementManager.class}, (proxy, method, args) -> {
+                calls.add(method.getName());
+                return null;
+            });
+        new QueryBatcherJobScheduler(null, dmm, 8).close();
+        assertFalse(calls.contains("release"), "The caller owns the DataMovementManager, so the scheduler should not release it");
+    }
+
+    private class FakeJob implements QueryBatcherJob {
+
+        private final String name;
+        private final CompletableFuture<QueryBatcherJobTicket> future = new CompletableFuture<>();
+
+        FakeJob(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public QueryBatcherJobTicket run(DatabaseClient databaseClient) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<QueryBatcherJobTicket> runAsync(DatabaseClient databaseClient) {
+            startedJobs.add(name);
+            return future;
+        }
+    }
+
+    private static class FakeAbstractJob extends AbstractQueryBatcherJob {
+
+        private final CompletableFuture<QueryBatcherJobTicket> future = new CompletableFuture<>();
+
+        @Override
+        public CompletableFuture<QueryBatcherJobTicket> runAsync(DatabaseClient databaseClient) {
+            return future;
+        }
+
+        @Override
+        protected String getJobDescription() {
+            return null;
+        }
+    }
+}
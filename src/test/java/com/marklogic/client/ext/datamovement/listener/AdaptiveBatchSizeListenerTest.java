@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatch;
+import com.marklogic.client.ext.datamovement.AdaptiveBatchSizeController;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveBatchSizeListenerTest {
+
+    private List<List<String>> processedBatches = new ArrayList<>();
+
+    @Test
+    public void splitsBatch() {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(2, 2, 1000);
+        new AdaptiveBatchSizeListener(batch -> {
+            assertEquals(7L, batch.getJobBatchNumber(), "Sub-batches should delegate to the original batch");
+            processedBatches.add(Arrays.asList(batch.getItems()));
+        }, controller).processEvent(newQueryBatch("a", "b", "c", "d", "e"));
+
+        assertEquals(3, processedBatches.size());
+        assertEquals(Arrays.asList("a", "b"), processedBatches.get(0));
+        assertEquals(Arrays.asList("c", "d"), processedBatches.get(1));
+        assertEquals(Arrays.asList("e"), processedBatches.get(2));
+    }
+
+    @Test
+    public void failureShrinksBatchAndIsRethrown() {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController(1, 4, 1000);
+        AdaptiveBatchSizeListener listener = new AdaptiveBatchSizeListener(batch -> {
+            processedBatches.add(Arrays.asList(batch.getItems()));
+            if (processedBatches.size() == 1) {
+                throw new RuntimeException("First batch failed");
+            }
+        }, controller);
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> listener.processEvent(newQueryBatch("a", "b", "c", "d", "e", "f")));
+        assertEquals("First batch failed", ex.getMessage());
+        assertEquals(Arrays.asList("a", "b", "c", "d"), processedBatches.get(0));
+        assertEquals(Arrays.asList("e", "f"), processedBatches.get(1),
+                "The remaining items should still be processed, with the batch size halved after the failure");
+    }
+
+    private QueryBatch newQueryBatch(String... items) {
+        return (QueryBatch) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{QueryBatch.class},
+                (proxy, method, args) -> {
+                    if ("getItems".equals(method.getName())) {
+                        return items;
+                    } else if ("getJobBatchNumber".equals(method.getName())) {
+                        return 7L;
+                    }
+                    return null;
+                });
+    }
+}
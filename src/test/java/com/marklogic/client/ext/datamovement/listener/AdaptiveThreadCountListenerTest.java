@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.AdaptiveThreadCountController;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.marklogic.client.ext.datamovement.BatchCheckpointTest.newQueryBatch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveThreadCountListenerTest {
+
+    @Test
+    public void permitIsAcquiredOncePerBatch() throws Exception {
+        AtomicInteger acquireCount = new AtomicInteger();
+        List<Throwable> failures = new ArrayList<>();
+        AdaptiveThreadCountController controller = new AdaptiveThreadCountController(1, 4) {
+            @Override
+            public void acquire() throws InterruptedException {
+                acquireCount.incrementAndGet();
+                super.acquire();
+            }
+
+            @Override
+            public synchronized void recordFailure(Throwable failure) {
+                failures.add(failure);
+                super.recordFailure(failure);
+            }
+        };
+
+        List<String> processed = new ArrayList<>();
+        QueryBatchListener recorder = batch -> processed.addAll(Arrays.asList(batch.getItems()));
+        QueryBatchListener failOnB = batch -> {
+            if (Arrays.asList(batch.getItems()).contains("b")) {
+                throw new RuntimeException("Expected failure");
+            }
+        };
+        AdaptiveThreadCountListener listener = new AdaptiveThreadCountListener(Arrays.asList(failOnB, recorder, recorder), controller);
+
+        listener.processEvent(newQueryBatch(1, "a"));
+        assertThrows(RuntimeException.class, () -> listener.processEvent(newQueryBatch(2, "b")));
+
+        assertEquals(2, acquireCount.get(), "A permit should be acquired once per batch, not once per listener");
+        assertEquals(Arrays.asList("a", "a", "b", "b"), processed, "A failing listener should not stop the others from being called");
+        assertEquals(1, failures.size());
+    }
+}
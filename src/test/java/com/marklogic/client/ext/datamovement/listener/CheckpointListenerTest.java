@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import com.marklogic.client.datamovement.QueryBatchListener;
+import com.marklogic.client.ext.datamovement.BatchCheckpoint;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.marklogic.client.ext.datamovement.BatchCheckpointTest.newQueryBatch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointListenerTest {
+
+    @Test
+    public void failedBatchesAreProcessedAgain() throws Exception {
+        File file = new File(Files.createTempDirectory("checkpoint-listener-test").toFile(), "checkpoint.txt");
+        BatchCheckpoint checkpoint = new BatchCheckpoint(file);
+        List<String> processed = new ArrayList<>();
+        QueryBatchListener recorder = batch -> processed.addAll(Arrays.asList(batch.getItems()));
+        QueryBatchListener failOnB = batch -> {
+            if (Arrays.asList(batch.getItems()).contains("b")) {
+                throw new RuntimeException("Expected failure");
+            }
+        };
+        QueryBatchListener markC = batch -> {
+            if (Arrays.asList(batch.getItems()).contains("c")) {
+                checkpoint.markBatchFailed(batch);
+            }
+        };
+
+        CheckpointListener listener = new CheckpointListener(checkpoint, Arrays.asList(failOnB, recorder, markC));
+        listener.processEvent(newQueryBatch(1, "a1", "a2"));
+        final CheckpointListener firstRun = listener;
+        assertThrows(RuntimeException.class, () -> firstRun.processEvent(newQueryBatch(2, "b")));
+        listener.processEvent(newQueryBatch(3, "c"));
+        checkpoint.close();
+
+        assertEquals(Arrays.asList("a1", "a2", "b", "c"), processed, "A failing listener should not stop the others from being called");
+        assertEquals(1, checkpoint.getCompletedBatchCount());
+        assertEquals(2, checkpoint.getFailedBatchCount());
+        assertTrue(checkpoint.hasFailures());
+
+        BatchCheckpoint secondRun = new BatchCheckpoint(file);
+        processed.clear();
+        listener = new CheckpointListener(secondRun, Arrays.asList(recorder));
+        listener.processEvent(newQueryBatch(1, "a1", "b"));
+        listener.processEvent(newQueryBatch(2, "a2"));
+        listener.processEvent(newQueryBatch(3, "c", "d"));
+        secondRun.close();
+
+        assertEquals(Arrays.asList("b", "c", "d"), processed, "Only the URIs not completed by the first run should be processed");
+        assertEquals(2, secondRun.getSkippedUriCount());
+        assertEquals(2, secondRun.getCompletedBatchCount());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.listener;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PatchMetadataListenerTest {
+
+    @Test
+    public void singleChangeUsesSameFunctionAsDedicatedListener() {
+        String query = new PatchMetadataListener().addCollections("red").buildQuery();
+        assertTrue(query.contains("xdmp:document-add-collections($uri, $collectionsToAdd)"));
+        assertTrue(query.contains("declare variable $addCollections as xs:string external;"));
+        assertFalse(query.contains("$setCollections"));
+        assertFalse(query.contains("local:permissions"), "Permission functions aren't needed when permissions aren't changed");
+    }
+
+    @Test
+    public void combinedChangesAreSetOncePerProperty() {
+        String query = new PatchMetadataListener()
+            .setCollections("red")
+            .removeCollections("blue")
+            .addPermissions("rest-reader", "read")
+            .removePermissions("rest-writer", "update")
+            .addMetadataValues("status", "new")
+            .removeMetadataKeys("old")
+            .buildQuery();
+
+        assertTrue(query.contains("xdmp:document-set-collections($uri, fn:distinct-values(($collectionsToSet)[fn:not(. = $collectionsToRemove)]))"));
+        assertTrue(query.contains("local:distinct-permissions((xdmp:document-get-permissions($uri), $permissionsToAdd)" +
+            "[fn:not(local:permission-key(.) = $permissionKeysToRemove)])"));
+        assertTrue(query.contains("for $source in (xdmp:document-get-metadata($uri), $metadataToAdd)"));
+        assertTrue(query.contains("map:delete($metadata, $key)"));
+        assertFalse(query.contains("xdmp:document-add-collections"));
+        assertFalse(query.contains("xdmp:document-remove-permissions"));
+    }
+
+    @Test
+    public void noChanges() {
+        assertThrows(IllegalStateException.class, () -> new PatchMetadataListener().buildQuery());
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.marklogic.client.ext.datamovement.listener;
 
+import com.marklogic.client.io.Format;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
@@ -22,6 +23,7 @@ import org.w3c.dom.Document;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
 
+import static com.marklogic.client.ext.datamovement.TestDocumentRecords.newDocumentRecord;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class XmlOutputListenerTest {
@@ -48,4 +50,32 @@ public class XmlOutputListenerTest {
         String xml = sut.convertDocumentToString(document);
         assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><test>test</test>", xml);
     }
+
+    @Test
+    public void generateOutputForXml() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<test><empty></empty></test>";
+        assertEquals("<test><empty></empty></test>",
+            sut.generateOutput(newDocumentRecord("/test.xml", Format.XML, "application/xml", xml)),
+            "The XML declaration should be removed without otherwise changing the document");
+
+        sut.setOmitXmlDeclaration(false);
+        assertEquals(xml, sut.generateOutput(newDocumentRecord("/test.xml", Format.XML, "application/xml", xml)));
+    }
+
+    @Test
+    public void generateOutputForJson() {
+        String json = "{\"xml\":\"<?xml version='1.0'?>\"}";
+        assertEquals(json, sut.generateOutput(newDocumentRecord("/test.json", Format.JSON, "application/json", json)));
+    }
+
+    @Test
+    public void removeXmlDeclaration() {
+        assertEquals("<test/>", XmlOutputListener.removeXmlDeclaration("<?xml version=\"1.0\"?><test/>"));
+        assertEquals("<test/>", XmlOutputListener.removeXmlDeclaration("\uFEFF<?xml version='1.0' encoding='UTF-8'?>\r\n<test/>"));
+        assertEquals("<test/>", XmlOutputListener.removeXmlDeclaration("<test/>"));
+        assertEquals("<?xml-stylesheet href=\"a.xsl\"?><test/>",
+            XmlOutputListener.removeXmlDeclaration("<?xml-stylesheet href=\"a.xsl\"?><test/>"));
+        assertEquals("<?xml version=\"1.0\"", XmlOutputListener.removeXmlDeclaration("<?xml version=\"1.0\""));
+        assertEquals("", XmlOutputListener.removeXmlDeclaration(""));
+    }
 }
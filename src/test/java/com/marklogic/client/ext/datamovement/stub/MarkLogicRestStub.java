@@ -0,0 +1,584 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the parts of the MarkLogic REST API that DMSDK and the jobs in this project depend on, so
+ * that jobs can be run end-to-end - e.g. for measuring throughput - without a MarkLogic server. Documents are held in
+ * memory and are assigned to forests based on the hash of their URI.
+ * <p>
+ * The following endpoints are supported:
+ * <ul>
+ * <li>GET /v1/internal/forestinfo - lists the stub's forests, all on the stub's host</li>
+ * <li>/v1/internal/uris - returns URIs matching the collection-query, document-query, or directory-query in the
+ * request body, or all URIs if none of those is present; supports the forest-name, after, start, and pageLength
+ * parameters</li>
+ * <li>/v1/documents - bulk read of the documents identified by "uri" parameters, as a multipart response</li>
+ * <li>/v1/eval - handles cts:uri-match and xdmp.effectiveVersion; every other query is counted and returns an empty
+ * result unless an eval handler has been set</li>
+ * </ul>
+ * Latency and failures can be injected per endpoint. A failure is returned as a MarkLogic-style JSON error with a
+ * status code of 503 by default.
+ */
+public class MarkLogicRestStub implements Closeable {
+
+    public enum Endpoint {
+        FOREST_INFO, URIS, DOCUMENTS, EVAL
+    }
+
+    /**
+     * Reported by xdmp.effectiveVersion; this is before 10.0-5 so that DMSDK reads URIs via /v1/internal/uris without
+     * first asking the server to preprocess the query.
+     */
+    public final static String DEFAULT_EFFECTIVE_VERSION = "10000400";
+
+    private final static String BOUNDARY = "ML_STUB_BOUNDARY";
+    private final static Pattern QUERY_PATTERN = Pattern.compile("<(?:\\w+:)?(collection|document|directory)-query\\b.*?>(.*?)</(?:\\w+:)?\\1-query>", Pattern.DOTALL);
+    private final static Pattern URI_PATTERN = Pattern.compile("<(?:\\w+:)?uri>(.*?)</(?:\\w+:)?uri>", Pattern.DOTALL);
+    private final static Pattern URI_MATCH_LITERAL = Pattern.compile("cts:uri-match\\('([^']*)'\\)");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentSkipListMap<String, StubDocument> documents = new ConcurrentSkipListMap<>();
+    private final Map<Endpoint, Long> latencies = Collections.synchronizedMap(new EnumMap<>(Endpoint.class));
+    private final Map<Endpoint, Double> failureRates = Collections.synchronizedMap(new EnumMap<>(Endpoint.class));
+    private final Map<Endpoint, AtomicLong> requestCounts = new EnumMap<>(Endpoint.class);
+    private final AtomicLong failureCount = new AtomicLong();
+
+    private String host = "localhost";
+    private String database = "Documents";
+    private int forestCount = 3;
+    private int failureStatusCode = 503;
+    private Function<EvalRequest, List<String>> evalHandler;
+
+    private HttpServer server;
+    private ExecutorService executorService;
+
+    public MarkLogicRestStub() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            requestCounts.put(endpoint, new AtomicLong());
+        }
+    }
+
+    /**
+     * Starts the stub on an available port, which can then be obtained via getPort.
+     *
+     * @return
+     */
+    public MarkLogicRestStub start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(host), 0), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to start MarkLogic REST stub; cause: " + e.getMessage(), e);
+        }
+        executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "marklogic-rest-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executorService);
+        server.createContext("/v1/internal/forestinfo", exchange -> handle(exchange, Endpoint.FOREST_INFO));
+        server.createContext("/v1/internal/uris", exchange -> handle(exchange, Endpoint.URIS));
+        server.createContext("/v1/documents", exchange -> handle(exchange, Endpoint.DOCUMENTS));
+        server.createContext("/v1/eval", exchange -> handle(exchange, Endpoint.EVAL));
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executorService.shutdownNow();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public MarkLogicRestStub addDocument(String uri, String content, String... collections) {
+        documents.put(uri, new StubDocument(content, collections));
+        return this;
+    }
+
+    /**
+     * Convenience method for adding the given number of small XML documents, each in the given collections.
+     *
+     * @param count
+     * @param uriPrefix
+     * @param collections
+     * @return
+     */
+    public MarkLogicRestStub addDocuments(int count, String uriPrefix, String... collections) {
+        for (int i = 0; i < count; i++) {
+            String uri = uriPrefix + i + ".xml";
+            addDocument(uri, "<test>" + uri + "</test>", collections);
+        }
+        return this;
+    }
+
+    public int getDocumentCount() {
+        return documents.size();
+    }
+
+    public long getRequestCount(Endpoint endpoint) {
+        return requestCounts.get(endpoint).get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @param endpoint
+     * @param millis   the time to wait before handling each request to the given endpoint
+     * @return
+     */
+    public MarkLogicRestStub withLatency(Endpoint endpoint, long millis) {
+        latencies.put(endpoint, millis);
+        return this;
+    }
+
+    /**
+     * @param endpoint
+     * @param rate     the fraction of requests to the given endpoint, between 0 and 1, that fail
+     * @return
+     */
+    public MarkLogicRestStub withFailureRate(Endpoint endpoint, double rate) {
+        failureRates.put(endpoint, rate);
+        return this;
+    }
+
+    public MarkLogicRestStub withFailureStatusCode(int failureStatusCode) {
+        this.failureStatusCode = failureStatusCode;
+        return this;
+    }
+
+    public MarkLogicRestStub withForestCount(int forestCount) {
+        this.forestCount = forestCount;
+        return this;
+    }
+
+    public MarkLogicRestStub withHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    /**
+     * @param evalHandler handles every eval request that the stub does not handle itself; returns the strings to
+     *                    return as the result of the eval
+     * @return
+     */
+    public MarkLogicRestStub withEvalHandler(Function<EvalRequest, List<String>> evalHandler) {
+        this.evalHandler = evalHandler;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        requestCounts.get(endpoint).incrementAndGet();
+        try {
+            Map<String, List<String>> params = parseParameters(exchange.getRequestURI().getRawQuery());
+            byte[] body = readBody(exchange.getRequestBody());
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                params.putAll(parseParameters(new String(body, StandardCharsets.UTF_8)));
+            }
+
+            Long latency = latencies.get(endpoint);
+            if (latency != null && latency > 0) {
+                Thread.sleep(latency);
+            }
+            Double failureRate = failureRates.get(endpoint);
+            if (failureRate != null && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failureCount.incrementAndGet();
+                sendError(exchange, failureStatusCode, "Injected failure for endpoint: " + endpoint);
+                return;
+            }
+
+            switch (endpoint) {
+                case FOREST_INFO:
+                    handleForestInfo(exchange);
+                    break;
+                case URIS:
+                    handleUris(exchange, params, new String(body, StandardCharsets.UTF_8));
+                    break;
+                case DOCUMENTS:
+                    handleDocuments(exchange, params);
+                    break;
+                default:
+                    handleEval(exchange, params);
+            }
+        } catch (Exception e) {
+            sendError(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleForestInfo(HttpExchange exchange) throws IOException {
+        List<Map<String, String>> forests = new ArrayList<>();
+        for (int i = 0; i < forestCount; i++) {
+            Map<String, String> forest = new LinkedHashMap<>();
+            forest.put("id", getForestId(i));
+            forest.put("name", getForestName(i));
+            forest.put("database", database);
+            forest.put("host", host);
+            forest.put("requestHost", host);
+            forest.put("preferredHost", host);
+            forest.put("preferredHostType", "REQUEST_HOST");
+            forest.put("updatesAllowed", "all");
+            forests.add(forest);
+        }
+        send(exchange, 200, "application/json", objectMapper.writeValueAsBytes(forests));
+    }
+
+    private void handleUris(HttpExchange exchange, Map<String, List<String>> params, String query) throws IOException {
+        final Integer forestIndex = params.containsKey("forest-name") ? getForestIndex(getFirst(params, "forest-name")) : null;
+        final String after = getFirst(params, "after");
+        final long start = params.containsKey("start") ? Long.parseLong(getFirst(params, "start")) : 1;
+        final long pageLength = params.containsKey("pageLength") ? Long.parseLong(getFirst(params, "pageLength")) : Long.MAX_VALUE;
+
+        Map<String, Set<String>> criteria = parseQueryCriteria(query);
+        Map<String, StubDocument> candidates = after != null ? documents.tailMap(after, false) : documents;
+
+        StringBuilder uris = new StringBuilder();
+        long position = 0;
+        long count = 0;
+        for (Map.Entry<String, StubDocument> entry : candidates.entrySet()) {
+            String uri = entry.getKey();
+            if ((forestIndex == null || forestIndex == getForestIndexForUri(uri)) && matches(uri, entry.getValue(), criteria)) {
+                position++;
+                if (position >= start) {
+                    uris.append(uri).append("\n");
+                    if (++count >= pageLength) {
+                        break;
+                    }
+                }
+            }
+        }
+        exchange.getResponseHeaders().add("ML-Effective-Timestamp", String.valueOf(System.currentTimeMillis() * 10000));
+        send(exchange, 200, "text/uri-list", uris.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleDocuments(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        List<String> uris = params.containsKey("uri") ? params.get("uri") : Collections.emptyList();
+        List<String> categories = params.containsKey("category") ? params.get("category") : Arrays.asList("content");
+        boolean withContent = categories.contains("content");
+        boolean withMetadata = categories.size() > (withContent ? 1 : 0);
+        boolean jsonMetadata = "json".equals(getFirst(params, "format"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String uri : uris) {
+            StubDocument doc = documents.get(uri);
+            if (doc == null) {
+                continue;
+            }
+            if (withMetadata) {
+                String format = jsonMetadata ? "json" : "xml";
+                writePart(out, jsonMetadata ? "application/json" : "application/xml",
+                    "attachment; filename=\"" + uri + "\"; category=metadata; format=" + format, format,
+                    buildMetadata(doc, jsonMetadata).getBytes(StandardCharsets.UTF_8));
+            }
+            if (withContent) {
+                writePart(out, "json".equals(doc.format) ? "application/json" : "application/xml",
+                    "attachment; filename=\"" + uri + "\"; category=content; format=" + doc.format, doc.format, doc.content);
+            }
+        }
+        if (out.size() > 0) {
+            out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        send(exchange, 200, "multipart/mixed; boundary=" + BOUNDARY, out.toByteArray());
+    }
+
+    private void handleEval(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        EvalRequest request = new EvalRequest(params.containsKey("javascript") ? getFirst(params, "javascript") : getFirst(params, "xquery"),
+            parseVariables(getFirst(params, "vars")));
+
+        List<String> results;
+        Matcher literalMatcher = request.query != null ? URI_MATCH_LITERAL.matcher(request.query) : null;
+        if (request.query != null && request.query.contains("xdmp.effectiveVersion")) {
+            results = Collections.singletonList(DEFAULT_EFFECTIVE_VERSION);
+        } else if (literalMatcher != null && literalMatcher.find()) {
+            results = matchUris(literalMatcher.group(1), null);
+        } else if (request.query != null && request.query.contains("cts:uri-match") && request.variables.containsKey("pattern")) {
+            String forestId = request.variables.get("forest-id");
+            results = matchUris(request.variables.get("pattern"), forestId != null ? getForestIndex(forestId) : null);
+        } else if (evalHandler != null) {
+            results = evalHandler.apply(request);
+        } else {
+            results = Collections.emptyList();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String result : results) {
+            writeHeaderLines(out, "--" + BOUNDARY, "Content-Type: text/plain", "X-Primitive: string", "");
+            out.write(result.getBytes(StandardCharsets.UTF_8));
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        if (!results.isEmpty()) {
+            out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        send(exchange, 200, "multipart/mixed; boundary=" + BOUNDARY, out.toByteArray());
+    }
+
+    private List<String> matchUris(String uriPattern, Integer forestIndex) {
+        Pattern pattern = toRegex(uriPattern);
+        List<String> uris = new ArrayList<>();
+        for (String uri : documents.keySet()) {
+            if ((forestIndex == null || forestIndex == getForestIndexForUri(uri)) && pattern.matcher(uri).matches()) {
+                uris.add(uri);
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * @param query
+     * @return a map of query type - collection, document, or directory - to the URIs for that type
+     */
+    private Map<String, Set<String>> parseQueryCriteria(String query) {
+        Map<String, Set<String>> criteria = new LinkedHashMap<>();
+        Matcher queryMatcher = QUERY_PATTERN.matcher(query);
+        while (queryMatcher.find()) {
+            Set<String> uris = criteria.computeIfAbsent(queryMatcher.group(1), type -> new HashSet<>());
+            Matcher uriMatcher = URI_PATTERN.matcher(queryMatcher.group(2));
+            while (uriMatcher.find()) {
+                uris.add(uriMatcher.group(1).trim());
+            }
+        }
+        return criteria;
+    }
+
+    private boolean matches(String uri, StubDocument doc, Map<String, Set<String>> criteria) {
+        for (Map.Entry<String, Set<String>> entry : criteria.entrySet()) {
+            Set<String> values = entry.getValue();
+            if ("collection".equals(entry.getKey()) && Collections.disjoint(values, doc.collections)) {
+                return false;
+            } else if ("document".equals(entry.getKey()) && !values.contains(uri)) {
+                return false;
+            } else if ("directory".equals(entry.getKey()) && values.stream().noneMatch(uri::startsWith)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String buildMetadata(StubDocument doc, boolean json) throws IOException {
+        if (json) {
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("collections", doc.collections);
+            metadata.put("permissions", Collections.emptyList());
+            metadata.put("properties", Collections.emptyMap());
+            metadata.put("quality", 0);
+            metadata.put("metadataValues", Collections.emptyMap());
+            return objectMapper.writeValueAsString(metadata);
+        }
+        StringBuilder sb = new StringBuilder("<rapi:metadata xmlns:rapi=\"http://marklogic.com/rest-api\"><rapi:collections>");
+        for (String collection : doc.collections) {
+            sb.append("<rapi:collection>").append(collection).append("</rapi:collection>");
+        }
+        return sb.append("</rapi:collections><rapi:permissions/>")
+            .append("<prop:properties xmlns:prop=\"http://marklogic.com/xdmp/property\"/>")
+            .append("<rapi:quality>0</rapi:quality><rapi:metadata-values/></rapi:metadata>")
+            .toString();
+    }
+
+    private void writePart(OutputStream out, String contentType, String contentDisposition, String format, byte[] content) throws IOException {
+        writeHeaderLines(out, "--" + BOUNDARY, "Content-Type: " + contentType, "Content-Disposition: " + contentDisposition,
+            "vnd.marklogic.document-format: " + format, "Content-Length: " + content.length, "");
+        out.write(content);
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeHeaderLines(OutputStream out, String... lines) throws IOException {
+        for (String line : lines) {
+            out.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("statusCode", statusCode);
+        error.put("status", statusCode == 503 ? "Service Unavailable" : "Internal Server Error");
+        error.put("messageCode", "STUB-ERROR");
+        error.put("message", message);
+        send(exchange, statusCode, "application/json",
+            objectMapper.writeValueAsBytes(Collections.singletonMap("errorResponse", error)));
+    }
+
+    private void send(HttpExchange exchange, int statusCode, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(statusCode, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private Map<String, String> parseVariables(String vars) throws IOException {
+        Map<String, String> variables = new LinkedHashMap<>();
+        if (vars != null && !vars.isEmpty()) {
+            JsonNode node = objectMapper.readTree(vars);
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                variables.put(field.getKey(), field.getValue().asText());
+            }
+        }
+        return variables;
+    }
+
+    private static Map<String, List<String>> parseParameters(String text) throws UnsupportedEncodingException {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if (text != null && !text.isEmpty()) {
+            for (String pair : text.split("&")) {
+                int pos = pair.indexOf('=');
+                String name = URLDecoder.decode(pos > -1 ? pair.substring(0, pos) : pair, "UTF-8");
+                String value = pos > -1 ? URLDecoder.decode(pair.substring(pos + 1), "UTF-8") : "";
+                params.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+            }
+        }
+        return params;
+    }
+
+    private static String getFirst(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Converts a cts:uri-match pattern, where "*" matches any characters and "?" matches a single character, into a
+     * regular expression.
+     */
+    private static Pattern toRegex(String uriPattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : uriPattern.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private int getForestIndexForUri(String uri) {
+        return Math.floorMod(uri.hashCode(), forestCount);
+    }
+
+    private String getForestId(int index) {
+        return String.valueOf(1000000 + index);
+    }
+
+    private String getForestName(int index) {
+        return database + "-stub-" + (index + 1);
+    }
+
+    private int getForestIndex(String forestNameOrId) {
+        for (int i = 0; i < forestCount; i++) {
+            if (getForestName(i).equals(forestNameOrId) || getForestId(i).equals(forestNameOrId)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unrecognized forest: " + forestNameOrId);
+    }
+
+    /**
+     * The query text and external variables of a request to /v1/eval.
+     */
+    public static class EvalRequest {
+        private final String query;
+        private final Map<String, String> variables;
+
+        private EvalRequest(String query, Map<String, String> variables) {
+            this.query = query;
+            this.variables = variables;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public Map<String, String> getVariables() {
+            return variables;
+        }
+    }
+
+    private static class StubDocument {
+        private final byte[] content;
+        private final String format;
+        private final List<String> collections;
+
+        private StubDocument(String content, String... collections) {
+            this.content = content.getBytes(StandardCharsets.UTF_8);
+            String trimmed = content.trim();
+            this.format = trimmed.startsWith("{") || trimmed.startsWith("[") ? "json" : "xml";
+            this.collections = Arrays.asList(collections);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.stub;
+
+import com.marklogic.client.ext.datamovement.stub.MarkLogicRestStub.Endpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the stub's responses via plain HTTP requests; see StubbedJobsTest for running jobs against it.
+ */
+public class MarkLogicRestStubTest {
+
+    private MarkLogicRestStub stub;
+    private int lastStatusCode;
+
+    @BeforeEach
+    public void setup() {
+        stub = new MarkLogicRestStub()
+            .withForestCount(2)
+            .addDocuments(10, "/red/", "red")
+            .addDocuments(5, "/blue/", "blue")
+            .start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        stub.close();
+    }
+
+    @Test
+    public void forestInfo() {
+        String json = request("GET", "/v1/internal/forestinfo", null);
+        assertTrue(json.contains("\"name\":\"Documents-stub-1\""), "Unexpected JSON: " + json);
+        assertTrue(json.contains("\"name\":\"Documents-stub-2\""));
+        assertTrue(json.contains("\"updatesAllowed\":\"all\""));
+    }
+
+    @Test
+    public void pageThroughUrisInEachForest() {
+        List<String> uris = new ArrayList<>();
+        for (String forest : Arrays.asList("Documents-stub-1", "Documents-stub-2")) {
+            String after = null;
+            while (true) {
+                String path = "/v1/internal/uris?pageLength=3&forest-name=" + forest + (after != null ? "&after=" + encode(after) : "");
+                List<String> page = lines(request("POST", path, "<query/>"));
+                uris.addAll(page);
+                if (page.size() < 3) {
+                    break;
+                }
+                after = page.get(page.size() - 1);
+            }
+        }
+        assertEquals(15, uris.size());
+        assertEquals(15, uris.stream().distinct().count());
+    }
+
+    @Test
+    public void collectionQuery() {
+        String query = "<query xmlns=\"http://marklogic.com/appservices/search\"><collection-query><uri>blue</uri></collection-query></query>";
+        List<String> uris = lines(request("POST", "/v1/internal/uris", query));
+        assertEquals(5, uris.size());
+        assertTrue(uris.stream().allMatch(uri -> uri.startsWith("/blue/")));
+    }
+
+    @Test
+    public void bulkRead() {
+        String response = request("GET", "/v1/documents?category=content&uri=" + encode("/red/1.xml") + "&uri=" + encode("/blue/2.xml"), null);
+        assertTrue(response.contains("filename=\"/red/1.xml\"; category=content; format=xml"), "Unexpected response: " + response);
+        assertTrue(response.contains("<test>/red/1.xml</test>"));
+        assertTrue(response.contains("<test>/blue/2.xml</test>"));
+        assertFalse(response.contains("category=metadata"));
+    }
+
+    @Test
+    public void evalUriMatch() {
+        String body = "xquery=" + encode("cts:uri-match('/blue/*')");
+        String response = request("POST", "/v1/eval", body);
+        assertTrue(response.contains("X-Primitive: string"));
+        assertTrue(response.contains("/blue/4.xml"));
+        assertFalse(response.contains("/red/"));
+        assertEquals(1, stub.getRequestCount(Endpoint.EVAL));
+    }
+
+    @Test
+    public void evalHandler() {
+        stub.withEvalHandler(request -> Arrays.asList(request.getVariables().get("greeting")));
+        String body = "xquery=" + encode("declare variable $greeting external; $greeting") + "&vars=" + encode("{\"greeting\":\"hello\"}");
+        assertTrue(request("POST", "/v1/eval", body).contains("hello"));
+    }
+
+    @Test
+    public void injectedLatencyAndFailures() {
+        stub.withLatency(Endpoint.FOREST_INFO, 100).withFailureRate(Endpoint.FOREST_INFO, 1.0);
+        long start = System.currentTimeMillis();
+        String response = request("GET", "/v1/internal/forestinfo", null);
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(503, lastStatusCode);
+        assertTrue(response.contains("Service Unavailable"));
+        assertEquals(1, stub.getFailureCount());
+    }
+
+    private String request(String method, String path, String body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://" + stub.getHost() + ":" + stub.getPort() + path).openConnection();
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", body.startsWith("<") ? "application/xml" : "application/x-www-form-urlencoded");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            lastStatusCode = connection.getResponseCode();
+            InputStream in = lastStatusCode < 400 ? connection.getInputStream() : connection.getErrorStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (in != null) {
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                in.close();
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<String> lines(String text) {
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.stub;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.datamovement.DataMovementManager;
+import com.marklogic.client.ext.datamovement.JobMetrics;
+import com.marklogic.client.ext.datamovement.ListenerProfile;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import com.marklogic.client.ext.datamovement.job.AddCollectionsJob;
+import com.marklogic.client.ext.datamovement.job.ExportBatchesToZipsJob;
+import com.marklogic.client.ext.datamovement.job.ExportToFileJob;
+import com.marklogic.client.ext.datamovement.job.ExportToZipJob;
+import com.marklogic.client.ext.datamovement.job.PatchMetadataJob;
+import com.marklogic.client.ext.datamovement.job.PipelineJob;
+import com.marklogic.client.ext.datamovement.stub.MarkLogicRestStub.Endpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs jobs end-to-end against MarkLogicRestStub, and thus does not require MarkLogic. This is also a starting point
+ * for load tests - e.g. by adding more documents and latency to the stub and timing the jobs.
+ */
+public class StubbedJobsTest {
+
+    private MarkLogicRestStub stub;
+    private DatabaseClient client;
+
+    @BeforeEach
+    public void setup() {
+        stub = new MarkLogicRestStub()
+            .addDocuments(100, "/red/", "red")
+            .addDocuments(20, "/blue/", "blue")
+            .withLatency(Endpoint.DOCUMENTS, 5)
+            .start();
+        client = DatabaseClientFactory.newClient(stub.getHost(), stub.getPort(),
+            new DatabaseClientFactory.DigestAuthContext("stub-user", "stub-password"));
+    }
+
+    @AfterEach
+    public void teardown() {
+        client.release();
+        stub.close();
+    }
+
+    @Test
+    public void exportToZip() throws IOException {
+        File exportFile = new File("build/export-test/" + System.currentTimeMillis() + "-stubbed-export.zip");
+        ExportToZipJob job = new ExportToZipJob(exportFile);
+        job.setWhereUriPattern("/red/*");
+        job.setBatchSize(7);
+        job.setThreadCount(4);
+        QueryBatcherJobTicket ticket = job.run(client);
+
+        try (ZipFile zipFile = new ZipFile(exportFile)) {
+            assertEquals(100, zipFile.size());
+            assertTrue(zipFile.getEntry("/red/42.xml") != null);
+        }
+
+        JobMetrics metrics = ticket.getJobMetrics();
+        assertEquals(100, metrics.getUriCount());
+        assertEquals(15, metrics.getBatchCount());
+        assertEquals(0, metrics.getBatchFailureCount());
+        assertTrue(metrics.getBytesExported() > 0, "The size of each exported document should have been recorded");
+    }
+
+    @Test
+    public void checkpointFileIsDeletedWhenJobCompletes() throws IOException {
+        File exportDir = new File("build/export-test/" + System.currentTimeMillis() + "-checkpointed-export");
+        File checkpointFile = new File(exportDir.getParentFile(), exportDir.getName() + "-checkpoint.txt");
+        ExportBatchesToZipsJob job = new ExportBatchesToZipsJob(exportDir);
+        job.setWhereUriPattern("/red/*");
+        job.setBatchSize(10);
+        job.setCheckpointFile(checkpointFile);
+        job.run(client);
+
+        assertEquals(100, readZipEntryNames(exportDir).size());
+        assertFalse(checkpointFile.exists(), "The checkpoint should have been deleted since every batch succeeded, " +
+            "so that the next run starts from the beginning");
+    }
+
+    @Test
+    public void resumeStoppedExportFromCheckpoint() throws IOException {
+        File exportDir = new File("build/export-test/" + System.currentTimeMillis() + "-resumed-export");
+        File checkpointFile = new File(exportDir.getParentFile(), exportDir.getName() + "-checkpoint.txt");
+
+        DataMovementManager dmm = client.newDataMovementManager();
+        AtomicInteger batchCount = new AtomicInteger();
+        ExportBatchesToZipsJob stoppedJob = new ExportBatchesToZipsJob(exportDir);
+        stoppedJob.setWhereUriPattern("/red/*");
+        stoppedJob.setBatchSize(10);
+        stoppedJob.setThreadCount(1);
+        stoppedJob.setCheckpointFile(checkpointFile);
+        stoppedJob.setDataMovementManager(dmm);
+        stoppedJob.addUrisReadyListener(batch -> {
+            if (batchCount.incrementAndGet() == 3) {
+                dmm.stopJob(batch.getBatcher());
+            }
+        });
+        stoppedJob.run(client);
+
+        assertTrue(checkpointFile.exists(), "The checkpoint should have been kept since the job was stopped");
+        Map<String, Set<String>> firstRunEntries = readZipEntriesByFile(exportDir);
+        assertTrue(firstRunEntries.size() >= 3);
+        assertTrue(readZipEntryNames(exportDir).size() < 100);
+
+        ExportBatchesToZipsJob resumedJob = new ExportBatchesToZipsJob(exportDir);
+        resumedJob.setWhereUriPattern("/red/*");
+        resumedJob.setBatchSize(10);
+        resumedJob.setCheckpointFile(checkpointFile);
+        resumedJob.run(client);
+
+        Map<String, Set<String>> allEntries = readZipEntriesByFile(exportDir);
+        firstRunEntries.forEach((filename, entryNames) -> assertEquals(entryNames, allEntries.get(filename),
+            "The resumed run should not have overwritten " + filename + ", as its URIs were recorded as completed"));
+        Set<String> entryNames = readZipEntryNames(exportDir);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(entryNames.contains("/red/" + i + ".xml"), "Missing document " + i);
+        }
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void checkpointIsNotSupportedForSingleFileExports() {
+        ExportToZipJob job = new ExportToZipJob();
+        Properties props = new Properties();
+        props.setProperty("exportPath", "build/export-test/" + System.currentTimeMillis() + "-unsupported.zip");
+        props.setProperty("whereUriPattern", "/red/*");
+        props.setProperty("checkpointFile", "build/export-test/unsupported-checkpoint.txt");
+        assertEquals(1, job.configureJob(props).size());
+        assertThrows(IllegalStateException.class, () -> job.run(client));
+
+        PipelineJob pipeline = new PipelineJob(new ExportToFileJob(new File("build/export-test/unsupported.xml")));
+        pipeline.setWhereUriPattern("/red/*");
+        pipeline.setCheckpointFile(new File("build/export-test/unsupported-checkpoint.txt"));
+        assertThrows(IllegalStateException.class, () -> pipeline.run(client),
+            "A pipeline should not support a checkpoint if any of its steps do not");
+    }
+
+    @Test
+    public void exportToZipAsync() throws Exception {
+        File exportFile = new File("build/export-test/" + System.currentTimeMillis() + "-async-export.zip");
+        ExportToZipJob job = new ExportToZipJob(exportFile);
+        job.setWhereUriPattern("/red/*");
+        job.setBatchSize(10);
+        QueryBatcherJobTicket ticket = job.runAsync(client).get(30, TimeUnit.SECONDS);
+
+        assertTrue(ticket.getQueryBatcher().isStopped());
+        try (ZipFile zipFile = new ZipFile(exportFile)) {
+            assertEquals(100, zipFile.size(), "The zip file should have been closed once the job completed");
+        }
+    }
+
+    @Test
+    public void exportToZipWithProfiledListeners() {
+        File exportFile = new File("build/export-test/" + System.currentTimeMillis() + "-profiled-export.zip");
+        ExportToZipJob job = new ExportToZipJob(exportFile);
+        job.setWhereUriPattern("/red/*");
+        job.setBatchSize(10);
+        job.setProfileListeners(true);
+        ListenerProfile profile = job.run(client).getListenerProfile();
+
+        assertEquals(10, profile.getTimings("ExportListener").getInvocationCount());
+        assertEquals(100, profile.getTimings("WriteToZipConsumer").getInvocationCount());
+        assertTrue(profile.getTimings("ExportListener").getWallNanos() >= profile.getTimings("WriteToZipConsumer").getWallNanos(),
+            "The time of the listener includes the time of the consumer that it calls");
+    }
+
+    @Test
+    public void exportToFileWithAppendBatches() throws IOException {
+        File exportFile = new File("build/export-test/" + System.currentTimeMillis() + "-stubbed-export.xml");
+        ExportToFileJob job = new ExportToFileJob(exportFile);
+        job.setWhereUriPattern("/red/*");
+        job.setBatchSize(7);
+        job.setThreadCount(4);
+        job.setFileHeader("<results>");
+        job.setFileFooter("</results>");
+        job.setRecordSuffix("\n");
+        job.setAppendBatches(true);
+        job.run(client);
+
+        String content = new String(Files.readAllBytes(exportFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(content.startsWith("<results>\n"));
+        assertTrue(content.endsWith("</results>"));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(content.contains("<test>/red/" + i + ".xml</test>\n"), "Missing document " + i);
+        }
+    }
+
+    private Map<String, Set<String>> readZipEntriesByFile(File exportDir) throws IOException {
+        Map<String, Set<String>> entries = new HashMap<>();
+        for (File file : exportDir.listFiles()) {
+            Set<String> names = new HashSet<>();
+            try (ZipFile zipFile = new ZipFile(file)) {
+                zipFile.stream().forEach(entry -> names.add(entry.getName()));
+            }
+            entries.put(file.getName(), names);
+        }
+        return entries;
+    }
+
+    private Set<String> readZipEntryNames(File exportDir) throws IOException {
+        Set<String> names = new HashSet<>();
+        readZipEntriesByFile(exportDir).values().forEach(names::addAll);
+        return names;
+    }
+
+    @Test
+    public void addCollections() {
+        AtomicInteger urisCount = new AtomicInteger();
+        stub.withEvalHandler(request -> {
+            if (request.getQuery().contains("xdmp:document-add-collections")) {
+                request.getVariables().keySet().stream().filter(name -> name.startsWith("uri")).forEach(name -> urisCount.incrementAndGet());
+            }
+            return Collections.emptyList();
+        });
+
+        AddCollectionsJob job = new AddCollectionsJob("green");
+        job.setWhereCollections("blue");
+        job.setBatchSize(3);
+        job.run(client);
+
+        assertEquals(20, urisCount.get(), "Each URI in the blue collection should have been sent to the eval endpoint");
+        assertTrue(stub.getRequestCount(Endpoint.URIS) > 0, "URIs should have been read via /v1/internal/uris");
+    }
+
+    @Test
+    public void patchMetadataMakesOneEvalCallPerBatch() {
+        AtomicInteger evalCount = new AtomicInteger();
+        stub.withEvalHandler(request -> {
+            evalCount.incrementAndGet();
+            return Collections.emptyList();
+        });
+
+        PatchMetadataJob job = new PatchMetadataJob()
+            .setCollections("green")
+            .addPermissions("rest-reader", "read");
+        job.setWhereCollections("blue");
+        job.setBatchSize(5);
+        JobMetrics metrics = job.run(client).getJobMetrics();
+
+        assertEquals(4, metrics.getBatchCount());
+        assertEquals(4, evalCount.get(), "Collections and permissions should have been changed by the same eval call");
+    }
+}
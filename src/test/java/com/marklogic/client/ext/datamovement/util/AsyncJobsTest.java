@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import com.marklogic.client.datamovement.QueryBatcher;
+import com.marklogic.client.datamovement.QueryBatcherListener;
+import com.marklogic.client.ext.datamovement.QueryBatcherJobTicket;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncJobsTest {
+
+    private QueryBatcherJobTicket ticket = new QueryBatcherJobTicket(null, newQueryBatcher(), null);
+
+    @Test
+    public void finishedAfterJobCompletes() throws Exception {
+        AtomicReference<QueryBatcherListener> completionListener = new AtomicReference<>();
+        AtomicReference<String> finisherThread = new AtomicReference<>();
+
+        CompletableFuture<QueryBatcherJobTicket> future = AsyncJobs.runAsync(listener -> {
+            completionListener.set(listener);
+            return ticket;
+        }, t -> finisherThread.set(Thread.currentThread().getName()), AsyncJobs.getDefaultCompletionExecutor());
+
+        Thread.sleep(50);
+        assertFalse(future.isDone(), "The job should not be finished until it reports that it has completed");
+
+        completionListener.get().processEvent(ticket.getQueryBatcher());
+        assertSame(ticket, future.get(5, TimeUnit.SECONDS));
+        assertTrue(finisherThread.get().startsWith("query-batcher-job-completion"),
+            "The job should be finished on a completion thread; thread: " + finisherThread.get());
+    }
+
+    @Test
+    public void jobCompletesBeforeStarterReturns() throws Exception {
+        CompletableFuture<QueryBatcherJobTicket> future = AsyncJobs.runAsync(listener -> {
+            listener.processEvent(ticket.getQueryBatcher());
+            return ticket;
+        }, t -> {
+        }, Runnable::run);
+        assertSame(ticket, future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failures() {
+        CompletableFuture<QueryBatcherJobTicket> future = AsyncJobs.runAsync(listener -> {
+            throw new RuntimeException("Unable to start");
+        }, t -> {
+        }, Runnable::run);
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get());
+        assertEquals("Unable to start", ex.getCause().getMessage());
+
+        CompletableFuture<QueryBatcherJobTicket> future2 = AsyncJobs.runAsync(listener -> {
+            listener.processEvent(ticket.getQueryBatcher());
+            return ticket;
+        }, t -> {
+            throw new RuntimeException("Unable to finish");
+        }, Runnable::run);
+        ex = assertThrows(ExecutionException.class, () -> future2.get());
+        assertEquals("Unable to finish", ex.getCause().getMessage());
+    }
+
+    private QueryBatcher newQueryBatcher() {
+        return (QueryBatcher) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{QueryBatcher.class},
+            (proxy, method, args) -> "awaitCompletion".equals(method.getName()) ? Boolean.TRUE : null);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncWriteStageTest {
+
+    @Test
+    public void submitBlocksWhenQueueIsFull() throws Exception {
+        AsyncWriteStage stage = new AsyncWriteStage(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        stage.submit(80, () -> awaitLatch(release));
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            stage.submit(80, () -> {
+            });
+            submitted.countDown();
+        });
+        thread.start();
+
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS), "The second submit should block until the first write finishes");
+        release.countDown();
+        assertTrue(submitted.await(10, TimeUnit.SECONDS));
+        stage.close();
+    }
+
+    @Test
+    public void contentLargerThanQueueIsAccepted() {
+        AsyncWriteStage stage = new AsyncWriteStage(2, 10);
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            stage.submit(1000, () -> count.incrementAndGet());
+        }
+        stage.awaitCompletion();
+        assertEquals(20, count.get());
+        stage.close();
+    }
+
+    @Test
+    public void failureIsRethrown() {
+        AsyncWriteStage stage = new AsyncWriteStage(1);
+        stage.submit(10, () -> {
+            throw new IOException("Disk is full");
+        });
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> stage.awaitCompletion());
+        assertTrue(ex.getMessage().contains("Disk is full"), "Unexpected message: " + ex.getMessage());
+        assertEquals(1, stage.getFailureCount());
+        assertThrows(RuntimeException.class, () -> stage.submit(10, () -> {
+        }));
+    }
+
+    @Test
+    public void completionListener() {
+        AsyncWriteStage stage = new AsyncWriteStage(1);
+        List<Throwable> results = Collections.synchronizedList(new ArrayList<>());
+        stage.submit(10, () -> {
+        }, results::add);
+        IOException failure = new IOException("Disk is full");
+        stage.submit(10, () -> {
+            throw failure;
+        }, results::add);
+
+        assertThrows(RuntimeException.class, () -> stage.awaitCompletion());
+        assertEquals(Arrays.asList(null, failure), results, "Each listener should be called with the result of its own write");
+    }
+
+    @Test
+    public void submitAfterClose() {
+        AsyncWriteStage stage = new AsyncWriteStage(1);
+        stage.close();
+        assertThrows(IllegalStateException.class, () -> stage.submit(10, () -> {
+        }));
+    }
+
+    private void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
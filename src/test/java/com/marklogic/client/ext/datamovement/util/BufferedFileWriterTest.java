@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BufferedFileWriterTest {
+
+    @Test
+    public void fileIsOpenedOnFirstWrite() throws Exception {
+        File file = new File(Files.createTempDirectory("buffered-file-writer-test").toFile(), "test.txt");
+        BufferedFileWriter writer = new BufferedFileWriter(file);
+        writer.setBufferSize(8);
+        writer.setCharset(StandardCharsets.UTF_16BE);
+        assertFalse(file.exists(), "The file should not be created until it is written to");
+
+        writer.write("h\u00e9llo w\u00f6rld");
+        assertThrows(IllegalStateException.class, () -> writer.setCharset(StandardCharsets.UTF_8));
+        writer.close();
+        writer.close();
+
+        assertArrayEquals("h\u00e9llo w\u00f6rld".getBytes(StandardCharsets.UTF_16BE), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void defaultsToUtf8() throws Exception {
+        File file = new File(Files.createTempDirectory("buffered-file-writer-test").toFile(), "test.txt");
+        BufferedFileWriter writer = new BufferedFileWriter(file);
+        assertEquals(BufferedFileWriter.DEFAULT_BUFFER_SIZE, writer.getBufferSize());
+        writer.write("\u00e9");
+        writer.close();
+        assertArrayEquals(new byte[]{(byte) 0xc3, (byte) 0xa9}, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void closeCreatesEmptyFile() throws Exception {
+        File file = new File(Files.createTempDirectory("buffered-file-writer-test").toFile(), "test.txt");
+        new BufferedFileWriter(file).close();
+        assertTrue(file.exists());
+        assertEquals(0, file.length());
+    }
+}
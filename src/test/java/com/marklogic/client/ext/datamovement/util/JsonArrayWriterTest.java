@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JsonArrayWriterTest {
+
+    @Test
+    public void simpleValues() {
+        assertEquals("[\"/a.xml\",\"/b.json\"]", JsonArrayWriter.toJsonArray("/a.xml", "/b.json"));
+    }
+
+    @Test
+    public void noValues() {
+        assertEquals("[]", JsonArrayWriter.toJsonArray());
+    }
+
+    @Test
+    public void escapedValues() {
+        assertEquals("[\"a\\\"b\",\"c\\\\d\",\"e\\u000af\"]", JsonArrayWriter.toJsonArray("a\"b", "c\\d", "e\nf"));
+    }
+}
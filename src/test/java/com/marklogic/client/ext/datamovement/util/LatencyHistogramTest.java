@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertWithinSixPercent(500000, histogram.getPercentile(50));
+        assertWithinSixPercent(950000, histogram.getPercentile(95));
+        assertWithinSixPercent(990000, histogram.getPercentile(99));
+        assertWithinSixPercent(1000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value, "Upper bound too low for " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value, "Value should not fit in previous bucket: " + value);
+            }
+        }
+    }
+
+    private void assertWithinSixPercent(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.0625, "Expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PagedUrisIteratorTest {
+
+    private final static List<String> URIS = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
+
+    private List<String> requestedStartUris = new ArrayList<>();
+
+    @Test
+    public void multiplePages() {
+        assertEquals(URIS, readAll(new PagedUrisIterator(newPageFetcher(3), 3, null)));
+        assertEquals(Arrays.asList(null, "c", "e", "g"), requestedStartUris,
+                "Each page after the first should start from the last URI of the previous page");
+    }
+
+    @Test
+    public void pageLengthMatchesNumberOfUris() {
+        assertEquals(URIS, readAll(new PagedUrisIterator(newPageFetcher(7), 7, null)));
+        assertEquals(Arrays.asList(null, "g"), requestedStartUris);
+    }
+
+    @Test
+    public void startUri() {
+        assertEquals(Arrays.asList("d", "e", "f", "g"), readAll(new PagedUrisIterator(newPageFetcher(2), 2, "d")),
+                "The start URI should be included in the first page");
+    }
+
+    @Test
+    public void noUris() {
+        assertFalse(new PagedUrisIterator(start -> new ArrayList<>(), 10, null).hasNext());
+    }
+
+    @Test
+    public void pageLengthTooSmall() {
+        assertThrows(IllegalArgumentException.class, () -> new PagedUrisIterator(newPageFetcher(1), 1, null));
+    }
+
+    @Test
+    public void closeReleasesFetchingThread() throws Exception {
+        List<Thread> fetchingThreads = new ArrayList<>();
+        Function<String, List<String>> pageFetcher = newPageFetcher(2);
+        PagedUrisIterator iterator = new PagedUrisIterator(start -> {
+            fetchingThreads.add(Thread.currentThread());
+            return pageFetcher.apply(start);
+        }, 2, null);
+        assertEquals("a", iterator.next());
+
+        iterator.close();
+        assertTrue(iterator.isClosed());
+        assertFalse(iterator.hasNext());
+        Thread thread = fetchingThreads.get(0);
+        thread.join(5000);
+        assertFalse(thread.isAlive(), "Closing the iterator should stop the thread waiting to hand off the next page");
+    }
+
+    @Test
+    public void closeCondition() throws Exception {
+        List<Thread> fetchingThreads = new ArrayList<>();
+        Function<String, List<String>> pageFetcher = newPageFetcher(2);
+        PagedUrisIterator iterator = new PagedUrisIterator(start -> {
+            fetchingThreads.add(Thread.currentThread());
+            return pageFetcher.apply(start);
+        }, 2, null);
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        iterator.setCloseCondition(stopped::get);
+        assertEquals("a", iterator.next());
+
+        // Mimics a QueryBatcher being stopped and thus no longer reading from the iterator
+        stopped.set(true);
+        Thread thread = fetchingThreads.get(0);
+        thread.join(5000);
+        assertFalse(thread.isAlive(), "The fetching thread should have closed the iterator once the condition was met");
+        assertTrue(iterator.isClosed());
+    }
+
+    /**
+     * Mimics cts:uris by returning URIs starting with, and including, the given start URI.
+     */
+    private Function<String, List<String>> newPageFetcher(int pageLength) {
+        return start -> {
+            requestedStartUris.add(start);
+            List<String> page = new ArrayList<>();
+            for (String uri : URIS) {
+                if ((start == null || uri.compareTo(start) >= 0) && page.size() < pageLength) {
+                    page.add(uri);
+                }
+            }
+            return page;
+        };
+    }
+
+    private List<String> readAll(PagedUrisIterator iterator) {
+        List<String> uris = new ArrayList<>();
+        while (iterator.hasNext()) {
+            uris.add(iterator.next());
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2023 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.client.ext.datamovement.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelUrisIteratorTest {
+
+    @Test
+    public void mergeSources() {
+        List<Consumer<Consumer<String>>> sources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sources.add(newSource("forest" + i, 250));
+        }
+
+        // Use a small chunk size and queue capacity so that the sources have to block on the consumer
+        Set<String> uris = readAll(new ParallelUrisIterator(sources, 3, 7, 2));
+        assertEquals(1250, uris.size());
+        assertTrue(uris.contains("/forest0/0.xml"));
+        assertTrue(uris.contains("/forest4/249.xml"));
+    }
+
+    @Test
+    public void noSources() {
+        assertFalse(new ParallelUrisIterator(new ArrayList<>(), 2).hasNext());
+    }
+
+    @Test
+    public void sourceFails() {
+        List<Consumer<Consumer<String>>> sources = new ArrayList<>();
+        sources.add(newSource("forest0", 10));
+        sources.add(consumer -> {
+            throw new IllegalStateException("Forest is unavailable");
+        });
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> readAll(new ParallelUrisIterator(sources, 2)));
+        assertEquals("Forest is unavailable", ex.getCause().getMessage());
+    }
+
+    @Test
+    public void closeReleasesBlockedSources() throws Exception {
+        CountDownLatch released = new CountDownLatch(2);
+        List<Consumer<Consumer<String>>> sources = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            sources.add(releasingSource("forest" + i, released));
+        }
+
+        ParallelUrisIterator iterator = new ParallelUrisIterator(sources, 2, 1, 1);
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        iterator.close();
+
+        assertTrue(released.await(10, TimeUnit.SECONDS), "Each source should have been interrupted while blocked on the queue");
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void closeCondition() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        List<Consumer<Consumer<String>>> sources = new ArrayList<>();
+        sources.add(releasingSource("forest0", released));
+
+        ParallelUrisIterator iterator = new ParallelUrisIterator(sources, 1, 1, 1);
+        AtomicBoolean stopped = new AtomicBoolean();
+        iterator.setCloseCondition(stopped::get);
+        assertTrue(iterator.hasNext());
+        stopped.set(true);
+
+        assertTrue(released.await(10, TimeUnit.SECONDS), "The source should have closed the iterator once the condition was met");
+        assertTrue(iterator.isClosed());
+    }
+
+    /**
+     * @return a source with far more URIs than the queue can hold, which counts down the latch once it's done
+     */
+    private Consumer<Consumer<String>> releasingSource(String name, CountDownLatch released) {
+        return consumer -> {
+            try {
+                newSource(name, 1000000).accept(consumer);
+            } finally {
+                released.countDown();
+            }
+        };
+    }
+
+    private Consumer<Consumer<String>> newSource(String name, int count) {
+        return consumer -> {
+            for (int i = 0; i < count; i++) {
+                consumer.accept("/" + name + "/" + i + ".xml");
+            }
+        };
+    }
+
+    private Set<String> readAll(ParallelUrisIterator iterator) {
+        Set<String> uris = new HashSet<>();
+        while (iterator.hasNext()) {
+            uris.add(iterator.next());
+        }
+        return uris;
+    }
+}